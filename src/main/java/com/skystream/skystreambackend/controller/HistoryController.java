@@ -0,0 +1,79 @@
+package com.skystream.skystreambackend.controller;
+
+import com.skystream.skystreambackend.service.HistoryAggregationService;
+import com.skystream.skystreambackend.service.RangeAggregates;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/history")
+public class HistoryController {
+
+    private final HistoryAggregationService history;
+
+    public HistoryController(HistoryAggregationService history) {
+        this.history = history;
+    }
+
+    // ---------------- METRICS ----------------
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        return history.describe();
+    }
+
+    // ---------------- RANGE AGGREGATE ----------------
+    // e.g. /aggregate?place=Kabul&metric=temp_max_c&from=2025-01-01&to=2025-03-31&percentiles=50,90&bucket=month
+    @GetMapping("/aggregate")
+    public ResponseEntity<?> aggregate(
+            @RequestParam String place,
+            @RequestParam String metric,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<Double> percentiles,
+            @RequestParam(required = false) String bucket) {
+
+        RangeAggregates.Bucket b = null;
+        if (bucket != null && !bucket.isBlank()) {
+            try {
+                b = RangeAggregates.Bucket.valueOf(bucket.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return badRequest("bucket must be week or month");
+            }
+        }
+        if (percentiles != null && percentiles.stream().anyMatch(p -> p == null || p < 0 || p > 100)) {
+            return badRequest("percentiles must be between 0 and 100");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            return badRequest("from is after to");
+        }
+
+        try {
+            return ResponseEntity.ok(history.aggregate(place, metric, from, to, percentiles, b));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(
+                    Map.of(
+                            "error", "not-found",
+                            "message", e.getMessage()
+                    )
+            );
+        }
+    }
+
+    private ResponseEntity<?> badRequest(String message) {
+        return ResponseEntity.badRequest().body(
+                Map.of(
+                        "error", "bad-request",
+                        "message", message
+                )
+        );
+    }
+}
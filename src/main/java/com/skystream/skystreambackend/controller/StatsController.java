@@ -0,0 +1,103 @@
+package com.skystream.skystreambackend.controller;
+
+import com.skystream.skystreambackend.service.BlockingExecutor;
+import com.skystream.skystreambackend.service.CityAutocompleteService;
+import com.skystream.skystreambackend.service.DatasetSnapshots;
+import com.skystream.skystreambackend.service.DatasetWatcher;
+import com.skystream.skystreambackend.service.ForecastStore;
+import com.skystream.skystreambackend.service.LocalCSVLoaderService;
+import com.skystream.skystreambackend.service.LocationResolver;
+import com.skystream.skystreambackend.service.NegativeCache;
+import com.skystream.skystreambackend.service.NearestLocationService;
+import com.skystream.skystreambackend.service.FuzzySearchService;
+import com.skystream.skystreambackend.service.GeoQuantizer;
+import com.skystream.skystreambackend.service.IPLocationService;
+import com.skystream.skystreambackend.service.ProviderHealthService;
+import com.skystream.skystreambackend.service.ProviderHedger;
+import com.skystream.skystreambackend.service.RequestCoalescer;
+import com.skystream.skystreambackend.service.WeatherCacheService;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private final WeatherCacheService cache;
+    private final RequestCoalescer coalescer;
+    private final ProviderHedger hedger;
+    private final ProviderHealthService health;
+    private final ForecastStore forecastStore;
+    private final BlockingExecutor blocking;
+    private final CityAutocompleteService autocomplete;
+    private final FuzzySearchService fuzzy;
+    private final DatasetWatcher datasets;
+    private final DatasetSnapshots snapshots;
+    private final LocalCSVLoaderService csv;
+    private final NearestLocationService nearest;
+    private final IPLocationService ipLocation;
+    private final GeoQuantizer geo;
+    private final LocationResolver locations;
+    private final NegativeCache negativeCache;
+
+    public StatsController(WeatherCacheService cache,
+                           RequestCoalescer coalescer,
+                           ProviderHedger hedger,
+                           ProviderHealthService health,
+                           ForecastStore forecastStore,
+                           BlockingExecutor blocking,
+                           CityAutocompleteService autocomplete,
+                           FuzzySearchService fuzzy,
+                           DatasetWatcher datasets,
+                           DatasetSnapshots snapshots,
+                           LocalCSVLoaderService csv,
+                           NearestLocationService nearest,
+                           IPLocationService ipLocation,
+                           GeoQuantizer geo,
+                           LocationResolver locations,
+                           NegativeCache negativeCache) {
+        this.cache = cache;
+        this.coalescer = coalescer;
+        this.hedger = hedger;
+        this.health = health;
+        this.forecastStore = forecastStore;
+        this.blocking = blocking;
+        this.autocomplete = autocomplete;
+        this.fuzzy = fuzzy;
+        this.datasets = datasets;
+        this.snapshots = snapshots;
+        this.csv = csv;
+        this.nearest = nearest;
+        this.ipLocation = ipLocation;
+        this.geo = geo;
+        this.locations = locations;
+        this.negativeCache = negativeCache;
+    }
+
+    @GetMapping
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("cache", cache.stats());
+        out.put("coalescer", coalescer.stats());
+        out.put("hedge", hedger.stats());
+        out.put("providers", health.stats());
+        out.put("forecast", forecastStore.stats());
+        out.put("execution", blocking.stats());
+        out.put("autocomplete", autocomplete.stats());
+        out.put("fuzzy", fuzzy.stats());
+        out.put("datasets", datasets.stats());
+        out.put("snapshots", snapshots.stats());
+        out.put("mappedGlobal", csv.mappedStats());
+        out.put("nearest", nearest.stats());
+        out.put("ipLocation", ipLocation.stats());
+        out.put("geo", geo.stats());
+        out.put("locations", locations.stats());
+        out.put("negativeCache", negativeCache.stats());
+        return out;
+    }
+}
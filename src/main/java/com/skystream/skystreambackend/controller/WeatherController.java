@@ -1,12 +1,15 @@
 package com.skystream.skystreambackend.controller;
 
-import com.skystream.skystreambackend.dto.WeatherResponse;
 import com.skystream.skystreambackend.service.*;
 
 import jakarta.servlet.http.HttpServletRequest;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
 import java.util.List;
@@ -17,82 +20,193 @@ import java.util.Map;
 public class WeatherController {
 
     private final WeatherFailoverService failoverService;
-    private final WeatherMapper mapper;
-    private final WeatherApiClient api;
+    private final CityAutocompleteService autocomplete;
     private final FuzzySearchService fuzzy;
     private final IPLocationService ipService;
+    private final NearestLocationService nearest;
+
+    @Value("${weather.batch.max-cities:500}")
+    private int maxBatchCities;
 
     // ✅ SINGLE constructor, ALL dependencies injected safely
     public WeatherController(
             WeatherFailoverService failoverService,
-            WeatherMapper mapper,
-            WeatherApiClient api,
+            CityAutocompleteService autocomplete,
             FuzzySearchService fuzzy,
-            IPLocationService ipService
+            IPLocationService ipService,
+            NearestLocationService nearest
     ) {
         this.failoverService = failoverService;
-        this.mapper = mapper;
-        this.api = api;
+        this.autocomplete = autocomplete;
         this.fuzzy = fuzzy;
         this.ipService = ipService;
+        this.nearest = nearest;
     }
 
     // ---------------- CURRENT WEATHER ----------------
+    // ?city=Paris, ?city=48.85,2.35 or ?lat=48.85&lon=2.35
     @GetMapping("/current")
-    public ResponseEntity<WeatherResponse> current(@RequestParam String city) {
-        Map<String, Object> raw = failoverService.getWeather(city);
-        WeatherResponse resp = mapper.mapToUnified(raw);
-        return ResponseEntity.ok(resp);
+    public Mono<ResponseEntity<?>> current(
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lon) {
+
+        String query = city;
+        if (lat != null || lon != null) {
+            if (lat == null || lon == null || !GeoPoint.valid(lat, lon)) {
+                return Mono.just(badCoordinates());
+            }
+            query = new GeoPoint(lat, lon).toString();
+        }
+        if (query == null || query.isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().body(
+                    Map.of(
+                            "error", "missing-location",
+                            "message", "city or lat/lon required"
+                    )
+            ));
+        }
+
+        return failoverService.getWeatherAsync(query)
+                .map(ResponseEntity::ok);
     }
 
-    // ---------------- FORECAST ----------------
-    @GetMapping("/forecast")
-    public ResponseEntity<?> forecast(
-            @RequestParam String city,
-            @RequestParam(defaultValue = "7") int days) {
+    // ---------------- NEAREST DATASET LOCATIONS ----------------
+    @GetMapping("/nearest")
+    public ResponseEntity<?> nearest(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5") int k) {
+
+        if (!GeoPoint.valid(lat, lon)) return badCoordinates();
 
-        Map<String, Object> raw = failoverService.getForecast(city, days);
-        return ResponseEntity.ok(raw);
+        return ResponseEntity.ok(Map.of("results", nearest.nearest(new GeoPoint(lat, lon), Math.max(1, Math.min(k, 50)))));
     }
 
-    // ---------------- SEARCH / AUTOCOMPLETE ----------------
-    @GetMapping("/search")
-   public ResponseEntity<?> search(@RequestParam String q) {
+    private ResponseEntity<?> badCoordinates() {
+        return ResponseEntity.badRequest().body(
+                Map.of(
+                        "error", "coordinates",
+                        "message", "lat must be -90..90 and lon -180..180"
+                )
+        );
+    }
+
+    // ---------------- BATCH CURRENT WEATHER ----------------
+    @PostMapping(value = "/current/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> currentBatch(@RequestBody List<String> cities) {
+
+        if (cities == null || cities.isEmpty() || cities.size() > maxBatchCities) {
+            return Mono.just(tooManyCities());
+        }
+        if (hasBlankCity(cities)) {
+            return Mono.just(blankCity());
+        }
 
-    try {
-        List<Map<String, Object>> list = api.searchCitiesTyped(q);
+        return failoverService.getWeatherBatch(cities, true)
+                .collectList()
+                .map(results -> ResponseEntity.ok(Map.of("results", results)));
+    }
+
+    // same, streamed as NDJSON: one line per city as soon as it resolves;
+    // a rejected batch is a single line with the JSON variant's error body
+    @PostMapping(value = "/current/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<Map<String, Object>>> currentBatchStream(@RequestBody List<String> cities) {
+
+        if (cities == null || cities.isEmpty() || cities.size() > maxBatchCities) {
+            return badBatchStream(tooManyCitiesError());
+        }
+        if (hasBlankCity(cities)) {
+            return badBatchStream(blankCityError());
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(failoverService.getWeatherBatch(cities, false));
+    }
 
-        return ResponseEntity.ok(
-                Map.of("results", list)
+    private static ResponseEntity<Flux<Map<String, Object>>> badBatchStream(Map<String, Object> error) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(error));
+    }
+
+    private ResponseEntity<?> tooManyCities() {
+        return ResponseEntity.badRequest().body(tooManyCitiesError());
+    }
+
+    private Map<String, Object> tooManyCitiesError() {
+        return Map.of(
+                "error", "batch-size",
+                "message", "1 to " + maxBatchCities + " cities per request"
         );
+    }
 
-    } catch (Exception e) {
-        e.printStackTrace();
-        return ResponseEntity.status(500).body(
-                Map.of(
-                        "error", "search-failed",
-                        "message", e.getMessage()
-                )
+    // JSON null or "" entries would fail the batch halfway (NPE in Flux.fromIterable)
+    private static boolean hasBlankCity(List<String> cities) {
+        for (String city : cities) {
+            if (city == null || city.isBlank()) return true;
+        }
+        return false;
+    }
+
+    private ResponseEntity<?> blankCity() {
+        return ResponseEntity.badRequest().body(blankCityError());
+    }
+
+    private static Map<String, Object> blankCityError() {
+        return Map.of(
+                "error", "batch-city",
+                "message", "every city must be a non-empty string"
         );
     }
-}
 
+    // ---------------- FORECAST ----------------
+    @GetMapping("/forecast")
+    public Mono<ResponseEntity<?>> forecast(
+            @RequestParam String city,
+            @RequestParam(defaultValue = "7") int days) {
 
-    // ---------------- IP LOCATION ----------------
-    @GetMapping("/location/ip")
-    public ResponseEntity<?> detectCityFromIP(HttpServletRequest request) {
+        return failoverService.getForecastAsync(city, days)
+                .map(ResponseEntity::ok);
+    }
 
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null) ip = request.getRemoteAddr();
+    // ---------------- SEARCH / AUTOCOMPLETE ----------------
+    @GetMapping("/search")
+   public Mono<ResponseEntity<?>> search(@RequestParam String q) {
+
+    // local index first; WeatherAPI only when nothing local matches
+    return autocomplete.search(q)
+            .<ResponseEntity<?>>map(list -> ResponseEntity.ok(
+                    Map.of("results", list)
+            ))
+            .onErrorResume(e -> {
+                e.printStackTrace();
+                return Mono.just(ResponseEntity.status(500).body(
+                        Map.of(
+                                "error", "search-failed",
+                                "message", String.valueOf(e.getMessage())
+                        )
+                ));
+            });
+}
 
-        Map<String, Object> data = ipService.lookup(ip);
 
-        return ResponseEntity.ok(
-                Map.of(
-                        "ip", ip,
-                        "city", data.get("city"),
-                        "raw", data
-                )
-        );
+    // ---------------- IP LOCATION ----------------
+    @GetMapping("/location/ip")
+    public Mono<ResponseEntity<?>> detectCityFromIP(HttpServletRequest request) {
+
+        // client end of the proxy chain, not the raw header
+        String ip = ipService.clientAddress(request.getRemoteAddr(), request.getHeader("X-Forwarded-For"));
+
+        return ipService.lookupAsync(ip)
+                .map(data -> {
+                    // Map.of rejects nulls; "city" is missing on lookup errors
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("ip", ip);
+                    body.put("city", data.get("city"));
+                    body.put("raw", data);
+                    return ResponseEntity.ok(body);
+                });
     }
 }
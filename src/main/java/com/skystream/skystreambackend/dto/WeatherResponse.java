@@ -15,6 +15,13 @@ public class WeatherResponse {
     public String source;
     public String city;
 
+    /**
+     * Where the provider placed the city (WeatherAPI: country and region names,
+     * OpenWeatherMap: country code only)
+     */
+    public String country;
+    public String region;
+
     public Double temperature;
     public String condition;
     public String icon;
@@ -59,8 +66,41 @@ public class WeatherResponse {
     public List<Map<String, Object>> daily;
 
     // ----------------------------
-    // DEFAULT CONSTRUCTOR
+    // CACHE
+    // ----------------------------
+    /**
+     * True when served from cache because every live provider failed
+     */
+    public Boolean stale;
+
+    // ----------------------------
+    // CONSTRUCTORS
     // ----------------------------
     public WeatherResponse() {
     }
+
+    /**
+     * Shallow copy (lists and maps are shared)
+     */
+    public WeatherResponse(WeatherResponse other) {
+        this.source = other.source;
+        this.city = other.city;
+        this.country = other.country;
+        this.region = other.region;
+        this.temperature = other.temperature;
+        this.condition = other.condition;
+        this.icon = other.icon;
+        this.humidity = other.humidity;
+        this.wind = other.wind;
+        this.sunrise = other.sunrise;
+        this.sunset = other.sunset;
+        this.aqi = other.aqi;
+        this.epaIndex = other.epaIndex;
+        this.airQualityRaw = other.airQualityRaw;
+        this.uv = other.uv;
+        this.visibility = other.visibility;
+        this.hourly = other.hourly;
+        this.daily = other.daily;
+        this.stale = other.stale;
+    }
 }
@@ -0,0 +1,80 @@
+package com.skystream.skystreambackend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Where blocking work runs (CSV tier, dataset work, structured failover tiers).
+ * - default          : platform threads (Reactor boundedElastic + a cached pool for tier scopes)
+ * - virtual threads  : spring.threads.virtual.enabled=true on JDK 21+; one virtual thread per task
+ *                      (the same Boot property also moves Tomcat's request threads onto virtual threads)
+ */
+@Service
+public class BlockingExecutor {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualRequested;
+
+    private boolean virtual;
+    private ExecutorService executor;
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        virtual = virtualRequested && VirtualThreads.supported();
+
+        if (virtual) {
+            executor = VirtualThreads.newPerTaskExecutor();
+            scheduler = Schedulers.fromExecutorService(executor, "virtual");
+            System.out.println("✔ Virtual-thread execution mode enabled");
+        } else {
+            if (virtualRequested) {
+                System.err.println("❌ Virtual threads requested but not available on " + Runtime.version()
+                        + " (JDK 21+ needed); using platform threads");
+            }
+            AtomicInteger n = new AtomicInteger();
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "weather-tier-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler = Schedulers.boundedElastic();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /** Reactor scheduler for blocking segments of a reactive chain. */
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    public <T> TierScope<T> openScope(Deadline deadline) {
+        return new TierScope<>(executor, deadline);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("mode", virtual ? "virtual" : "platform");
+        out.put("virtualRequested", virtualRequested);
+        out.put("virtualSupported", VirtualThreads.supported());
+        return out;
+    }
+}
@@ -0,0 +1,89 @@
+package com.skystream.skystreambackend.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over strings: "definitely not added" or "maybe added".
+ * Sized from the expected insertions and target false-positive rate; k bit positions
+ * per key come from one 64-bit hash (double hashing). Bits are set with CAS, so
+ * concurrent put / mightContain need no lock. There is no delete - callers rotate filters.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+
+        // m = -n ln p / (ln 2)^2, k = m / n ln 2
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, (m + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = 64L * wordCount;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+    }
+
+    public void put(String key) {
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            long mask = 1L << bit;
+            int w = (int) (bit >>> 6);
+            if ((words.get(w) & mask) == 0) words.accumulateAndGet(w, mask, (a, b) -> a | b);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public long insertions() {
+        return insertions.get();
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public long sizeBytes() {
+        return 8L * words.length();
+    }
+
+    /** False-positive probability at the current fill: (set bits / bits)^k. */
+    public double currentFpp() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) set += Long.bitCount(words.get(i));
+        return Math.pow((double) set / bits, hashes);
+    }
+
+    // FNV-1a over the chars, then the murmur3 finalizer so both halves are well mixed
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
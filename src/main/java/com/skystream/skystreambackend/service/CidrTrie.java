@@ -0,0 +1,121 @@
+package com.skystream.skystreambackend.service;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Binary radix trie over address bits for longest-prefix match (one trie per address family).
+ * Nodes live in parallel int arrays (two children + value), so the whole trie is a few
+ * primitive arrays and a lookup is at most 32 / 128 array reads.
+ * Filled by one thread, then read-only.
+ */
+public final class CidrTrie {
+
+    private static final int NONE = -1;
+
+    private final int bits;
+
+    private int[] zero = new int[1024];
+    private int[] one = new int[1024];
+    private int[] value = new int[1024];
+    private int nodes = 1;
+
+    public CidrTrie(int bits) {
+        this.bits = bits;
+        zero[0] = NONE;
+        one[0] = NONE;
+        value[0] = NONE;
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public int nodeCount() {
+        return nodes;
+    }
+
+    /** Maps address/prefixLength to value (value >= 0); a longer prefix overrides it inside its range. */
+    public void insert(byte[] address, int prefixLength, int v) {
+        int node = 0;
+        for (int i = 0; i < prefixLength; i++) {
+            boolean bit = bit(address, i);
+            int next = bit ? one[node] : zero[node];
+            if (next == NONE) {
+                next = newNode();
+                if (bit) one[node] = next;
+                else zero[node] = next;
+            }
+            node = next;
+        }
+        value[node] = v;
+    }
+
+    /** Every CIDR block of the inclusive range [first, last] (same family), each mapped to v. */
+    public void insertRange(byte[] first, byte[] last, int v) {
+        BigInteger lo = new BigInteger(1, first);
+        BigInteger hi = new BigInteger(1, last);
+        while (lo.compareTo(hi) <= 0) {
+            // largest aligned block starting at lo that stays within hi
+            int size = lo.signum() == 0 ? bits : Math.min(bits, lo.getLowestSetBit());
+            while (size > 0 && lo.add(BigInteger.ONE.shiftLeft(size)).subtract(BigInteger.ONE).compareTo(hi) > 0) {
+                size--;
+            }
+            insert(toBytes(lo), bits - size, v);
+            lo = lo.add(BigInteger.ONE.shiftLeft(size));
+        }
+    }
+
+    /** Value of the longest prefix containing the address, or -1. */
+    public int longestMatch(byte[] address) {
+        int node = 0;
+        int best = value[0];
+        for (int i = 0; i < bits; i++) {
+            node = bit(address, i) ? one[node] : zero[node];
+            if (node == NONE) break;
+            if (value[node] != NONE) best = value[node];
+        }
+        return best;
+    }
+
+    /** Drops spare capacity once loading is done. */
+    public void trim() {
+        zero = Arrays.copyOf(zero, nodes);
+        one = Arrays.copyOf(one, nodes);
+        value = Arrays.copyOf(value, nodes);
+    }
+
+    public long estimatedBytes() {
+        return 12L * zero.length;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private int newNode() {
+        if (nodes == zero.length) {
+            int cap = nodes * 2;
+            zero = Arrays.copyOf(zero, cap);
+            one = Arrays.copyOf(one, cap);
+            value = Arrays.copyOf(value, cap);
+        }
+        zero[nodes] = NONE;
+        one[nodes] = NONE;
+        value[nodes] = NONE;
+        return nodes++;
+    }
+
+    private static boolean bit(byte[] address, int i) {
+        return (address[i >>> 3] & (0x80 >>> (i & 7))) != 0;
+    }
+
+    private byte[] toBytes(BigInteger n) {
+        byte[] raw = n.toByteArray();
+        byte[] out = new byte[bits / 8];
+        // raw may carry a leading sign byte or be shorter than the address
+        int copy = Math.min(raw.length, out.length);
+        System.arraycopy(raw, raw.length - copy, out, out.length - copy, copy);
+        return out;
+    }
+}
@@ -0,0 +1,524 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local city autocomplete.
+ * A character trie over normalized city names (full name + every word start),
+ * where each node keeps its own ranked top-k, so a lookup is one walk down the prefix.
+ * Seeded from the CSV datasets and extended with every upstream search.json result.
+ * A query with no prefix match is tried as a misspelling of a known city (FuzzySearchService);
+ * WeatherAPI is only called when neither matches.
+ *
+ * The trie is immutable once published: a reload or a batch of learned cities builds a
+ * new Index off to the side and swaps it in, so lookups never wait on a build.
+ */
+@Service
+@Order(Ordered.LOWEST_PRECEDENCE)   // reloads after the CSV tables it reads
+public class CityAutocompleteService implements ReloadableDataset {
+
+    // suggestions kept per trie node (= max results per query)
+    @Value("${weather.autocomplete.top-k:10}")
+    private int topK;
+
+    // queries shorter than this are never sent upstream
+    @Value("${weather.autocomplete.min-upstream-chars:3}")
+    private int minUpstreamChars;
+
+    // cities only known from upstream search results; past this, learning just promotes known ones
+    @Value("${weather.autocomplete.max-learned:50000}")
+    private int maxLearned;
+
+    @Autowired
+    private LocalCSVLoaderService csvService;
+
+    @Autowired
+    private BlockingExecutor blocking;
+
+    @Autowired
+    private WeatherApiClient api;
+
+    @Autowired
+    private FuzzySearchService fuzzy;
+
+    // score of a city seen only in a local dataset; upstream results start above it
+    private static final int DATASET_SCORE = 1;
+    private static final int UPSTREAM_SCORE = 2;
+
+    // dataset columns read per row: header candidates, first non-blank wins
+    private static final String[][] SEED_COLUMNS = {
+            {"location_name", "city", "capital", "name"}, {"country"}, {"region"},
+            {"country_alpha2", "country_code"}, {"lat", "latitude"}, {"lon", "longitude"}};
+
+    private volatile Index index = new Index(new Node(), Map.of(), Map.of(), 1);
+
+    // dataset cities as of the last (re)load, reused by rebuilds that only add learned cities
+    private volatile List<Seed> seeds = List.of();
+
+    // normalized "name|country" -> what upstream search results said about it
+    private final Map<String, Learned> learnedCities = new ConcurrentHashMap<>();
+
+    // set while a rebuild for newly learned cities is queued
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong fuzzyHits = new AtomicLong();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong learned = new AtomicLong();
+
+    // build off the startup path; until then every query is a miss
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        blocking.scheduler().schedule(this::reload);
+    }
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /**
+     * Ranked suggestions in WeatherAPI search.json shape.
+     * Local index first; upstream (and learning its results) only on a miss.
+     */
+    public Mono<List<Map<String, Object>>> search(String q) {
+        return Mono.defer(() -> {
+            List<Map<String, Object>> local = suggest(q);
+            if (!local.isEmpty()) {
+                localHits.incrementAndGet();
+                return Mono.just(local);
+            }
+
+            // "Hydrabad" -> "hyderabad"
+            String near = fuzzy.closest(normalize(q));
+            List<Map<String, Object>> corrected = near != null ? suggest(near) : List.of();
+            if (!corrected.isEmpty()) {
+                fuzzyHits.incrementAndGet();
+                return Mono.just(corrected);
+            }
+
+            if (normalize(q).length() < minUpstreamChars) return Mono.just(List.of());
+
+            upstreamCalls.incrementAndGet();
+            return api.searchCitiesAsync(q).doOnNext(this::learn);
+        });
+    }
+
+    /** Top-k local suggestions for the prefix; empty when nothing matches. */
+    public List<Map<String, Object>> suggest(String q) {
+        String key = normalize(q);
+        if (key.isEmpty()) return List.of();
+
+        Node node = index.root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) return List.of();
+
+        List<Map<String, Object>> out = new ArrayList<>(node.top.length);
+        for (Entry e : node.top) out.add(e.toMap());
+        return out;
+    }
+
+    /**
+     * Adds (or promotes) cities from an upstream search.json result.
+     * They show up once the queued rebuild publishes the next index.
+     */
+    public void learn(List<Map<String, Object>> results) {
+        if (results == null || results.isEmpty()) return;
+
+        Index current = index;
+        for (Map<String, Object> r : results) {
+            String name = str(r.get("name")).trim();
+            if (normalize(name).isEmpty()) continue;
+            String key = normalize(name) + "|" + normalize(str(r.get("country")));
+
+            // past the cap only cities already known get promoted
+            boolean known = learnedCities.containsKey(key) || current.entries.containsKey(key);
+            if (!known && learnedCities.size() >= maxLearned) continue;
+
+            learnedCities.merge(key, Learned.of(name, r), Learned::seenAgain);
+        }
+        learned.addAndGet(results.size());
+
+        if (rebuildQueued.compareAndSet(false, true)) {
+            blocking.scheduler().schedule(() -> {
+                rebuildQueued.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    /**
+     * Coordinates of a city known locally (dataset or learned from upstream),
+     * best-ranked entry on name clashes; null when unknown or without coordinates.
+     */
+    public GeoPoint coordinates(String name) {
+        String key = normalize(name);
+        if (key.isEmpty()) return null;
+
+        Entry best = null;
+        for (Entry e : index.byName.getOrDefault(key, List.of())) {
+            if (e.lat == null || e.lon == null) continue;
+            if (best == null || RANK.compare(e, best) < 0) best = e;
+        }
+        return best != null && GeoPoint.valid(best.lat, best.lon) ? new GeoPoint(best.lat, best.lon) : null;
+    }
+
+    /** A known city: its own spelling and place, and how many known cities share the name. */
+    public record Match(String name, String country, String region, String countryCode, int homonyms) {}
+
+    /**
+     * Best-ranked known city whose full name is exactly the query (case, accents and
+     * spacing ignored) - never a prefix. A non-empty hint keeps only cities whose country
+     * code is the hint ("UA"), or whose country or region is the hint, starts with it,
+     * or has it as initials ("UK", "USA").
+     * Null when nothing matches.
+     */
+    public Match match(String name, String hint) {
+        String key = normalize(name);
+        if (key.isEmpty()) return null;
+        String h = normalize(hint);
+
+        List<Entry> named = index.byName.getOrDefault(key, List.of());
+        Entry best = null;
+        for (Entry e : named) {
+            if (!h.isEmpty() && !h.equals(normalize(e.countryCode))
+                    && !matchesHint(e.country, h) && !matchesHint(e.region, h)) continue;
+            if (best == null || RANK.compare(e, best) < 0) best = e;
+        }
+        return best == null ? null : new Match(best.name, best.country, best.region, best.countryCode, named.size());
+    }
+
+    public Map<String, Object> stats() {
+        Index current = index;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("cities", current.entries.size());
+        out.put("nodes", current.nodeCount);
+        out.put("learnedCities", learnedCities.size());
+        out.put("localHits", localHits.get());
+        out.put("fuzzyHits", fuzzyHits.get());
+        out.put("upstreamCalls", upstreamCalls.get());
+        out.put("learned", learned.get());
+        return out;
+    }
+
+    // =====================================================
+    // INDEX BUILD
+    // =====================================================
+
+    @Override
+    public String datasetName() {
+        return "autocomplete";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return csvService.dependsOn(relativePath);
+    }
+
+    // dataset cities are re-read (removed ones drop out); learned ones stay
+    @Override
+    public void reload() {
+        long start = System.nanoTime();
+
+        List<Seed> next = new ArrayList<>();
+        csvService.forEachGlobalRow(SEED_COLUMNS, row -> addSeed(next, row));
+        csvService.forEachDailyRow(SEED_COLUMNS, row -> addSeed(next, row));
+        seeds = List.copyOf(next);
+
+        Index built = rebuild();
+        System.out.println("✔ Autocomplete index: " + built.entries.size() + " cities, "
+                + built.nodeCount + " nodes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // row holds SEED_COLUMNS in order
+    private static void addSeed(List<Seed> out, String[] row) {
+        if (normalize(row[0]).isEmpty()) return;
+        out.add(new Seed(row[0], row[1], row[2], row[3], toDouble(row[4]), toDouble(row[5])));
+    }
+
+    // one build at a time, so a slower one never overwrites a newer index;
+    // the fuzzy corpus is replaced along with it, so removed cities leave both
+    private synchronized Index rebuild() {
+        Index built = Index.build(seeds, learnedCities.values(), topK);
+        fuzzy.replace(built.byName.keySet());
+        index = built;
+        return built;
+    }
+
+    /**
+     * One published version of the index. Entries and nodes are only written while
+     * it is built; readers get it through the volatile field and never lock.
+     */
+    private static final class Index {
+        final Node root;
+
+        // normalized "name|country" -> entry
+        final Map<String, Entry> entries;
+
+        // normalized name -> every entry with that name (one per country)
+        final Map<String, List<Entry>> byName;
+
+        final int nodeCount;
+
+        private Index(Node root, Map<String, Entry> entries, Map<String, List<Entry>> byName, int nodeCount) {
+            this.root = root;
+            this.entries = entries;
+            this.byName = byName;
+            this.nodeCount = nodeCount;
+        }
+
+        static Index build(List<Seed> seeds, Iterable<Learned> learned, int topK) {
+            Map<String, Entry> entries = new HashMap<>();
+
+            // earlier dataset rows win; later ones only fill gaps
+            for (Seed s : seeds) {
+                Entry e = entries.computeIfAbsent(normalize(s.name) + "|" + normalize(s.country),
+                        k -> new Entry(s.name, s.country, normalize(s.name), DATASET_SCORE));
+                if (e.region.isEmpty()) e.region = s.region;
+                if (e.countryCode.isEmpty()) e.countryCode = s.countryCode;
+                if (e.lat == null) e.lat = s.lat;
+                if (e.lon == null) e.lon = s.lon;
+            }
+
+            // upstream results override; a city upstream knows ranks above dataset-only ones
+            for (Learned l : learned) {
+                String key = normalize(l.name) + "|" + normalize(l.country);
+                Entry e = entries.get(key);
+                if (e == null) {
+                    e = new Entry(l.name, l.country, normalize(l.name), UPSTREAM_SCORE);
+                    entries.put(key, e);
+                }
+                e.score += l.hits;
+                if (l.id != null) e.id = l.id;
+                if (l.region != null) e.region = l.region;
+                if (l.url != null) e.url = l.url;
+                if (l.lat != null) e.lat = l.lat;
+                if (l.lon != null) e.lon = l.lon;
+            }
+
+            Map<String, List<Entry>> byName = new HashMap<>();
+            Node root = new Node();
+            int[] nodes = {1};
+            for (Entry e : entries.values()) {
+                byName.computeIfAbsent(e.key, n -> new ArrayList<>(1)).add(e);
+                index(root, e, topK, nodes);
+            }
+            return new Index(root, entries, byName, nodes[0]);
+        }
+
+        // inserts the entry under its full name and every word start
+        private static void index(Node root, Entry e, int topK, int[] nodes) {
+            String[] words = e.key.split(" ");
+            int offset = 0;
+            for (String w : words) {
+                insert(root, e.key.substring(offset), e, topK, nodes);
+                offset += w.length() + 1;
+            }
+        }
+
+        private static void insert(Node root, String key, Entry e, int topK, int[] nodes) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node next = node.child(key.charAt(i));
+                if (next == null) {
+                    next = node.addChild(key.charAt(i));
+                    nodes[0]++;
+                }
+                node = next;
+                node.offer(e, topK);
+            }
+        }
+    }
+
+    // a city as one dataset row describes it
+    private record Seed(String name, String country, String region, String countryCode, Double lat, Double lon) {}
+
+    // a city as upstream described it last, and how often it came back
+    private record Learned(String name, String country, Object id, String region, String url,
+                           Double lat, Double lon, int hits) {
+
+        static Learned of(String name, Map<String, Object> r) {
+            return new Learned(name, str(r.get("country")).trim(), r.get("id"),
+                    r.get("region") != null ? str(r.get("region")) : null,
+                    r.get("url") != null ? str(r.get("url")) : null,
+                    r.get("lat") instanceof Number n ? n.doubleValue() : null,
+                    r.get("lon") instanceof Number n ? n.doubleValue() : null, 1);
+        }
+
+        // newer fields win, missing ones keep the older value
+        Learned seenAgain(Learned newer) {
+            return new Learned(name, country,
+                    newer.id != null ? newer.id : id,
+                    newer.region != null ? newer.region : region,
+                    newer.url != null ? newer.url : url,
+                    newer.lat != null ? newer.lat : lat,
+                    newer.lon != null ? newer.lon : lon,
+                    hits + newer.hits);
+        }
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    // lowercase, no diacritics, single spaces
+    private static String normalize(String s) {
+        if (s == null) return "";
+        String t = Normalizer.normalize(s.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(t.length());
+        boolean space = false;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    // "france" / "fr" for France, "us" / "usa" for United States of America
+    private static boolean matchesHint(String place, String hint) {
+        String p = normalize(place);
+        if (p.isEmpty()) return false;
+        if (p.startsWith(hint)) return true;
+
+        StringBuilder initials = new StringBuilder();
+        for (String w : p.split(" ")) {
+            if (!w.isEmpty() && !w.equals("of") && !w.equals("the")) initials.append(w.charAt(0));
+        }
+        return hint.length() >= 2 && initials.length() >= 2 && initials.toString().startsWith(hint);
+    }
+
+    private static String str(Object o) {
+        return o == null ? "" : String.valueOf(o);
+    }
+
+    private static Double toDouble(String v) {
+        try {
+            return v == null || v.isBlank() ? null : Double.parseDouble(v);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // higher score first, then shorter name, then alphabetical
+    private static final Comparator<Entry> RANK = Comparator
+            .comparingInt((Entry e) -> -e.score)
+            .thenComparingInt(e -> e.name.length())
+            .thenComparing(e -> e.key);
+
+    private static final class Entry {
+        final String name;
+        final String country;
+        final String key;
+        int score;
+
+        Object id;
+        String region = "";
+        String countryCode = "";
+        String url = "";
+        Double lat;
+        Double lon;
+
+        Entry(String name, String country, String key, int score) {
+            this.name = name;
+            this.country = country;
+            this.key = key;
+            this.score = score;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", id);
+            m.put("name", name);
+            m.put("region", region);
+            m.put("country", country);
+            m.put("lat", lat);
+            m.put("lon", lon);
+            m.put("url", url);
+            return m;
+        }
+    }
+
+    private static final class Node {
+        private static final Node[] NO_KIDS = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        // sorted labels, parallel to kids
+        char[] labels = new char[0];
+        Node[] kids = NO_KIDS;
+
+        // ranked best entries below this node
+        Entry[] top = NO_ENTRIES;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? kids[i] : null;
+        }
+
+        Node addChild(char c) {
+            int at = -(Arrays.binarySearch(labels, c) + 1);
+            char[] l = new char[labels.length + 1];
+            Node[] k = new Node[kids.length + 1];
+            System.arraycopy(labels, 0, l, 0, at);
+            System.arraycopy(kids, 0, k, 0, at);
+            System.arraycopy(labels, at, l, at + 1, labels.length - at);
+            System.arraycopy(kids, at, k, at + 1, kids.length - at);
+
+            Node n = new Node();
+            l[at] = c;
+            k[at] = n;
+            labels = l;
+            kids = k;
+            return n;
+        }
+
+        // adds or re-ranks e in this node's top-k
+        void offer(Entry e, int k) {
+            Entry[] next;
+            int existing = -1;
+            for (int i = 0; i < top.length; i++) {
+                if (top[i] == e) existing = i;
+            }
+
+            if (existing >= 0) {
+                next = top.clone();
+            } else if (top.length < k) {
+                next = Arrays.copyOf(top, top.length + 1);
+                next[top.length] = e;
+            } else {
+                if (RANK.compare(e, top[top.length - 1]) >= 0) return;
+                next = top.clone();
+                next[next.length - 1] = e;
+            }
+            Arrays.sort(next, RANK);
+            top = next;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.skystream.skystreambackend.service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented, primitive-backed table for CSV datasets, addressed by row id.
+ * - DOUBLE : double[] (NaN = missing)
+ * - INT    : int[]    (MISSING_INT = missing)
+ * - DATE   : int[] epoch days (MISSING_INT = missing)
+ * - TEXT   : int[] codes into a per-column dictionary (code 0 = "")
+ * Built by one thread, then read-only; safe to share once published.
+ * write/read give a binary form (see DatasetSnapshots) that loads as bulk array copies.
+ */
+public final class ColumnarTable {
+
+    public enum Type { DOUBLE, INT, DATE, TEXT }
+
+    public static final int MISSING_INT = Integer.MIN_VALUE;
+
+    private final String[] names;
+    private final Type[] types;
+    private final Map<String, Integer> index = new HashMap<>();
+
+    // one of these is set per column, depending on its type
+    private final double[][] doubles;
+    private final int[][] ints;
+    private final Dictionary[] dictionaries;
+
+    private int size = 0;
+    private int capacity = 16;
+
+    public ColumnarTable(List<String> names, List<Type> types) {
+        int n = names.size();
+        this.names = names.toArray(new String[0]);
+        this.types = types.toArray(new Type[0]);
+        this.doubles = new double[n][];
+        this.ints = new int[n][];
+        this.dictionaries = new Dictionary[n];
+
+        for (int c = 0; c < n; c++) {
+            index.putIfAbsent(this.names[c], c);
+            allocate(c, this.types[c]);
+        }
+    }
+
+    /**
+     * Schema guessed from the first data row: ISO dates -> DATE, numbers -> DOUBLE, else TEXT.
+     * A column that later meets a value of another kind is widened to TEXT.
+     */
+    public static ColumnarTable infer(List<String> names, String[] firstRow) {
+        List<Type> types = new ArrayList<>(names.size());
+        for (int c = 0; c < names.size(); c++) {
+            String v = c < firstRow.length ? firstRow[c].trim() : "";
+            if (parseDate(v) != MISSING_INT) types.add(Type.DATE);
+            else if (!Double.isNaN(parseDouble(v))) types.add(Type.DOUBLE);
+            else types.add(Type.TEXT);
+        }
+        return new ColumnarTable(names, types);
+    }
+
+    // =====================================================
+    // SCHEMA
+    // =====================================================
+
+    public int size() {
+        return size;
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    /** Column index by name, or -1. */
+    public int column(String name) {
+        Integer c = index.get(name);
+        return c == null ? -1 : c;
+    }
+
+    public String name(int col) {
+        return names[col];
+    }
+
+    public Type type(int col) {
+        return types[col];
+    }
+
+    // =====================================================
+    // WRITE
+    // =====================================================
+
+    /** Appends an empty row (every value missing) and returns its id. */
+    public int addRow() {
+        if (size == capacity) grow(Math.max(capacity * 2, 16));
+
+        int row = size++;
+        for (int c = 0; c < names.length; c++) {
+            switch (types[c]) {
+                case DOUBLE -> doubles[c][row] = Double.NaN;
+                case INT, DATE -> ints[c][row] = MISSING_INT;
+                case TEXT -> ints[c][row] = 0;
+            }
+        }
+        return row;
+    }
+
+    /** Appends a row of raw CSV values, parsed per column type. */
+    public int append(String[] values) {
+        int row = addRow();
+        for (int c = 0; c < names.length && c < values.length; c++) {
+            setString(row, c, values[c]);
+        }
+        return row;
+    }
+
+    /** Appends every row of a table with the same schema; returns the id of its first row here. */
+    public int appendAll(ColumnarTable other) {
+        if (!Arrays.equals(types, other.types)) {
+            throw new IllegalArgumentException("schema mismatch");
+        }
+        int offset = size;
+        if (size + other.size > capacity) grow(Math.max(capacity * 2, size + other.size));
+
+        for (int c = 0; c < names.length; c++) {
+            switch (types[c]) {
+                case DOUBLE -> System.arraycopy(other.doubles[c], 0, doubles[c], offset, other.size);
+                case INT, DATE -> System.arraycopy(other.ints[c], 0, ints[c], offset, other.size);
+                case TEXT -> {
+                    // re-encode through this table's dictionary
+                    for (int r = 0; r < other.size; r++) {
+                        ints[c][offset + r] = dictionaries[c].encode(other.dictionaries[c].decode(other.ints[c][r]));
+                    }
+                }
+            }
+        }
+        size += other.size;
+        return offset;
+    }
+
+    public void setDouble(int row, int col, double v) {
+        doubles[col][row] = v;
+    }
+
+    public void setInt(int row, int col, int v) {
+        ints[col][row] = v;
+    }
+
+    public void setDate(int row, int col, LocalDate d) {
+        ints[col][row] = d == null ? MISSING_INT : (int) d.toEpochDay();
+    }
+
+    public void setText(int row, int col, String v) {
+        ints[col][row] = dictionaries[col].encode(v == null ? "" : v);
+    }
+
+    /** Parses a raw value into the column's type; a value that does not fit widens the column to TEXT. */
+    public void setString(int row, int col, String raw) {
+        String v = raw == null ? "" : raw.trim();
+        if (types[col] == Type.TEXT) {
+            setText(row, col, v);
+            return;
+        }
+        if (v.isEmpty()) return;
+
+        switch (types[col]) {
+            case DOUBLE -> {
+                double d = parseDouble(v);
+                if (!Double.isNaN(d)) {
+                    doubles[col][row] = d;
+                    return;
+                }
+            }
+            case INT -> {
+                double d = parseDouble(v);
+                if (!Double.isNaN(d) && d == Math.rint(d)) {
+                    ints[col][row] = (int) d;
+                    return;
+                }
+            }
+            case DATE -> {
+                int day = parseDate(v);
+                if (day != MISSING_INT) {
+                    ints[col][row] = day;
+                    return;
+                }
+            }
+            default -> { }
+        }
+        widenToText(col);
+        setText(row, col, v);
+    }
+
+    /** Drops spare capacity once loading is done. */
+    public void trim() {
+        if (capacity > size) grow(Math.max(size, 1));
+    }
+
+    // =====================================================
+    // READ
+    // =====================================================
+
+    public double getDouble(int row, int col) {
+        return switch (types[col]) {
+            case DOUBLE -> doubles[col][row];
+            case INT -> ints[col][row] == MISSING_INT ? Double.NaN : ints[col][row];
+            default -> Double.NaN;
+        };
+    }
+
+    public int getInt(int row, int col) {
+        return switch (types[col]) {
+            case INT, DATE -> ints[col][row];
+            case DOUBLE -> Double.isNaN(doubles[col][row]) ? MISSING_INT : (int) Math.round(doubles[col][row]);
+            default -> MISSING_INT;
+        };
+    }
+
+    /** Epoch day of a DATE value, or MISSING_INT. */
+    public int getEpochDay(int row, int col) {
+        return types[col] == Type.DATE ? ints[col][row] : MISSING_INT;
+    }
+
+    /** Dictionary code of a TEXT value (0 = ""). Equal codes mean equal strings within a column. */
+    public int getCode(int row, int col) {
+        return types[col] == Type.TEXT ? ints[col][row] : 0;
+    }
+
+    /** Dictionary code for a string in a TEXT column, or -1 when it never occurs. */
+    public int codeOf(int col, String value) {
+        return types[col] == Type.TEXT ? dictionaries[col].lookup(value) : -1;
+    }
+
+    /** Any value formatted as text; "" when missing. */
+    public String getString(int row, int col) {
+        return switch (types[col]) {
+            case TEXT -> dictionaries[col].decode(ints[col][row]);
+            case DOUBLE -> Double.isNaN(doubles[col][row]) ? "" : formatDouble(doubles[col][row]);
+            case INT -> ints[col][row] == MISSING_INT ? "" : String.valueOf(ints[col][row]);
+            case DATE -> ints[col][row] == MISSING_INT ? "" : LocalDate.ofEpochDay(ints[col][row]).toString();
+        };
+    }
+
+    /** Backing array of a DOUBLE column for scans; only [0, size()) is valid. */
+    public double[] doubleColumn(int col) {
+        if (types[col] != Type.DOUBLE) throw new IllegalArgumentException(names[col] + " is " + types[col]);
+        return doubles[col];
+    }
+
+    /** Backing array of an INT / DATE / TEXT (codes) column; only [0, size()) is valid. */
+    public int[] intColumn(int col) {
+        if (types[col] == Type.DOUBLE) throw new IllegalArgumentException(names[col] + " is DOUBLE");
+        return ints[col];
+    }
+
+    /** One row as column name -> text value (built on demand). */
+    public Map<String, String> row(int row) {
+        Map<String, String> out = new HashMap<>();
+        for (int c = 0; c < names.length; c++) {
+            out.put(names[c], getString(row, c));
+        }
+        return out;
+    }
+
+    /** Read-only list view of the rows in map form, for callers that still want maps. */
+    public List<Map<String, String>> rows() {
+        return new AbstractList<>() {
+            @Override
+            public Map<String, String> get(int i) {
+                if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+                return row(i);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Approximate heap held by the columns and dictionaries. */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (int c = 0; c < names.length; c++) {
+            if (doubles[c] != null) bytes += 16L + 8L * doubles[c].length;
+            if (ints[c] != null) bytes += 16L + 4L * ints[c].length;
+            if (dictionaries[c] != null) bytes += dictionaries[c].estimatedBytes();
+        }
+        return bytes;
+    }
+
+    // =====================================================
+    // BINARY FORM
+    // =====================================================
+
+    /** Schema, then per column its values (and dictionary for TEXT); only [0, size()) is written. */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(names.length);
+        for (int c = 0; c < names.length; c++) {
+            DatasetSnapshots.writeString(out, names[c]);
+            out.writeByte(types[c].ordinal());
+        }
+        out.writeInt(size);
+
+        for (int c = 0; c < names.length; c++) {
+            switch (types[c]) {
+                case DOUBLE -> DatasetSnapshots.writeDoubles(out, doubles[c], size);
+                case INT, DATE -> DatasetSnapshots.writeInts(out, ints[c], size);
+                case TEXT -> {
+                    List<String> values = dictionaries[c].values;
+                    out.writeInt(values.size());
+                    for (String v : values) DatasetSnapshots.writeString(out, v);
+                    DatasetSnapshots.writeInts(out, ints[c], size);
+                }
+            }
+        }
+    }
+
+    /** Reads a table written by {@link #write}, leaving the buffer after it. */
+    public static ColumnarTable read(ByteBuffer in) {
+        int n = in.getInt();
+        List<String> names = new ArrayList<>(n);
+        List<Type> types = new ArrayList<>(n);
+        for (int c = 0; c < n; c++) {
+            names.add(DatasetSnapshots.readString(in));
+            types.add(Type.values()[in.get()]);
+        }
+        ColumnarTable t = new ColumnarTable(names, types);
+        int size = in.getInt();
+
+        for (int c = 0; c < n; c++) {
+            switch (t.types[c]) {
+                case DOUBLE -> t.doubles[c] = DatasetSnapshots.readDoubles(in);
+                case INT, DATE -> t.ints[c] = DatasetSnapshots.readInts(in);
+                case TEXT -> {
+                    // code 0 ("") is already there
+                    int count = in.getInt();
+                    for (int i = 0; i < count; i++) {
+                        String v = DatasetSnapshots.readString(in);
+                        if (i > 0) t.dictionaries[c].encode(v);
+                    }
+                    t.ints[c] = DatasetSnapshots.readInts(in);
+                }
+            }
+        }
+        t.size = size;
+        t.capacity = size;
+        return t;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private void allocate(int c, Type type) {
+        switch (type) {
+            case DOUBLE -> doubles[c] = new double[capacity];
+            case INT, DATE -> ints[c] = new int[capacity];
+            case TEXT -> {
+                ints[c] = new int[capacity];
+                dictionaries[c] = new Dictionary();
+            }
+        }
+    }
+
+    private void grow(int newCapacity) {
+        for (int c = 0; c < names.length; c++) {
+            if (doubles[c] != null) doubles[c] = Arrays.copyOf(doubles[c], newCapacity);
+            if (ints[c] != null) ints[c] = Arrays.copyOf(ints[c], newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+    // re-encodes what the column already holds as text
+    private void widenToText(int col) {
+        Dictionary dict = new Dictionary();
+        int[] codes = new int[capacity];
+        for (int r = 0; r < size; r++) {
+            codes[r] = dict.encode(getString(r, col));
+        }
+        types[col] = Type.TEXT;
+        doubles[col] = null;
+        ints[col] = codes;
+        dictionaries[col] = dict;
+    }
+
+    // shortest plain decimal: 45 not "45.0", 0.0001 not "1.0E-4"
+    private static String formatDouble(double v) {
+        if (Double.isInfinite(v)) return String.valueOf(v);
+        return BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+    }
+
+    private static double parseDouble(String v) {
+        if (v == null || v.isEmpty()) return Double.NaN;
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // plain yyyy-MM-dd only; timestamps stay TEXT so no time part is dropped
+    private static int parseDate(String v) {
+        if (v == null || v.length() != 10 || v.charAt(4) != '-' || v.charAt(7) != '-') return MISSING_INT;
+        try {
+            return (int) LocalDate.parse(v).toEpochDay();
+        } catch (Exception e) {
+            return MISSING_INT;
+        }
+    }
+
+    // string <-> dense int code, code 0 reserved for ""
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Dictionary() {
+            encode("");
+        }
+
+        int encode(String v) {
+            Integer code = codes.get(v);
+            if (code != null) return code;
+            int next = values.size();
+            codes.put(v, next);
+            values.add(v);
+            return next;
+        }
+
+        int lookup(String v) {
+            Integer code = codes.get(v);
+            return code == null ? -1 : code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        long estimatedBytes() {
+            long bytes = 64L * values.size();
+            for (String v : values) bytes += 2L * v.length();
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Resolves dataset files by classpath-relative path ("data/history_latest.csv").
+ * External directories (weather.datasets.dirs, same layout as the classpath) are
+ * checked first, in order; the bundled classpath copy is the default.
+ */
+@Service
+public class DatasetLocator {
+
+    private final List<Path> dirs = new ArrayList<>();
+
+    public DatasetLocator(@Value("${weather.datasets.dirs:}") String dirsProperty) {
+        for (String d : dirsProperty.split(",")) {
+            if (!d.isBlank()) dirs.add(Paths.get(d.trim()).toAbsolutePath().normalize());
+        }
+    }
+
+    public List<Path> externalDirs() {
+        return dirs;
+    }
+
+    /** External file if one exists, otherwise the classpath resource (which may not exist). */
+    public Resource resolve(String relativePath) {
+        for (Path dir : dirs) {
+            Path p = dir.resolve(relativePath);
+            if (Files.isRegularFile(p)) return new FileSystemResource(p);
+        }
+        return new ClassPathResource(relativePath);
+    }
+
+    /**
+     * Every file with the extension under a folder, classpath and external dirs merged by
+     * relative path; an external file replaces the bundled one of the same name.
+     */
+    public List<Resource> resolveAll(String folder, String extension) throws IOException {
+        Map<String, Resource> byName = new LinkedHashMap<>();
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (Resource r : resolver.getResources("classpath*:" + folder + "/**/*" + extension)) {
+            byName.putIfAbsent(relativeName(r, folder), r);
+        }
+
+        // later dirs first so earlier dirs win
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            Path root = dirs.get(i).resolve(folder);
+            if (!Files.isDirectory(root)) continue;
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(extension))
+                        .sorted()
+                        .forEach(p -> byName.put(root.relativize(p).toString().replace('\\', '/'),
+                                new FileSystemResource(p)));
+            }
+        }
+        return new ArrayList<>(byName.values());
+    }
+
+    // path below the folder for classpath resources; file name as a fallback
+    private String relativeName(Resource r, String folder) {
+        try {
+            String url = r.getURL().toString();
+            String marker = "/" + folder + "/";
+            int i = url.lastIndexOf(marker);
+            return i >= 0 ? url.substring(i + marker.length()) : r.getFilename();
+        } catch (IOException e) {
+            return r.getFilename();
+        }
+    }
+}
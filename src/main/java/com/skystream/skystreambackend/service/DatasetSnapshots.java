@@ -0,0 +1,187 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary snapshots of parsed datasets (tables + indexes), written after a CSV parse and
+ * memory-mapped on the next start instead of parsing again.
+ * A snapshot is only used when its fingerprint (format version, the dataset's schema
+ * version + every source file's name, size and modification time) matches the current
+ * sources; otherwise the caller parses the CSVs and writes a fresh one.
+ *
+ * Layout: MAGIC, FORMAT, fingerprint, then the dataset's own payload.
+ *
+ * Off until weather.datasets.snapshots.dir names a directory only this app writes to:
+ * a snapshot is mapped and trusted as parsed data, so it must not live somewhere shared.
+ */
+@Service
+public class DatasetSnapshots {
+
+    private static final int MAGIC = 0x534B5953;   // "SKYS"
+    private static final int FORMAT = 1;
+
+    @Value("${weather.datasets.snapshots.enabled:true}")
+    private boolean enabled;
+
+    @Value("${weather.datasets.snapshots.dir:}")
+    private String dir;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface Decoder<T> {
+        T read(ByteBuffer in);
+    }
+
+    /**
+     * Short version of what a dataset's parser depends on besides the files (column
+     * candidates, table layout, a parser revision); changes when any part changes.
+     */
+    public static String schema(Object... parts) {
+        // toString-based, so enum parts hash the same on every JVM
+        return Integer.toHexString(Arrays.deepToString(parts).hashCode());
+    }
+
+    /** Fingerprint of the source files a dataset is built from, under the parser's schema version. */
+    public String fingerprint(String schema, List<Resource> sources) {
+        StringBuilder sb = new StringBuilder("v").append(FORMAT).append('|').append(schema);
+        for (Resource r : sources) {
+            sb.append('|').append(r.getDescription());
+            try {
+                if (!r.exists()) {
+                    sb.append(":missing");
+                    continue;
+                }
+                sb.append(':').append(r.contentLength()).append(':').append(r.lastModified());
+            } catch (IOException e) {
+                sb.append(":unknown");
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Decoded snapshot, or null when snapshots are off, or the file is missing, stale or unreadable. */
+    public <T> T load(String name, String fingerprint, Decoder<T> decoder) {
+        if (!active()) return null;
+
+        Path file = file(name);
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT) return null;
+            if (!fingerprint.equals(readString(buf))) return null;
+
+            T value = decoder.read(buf);
+            hits.incrementAndGet();
+            return value;
+        } catch (Exception e) {
+            System.err.println("❌ Snapshot " + name + " unreadable, rebuilding: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Writes the snapshot to a temp file and moves it into place, so readers never see a partial file. */
+    public void save(String name, String fingerprint, Payload payload) {
+        rebuilds.incrementAndGet();
+        if (!active()) return;
+
+        Path file = file(name);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), name, ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                writeString(out, fingerprint);
+                payload.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("❌ Snapshot " + name + " not written: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", active());
+        out.put("dir", dir);
+        out.put("hits", hits.get());
+        out.put("rebuilds", rebuilds.get());
+        return out;
+    }
+
+    // =====================================================
+    // ENCODING HELPERS
+    // =====================================================
+
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    public static String readString(ByteBuffer in) {
+        byte[] b = new byte[in.getInt()];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    public static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) out.writeInt(values[i]);
+    }
+
+    /** Bulk copy out of the mapped buffer (no per-value decoding). */
+    public static int[] readInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * 4);
+        return values;
+    }
+
+    public static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) out.writeDouble(values[i]);
+    }
+
+    public static double[] readDoubles(ByteBuffer in) {
+        double[] values = new double[in.getInt()];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + values.length * 8);
+        return values;
+    }
+
+    private Path file(String name) {
+        return Paths.get(dir).resolve(name + ".snap");
+    }
+
+    private boolean active() {
+        return enabled && dir != null && !dir.isBlank();
+    }
+}
@@ -0,0 +1,192 @@
+package com.skystream.skystreambackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the external dataset dirs (weather.datasets.dirs) and rebuilds the affected
+ * datasets on a background thread once changes settle (debounce). Each dataset swaps its
+ * new version in atomically; requests keep reading the old one until then.
+ */
+@Service
+public class DatasetWatcher {
+
+    // quiet period after the last change before reloading (files are often written in pieces)
+    @Value("${weather.datasets.debounce-ms:1000}")
+    private long debounceMs;
+
+    @Autowired
+    private DatasetLocator locator;
+
+    // in dependency order (@Order), e.g. CSV tables before the autocomplete built from them
+    @Autowired
+    private List<ReloadableDataset> datasets;
+
+    private WatchService watcher;
+    private final Map<WatchKey, Path[]> keys = new HashMap<>();   // key -> {root, dir}
+
+    private final Map<String, Status> status = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (ReloadableDataset d : datasets) status.put(d.datasetName(), new Status());
+        if (locator.externalDirs().isEmpty()) return;
+
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            for (Path root : locator.externalDirs()) {
+                if (Files.isDirectory(root)) registerTree(root, root);
+                else System.err.println("❌ Dataset dir not found: " + root);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Dataset watcher failed to start: " + e.getMessage());
+            return;
+        }
+
+        Thread t = new Thread(this::watchLoop, "dataset-watcher");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("✔ Watching dataset dirs " + locator.externalDirs());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watcher != null) watcher.close();
+    }
+
+    /** Rebuilds every dataset that depends on one of the changed paths; returns the names reloaded. */
+    public List<String> reloadChanged(Set<String> changedPaths) {
+        List<String> done = new ArrayList<>();
+        for (ReloadableDataset d : datasets) {
+            if (changedPaths.stream().noneMatch(d::dependsOn)) continue;
+            reload(d);
+            done.add(d.datasetName());
+        }
+        return done;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("dirs", locator.externalDirs().stream().map(Path::toString).toList());
+        for (ReloadableDataset d : datasets) {
+            Status s = status.get(d.datasetName());
+            if (s != null) out.put(d.datasetName(), s.toMap());
+        }
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private void reload(ReloadableDataset d) {
+        Status s = status.computeIfAbsent(d.datasetName(), k -> new Status());
+        long start = System.nanoTime();
+        try {
+            d.reload();
+            s.version++;
+            s.lastReloadMs = (System.nanoTime() - start) / 1_000_000;
+            s.lastReloadAt = Instant.now().toString();
+            s.lastError = null;
+            System.out.println("✔ Reloaded " + d.datasetName() + " v" + s.version + " in " + s.lastReloadMs + " ms");
+        } catch (Exception e) {
+            // the previous version stays in place
+            s.failures++;
+            s.lastError = String.valueOf(e.getMessage());
+            System.err.println("❌ Reload of " + d.datasetName() + " failed: " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                Set<String> changed = new LinkedHashSet<>();
+                collect(watcher.take(), changed);
+
+                // keep collecting until the dirs stay quiet for debounceMs
+                WatchKey next;
+                while ((next = watcher.poll(debounceMs, TimeUnit.MILLISECONDS)) != null) {
+                    collect(next, changed);
+                }
+
+                if (!changed.isEmpty()) reloadChanged(changed);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        Path[] rootAndDir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (rootAndDir == null || event.kind() == OVERFLOW) continue;
+
+            Path path = rootAndDir[1].resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(rootAndDir[0], path);
+                } catch (IOException e) {
+                    System.err.println("❌ Cannot watch " + path + ": " + e.getMessage());
+                }
+                continue;
+            }
+            changed.add(rootAndDir[0].relativize(path).toString().replace('\\', '/'));
+        }
+        if (!key.reset()) keys.remove(key);
+    }
+
+    private void registerTree(Path root, Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                keys.put(d.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), new Path[]{root, d});
+            }
+        }
+    }
+
+    private static final class Status {
+        volatile long version = 1;   // 1 = loaded at startup
+        volatile long lastReloadMs = -1;
+        volatile String lastReloadAt;
+        volatile String lastError;
+        volatile long failures = 0;
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("version", version);
+            m.put("lastReloadMs", lastReloadMs);
+            m.put("lastReloadAt", lastReloadAt);
+            m.put("failures", failures);
+            m.put("lastError", lastError);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.skystream.skystreambackend.service;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * End-to-end request deadline. Tiers take slices of what is left,
+ * so the whole failover chain never runs past the request's latency budget.
+ */
+public final class Deadline {
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + millis * 1_000_000);
+    }
+
+    /** Same deadline, pulled in by the given reserve (kept for later tiers). */
+    public Deadline minus(long millis) {
+        return new Deadline(deadlineNanos - millis * 1_000_000);
+    }
+
+    public long remainingMs() {
+        return Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    /**
+     * Bounds the call by the given share of the time left when it is subscribed.
+     * Completes empty when the budget is spent or the call runs out of time.
+     */
+    public <T> Mono<T> bound(Mono<T> call, double share) {
+        return Mono.defer(() -> {
+            long budget = (long) (remainingMs() * share);
+            if (budget <= 0) return Mono.empty();
+            return call.timeout(Duration.ofMillis(budget), Mono.empty());
+        });
+    }
+}
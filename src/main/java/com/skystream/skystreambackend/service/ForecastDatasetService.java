@@ -3,6 +3,7 @@ package com.skystream.skystreambackend.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skystream.skystreambackend.dto.ForecastDay;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
@@ -11,24 +12,48 @@ import java.util.List;
 import java.util.Map;
 
 @Service
-public class ForecastDatasetService {
+public class ForecastDatasetService implements ReloadableDataset {
 
-    private Map<String, List<ForecastDay>> dataset;
+    private static final String PATH = "forecast-dataset.json";
+
+    @Autowired
+    private DatasetLocator locator;
+
+    private volatile Map<String, List<ForecastDay>> dataset = Map.of();
 
     @PostConstruct
     public void load() {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-
-            InputStream is = getClass().getClassLoader().getResourceAsStream("forecast-dataset.json");
-
-            dataset = mapper.readValue(is, new TypeReference<>() {});
+            dataset = read();
             System.out.println("Loaded fallback forecast dataset!");
         } catch (Exception e) {
             System.out.println("Failed to load dataset: " + e.getMessage());
         }
     }
 
+    private Map<String, List<ForecastDay>> read() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        try (InputStream is = locator.resolve(PATH).getInputStream()) {
+            return mapper.readValue(is, new TypeReference<>() {});
+        }
+    }
+
+    @Override
+    public String datasetName() {
+        return "forecast-dataset";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return relativePath.equals(PATH);
+    }
+
+    @Override
+    public void reload() throws Exception {
+        dataset = read();
+    }
+
     public List<ForecastDay> getFallback(String city) {
         return dataset.getOrDefault(city, null);
     }
@@ -2,6 +2,7 @@ package com.skystream.skystreambackend.service;
 
 import com.skystream.skystreambackend.dto.ForecastDay;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -17,13 +18,12 @@ public class ForecastService {
     }
 
     public List<ForecastDay> getForecast(String city, int days) {
+        return getForecastAsync(city, days).block();
+    }
 
-        List<ForecastDay> fromApi = weatherApi.getForecast(city, days);
-
-        if (fromApi != null && !fromApi.isEmpty()) {
-            return fromApi;
-        }
-
-        return fallback.getFallback(city);
+    public Mono<List<ForecastDay>> getForecastAsync(String city, int days) {
+        return weatherApi.getForecastAsync(city, days)
+                .filter(fromApi -> !fromApi.isEmpty())
+                .switchIfEmpty(Mono.fromSupplier(() -> fallback.getFallback(city)));
     }
 }
@@ -0,0 +1,180 @@
+package com.skystream.skystreambackend.service;
+
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WeatherAPI forecast.json store.
+ * Fetches the full horizon (MAX_DAYS) once per city and serves any shorter
+ * "days" as a slice of it. Entries expire on the provider's update cadence
+ * (next refresh-seconds boundary of the wall clock), not a sliding TTL.
+ * The payload also carries "current", so a fresh entry can answer current weather.
+ */
+@Service
+public class ForecastStore {
+
+    public static final int MAX_DAYS = 15;
+
+    @Value("${weather.forecast.refresh-seconds:900}")
+    private long refreshSeconds;
+
+    // never expire sooner than this after a fetch, even right before a boundary
+    @Value("${weather.forecast.min-ttl-seconds:120}")
+    private long minTtlSeconds;
+
+    // max age of a payload whose "current" block may stand in for current.json
+    @Value("${weather.forecast.current-max-age-seconds:300}")
+    private long currentMaxAgeSeconds;
+
+    @Value("${weather.forecast.max-entries:200}")
+    private int maxEntries;
+
+    @Autowired
+    private WeatherApiClient api;
+
+    @Autowired
+    private WeatherMapper mapper;
+
+    private Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong currentDerived = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // access-ordered LinkedHashMap = LRU eviction once maxEntries is reached
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /**
+     * Forecast payload cut to the requested number of days (clamped to 1..MAX_DAYS).
+     * Serves the last payload past its expiry if the refresh fails; empty if none.
+     */
+    public Mono<Map<String, Object>> getForecast(String city, int days) {
+        int wanted = Math.max(1, Math.min(MAX_DAYS, days));
+        return full(city).map(payload -> slice(payload, wanted));
+    }
+
+    /**
+     * Current weather derived from a recent forecast payload, without any upstream call.
+     * Empty when no payload for the city is young enough.
+     */
+    public Mono<WeatherResponse> peekCurrent(String city) {
+        return Mono.fromSupplier(() -> {
+            Entry e = get(WeatherCacheService.normalizeKey(city));
+            if (e == null) return null;
+            if (System.currentTimeMillis() - e.fetchedAt > currentMaxAgeSeconds * 1000) return null;
+
+            if (e.current == null) return null;
+            currentDerived.incrementAndGet();
+            return e.current;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        synchronized (this) {
+            out.put("size", entries.size());
+        }
+        out.put("maxEntries", maxEntries);
+        out.put("hits", hits.get());
+        out.put("fetches", fetches.get());
+        out.put("staleServed", staleServed.get());
+        out.put("currentDerived", currentDerived.get());
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private Mono<Map<String, Object>> full(String city) {
+        return Mono.defer(() -> {
+            String key = WeatherCacheService.normalizeKey(city);
+            Entry entry = get(key);
+            long now = System.currentTimeMillis();
+
+            if (entry != null && now < entry.expiresAt) {
+                hits.incrementAndGet();
+                return Mono.just(entry.payload);
+            }
+
+            fetches.incrementAndGet();
+            return api.getForecastAsync(city, MAX_DAYS)
+                    .filter(payload -> !payload.containsKey("error"))
+                    .onErrorResume(e -> Mono.empty())
+                    .doOnNext(payload -> put(key, payload))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        if (entry == null) return Mono.empty();
+                        staleServed.incrementAndGet();
+                        return Mono.just(entry.payload);
+                    }));
+        });
+    }
+
+    // shallow copy with forecast.forecastday cut to "days"; nested maps are shared
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> slice(Map<String, Object> payload, int days) {
+        if (!(payload.get("forecast") instanceof Map<?, ?> forecast)) return payload;
+        if (!(forecast.get("forecastday") instanceof List<?> list) || list.size() <= days) return payload;
+
+        Map<String, Object> cutForecast = new LinkedHashMap<>((Map<String, Object>) forecast);
+        cutForecast.put("forecastday", new ArrayList<>(list.subList(0, days)));
+
+        Map<String, Object> out = new LinkedHashMap<>(payload);
+        out.put("forecast", cutForecast);
+        return out;
+    }
+
+    // next refresh boundary after the minimum TTL
+    private long expiry(long fetchedAt) {
+        long period = refreshSeconds * 1000;
+        long earliest = fetchedAt + minTtlSeconds * 1000;
+        return (earliest / period + 1) * period;
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private void put(String key, Map<String, Object> payload) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(payload, currentOf(payload), now, expiry(now));
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    // the payload's "current" block as a current.json answer would map (no hourly / daily), once per fetch
+    private WeatherResponse currentOf(Map<String, Object> payload) {
+        if (!(payload.get("current") instanceof Map<?, ?>)) return null;
+
+        Map<String, Object> current = new LinkedHashMap<>();
+        current.put("location", payload.get("location"));
+        current.put("current", payload.get("current"));
+        return mapper.mapToUnified(current);
+    }
+
+    private record Entry(Map<String, Object> payload, WeatherResponse current, long fetchedAt, long expiresAt) {}
+}
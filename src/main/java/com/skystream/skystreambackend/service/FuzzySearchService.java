@@ -1,15 +1,46 @@
 package com.skystream.skystreambackend.service;
 
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Misspelling-tolerant city matching.
+ * Local corpus lives in a BK-tree keyed by edit distance, so a lookup only visits
+ * subtrees that can still be within the threshold; every distance is computed with
+ * a cut-off and stops as soon as the threshold is exceeded.
+ * A new corpus (dataset reload) is built into a fresh tree and swapped in, so lookups
+ * keep using the old one meanwhile and removed cities drop out.
+ */
 @Service
 public class FuzzySearchService {
 
-    private static final LevenshteinDistance LD = new LevenshteinDistance();
+    // max edit distance for a local match; queries of up to 4 chars allow 1
+    @Value("${weather.fuzzy.max-distance:2}")
+    private int maxDistance;
+
+    // for upstream option lists (unchanged threshold)
+    private static final int OPTIONS_MAX_DISTANCE = 5;
+
+    private Node root;
+    private Set<String> terms = new HashSet<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong distanceCalls = new AtomicLong();
 
     /**
      * Returns the closest matched city from WeatherAPI search list.
@@ -23,12 +54,13 @@ public class FuzzySearchService {
         query = query.toLowerCase();
 
         Map<String, Object> best = null;
-        int bestScore = Integer.MAX_VALUE;
+        int bestScore = OPTIONS_MAX_DISTANCE + 1;
 
         for (Map<String, Object> city : options) {
             String name = city.getOrDefault("name", "").toString().toLowerCase();
 
-            int dist = LD.apply(query, name);
+            // only has to beat the best so far
+            int dist = distance(query, name, bestScore - 1);
 
             if (dist < bestScore) {
                 bestScore = dist;
@@ -37,8 +69,173 @@ public class FuzzySearchService {
         }
 
         // threshold to avoid terrible matches
-        if (bestScore > 5) return null;
+        if (bestScore > OPTIONS_MAX_DISTANCE) return null;
+
+        return best;
+    }
+
+    // =====================================================
+    // LOCAL CORPUS
+    // =====================================================
+
+    /** Adds a (normalized) city name to the local corpus. */
+    public void add(String term) {
+        if (term == null || term.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            if (terms.add(term)) root = insert(root, term);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces the whole corpus; the new tree is built before the lock is taken. */
+    public void replace(Collection<String> corpus) {
+        Set<String> nextTerms = new HashSet<>();
+        Node nextRoot = null;
+        for (String term : corpus) {
+            if (term != null && !term.isEmpty() && nextTerms.add(term)) nextRoot = insert(nextRoot, term);
+        }
+
+        lock.writeLock().lock();
+        try {
+            root = nextRoot;
+            terms = nextTerms;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closest corpus term to the (normalized) query within the distance threshold;
+     * ties go to the shorter, then alphabetically first term. Null when nothing is close enough.
+     */
+    public String closest(String query) {
+        if (query == null || query.isEmpty()) return null;
+        lookups.incrementAndGet();
+
+        int limit = query.length() <= 4 ? Math.min(1, maxDistance) : maxDistance;
+        String best = null;
+        int bestDist = limit + 1;
+
+        lock.readLock().lock();
+        try {
+            if (root == null) return null;
+
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+
+                // beyond limit + the largest child edge no child range can overlap [d - limit, d + limit]
+                int cap = limit + (node.children.isEmpty() ? 0 : node.children.lastKey());
+                int d = distance(query, node.term, cap);
+
+                if (d < bestDist || (d == bestDist && better(node.term, best))) {
+                    best = node.term;
+                    bestDist = d;
+                }
+                if (d > cap) continue;
+
+                // only children whose edge is within limit of d can hold a match
+                for (Node child : node.children.subMap(d - limit, true, d + limit, true).values()) {
+                    stack.push(child);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
 
+        if (bestDist > limit) return null;
+        matches.incrementAndGet();
         return best;
     }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            out.put("terms", terms.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        out.put("lookups", lookups.get());
+        out.put("matches", matches.get());
+        out.put("distanceCalls", distanceCalls.get());
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    // returns the root (the new node when the tree was empty)
+    private Node insert(Node root, String term) {
+        if (root == null) return new Node(term);
+
+        Node node = root;
+        while (true) {
+            // capped at the longer length = never cut off
+            int d = distance(term, node.term, Math.max(term.length(), node.term.length()));
+            Node child = node.children.get(d);
+            if (child == null) {
+                node.children.put(d, new Node(term));
+                return root;
+            }
+            node = child;
+        }
+    }
+
+    private boolean better(String candidate, String best) {
+        if (best == null) return true;
+        if (candidate.length() != best.length()) return candidate.length() < best.length();
+        return candidate.compareTo(best) < 0;
+    }
+
+    /**
+     * Levenshtein distance, or max + 1 as soon as it is known to exceed max
+     * (length gap, or a whole DP row above max).
+     */
+    private int distance(String a, String b, int max) {
+        distanceCalls.incrementAndGet();
+
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        if (n == 0 || m == 0) return Math.max(n, m);
+
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char ca = a.charAt(i - 1);
+
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (cur[j] < rowMin) rowMin = cur[j];
+            }
+            if (rowMin > max) return max + 1;
+
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+
+    private static final class Node {
+        final String term;
+        // edit distance to this node -> child
+        final TreeMap<Integer, Node> children = new TreeMap<>();
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
 }
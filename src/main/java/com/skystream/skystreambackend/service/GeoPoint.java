@@ -0,0 +1,43 @@
+package com.skystream.skystreambackend.service;
+
+/**
+ * A latitude / longitude pair in degrees.
+ */
+public record GeoPoint(double lat, double lon) {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /** "lat,lon" (spaces allowed), or null when the text is not a valid coordinate pair. */
+    public static GeoPoint parse(String s) {
+        if (s == null) return null;
+        int comma = s.indexOf(',');
+        if (comma < 0 || s.indexOf(',', comma + 1) >= 0) return null;
+        try {
+            double lat = Double.parseDouble(s.substring(0, comma).trim());
+            double lon = Double.parseDouble(s.substring(comma + 1).trim());
+            return valid(lat, lon) ? new GeoPoint(lat, lon) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static boolean valid(double lat, double lon) {
+        return lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180;
+    }
+
+    /** Great-circle distance (haversine). */
+    public double distanceKm(GeoPoint other) {
+        double dLat = Math.toRadians(other.lat - lat);
+        double dLon = Math.toRadians(other.lon - lon);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat)) * Math.cos(Math.toRadians(other.lat))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /** The "lat,lon" form WeatherAPI accepts as a query. */
+    @Override
+    public String toString() {
+        return lat + "," + lon;
+    }
+}
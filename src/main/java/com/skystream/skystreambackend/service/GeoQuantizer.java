@@ -0,0 +1,168 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snaps coordinate queries to the centre of their geohash cell, so nearby clients
+ * share one cache entry / upstream call instead of one per float pair.
+ * The cell size is weather.geo.precision characters (5 = ~4.9 x 4.9 km), coarser
+ * when the client itself sent fewer decimals. Per precision level it counts
+ * requests and cache misses (loader runs), i.e. the hit rate each level achieves.
+ */
+@Service
+public class GeoQuantizer {
+
+    // geohash length; 0 turns snapping off
+    @Value("${weather.geo.precision:5}")
+    private int precision;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    // geohash length -> counters
+    private final Map<Integer, Level> levels = new ConcurrentHashMap<>();
+
+    /** A coordinate query after snapping: the query to use, and its level (0 = not snapped). */
+    public record Snapped(String query, String geohash, int level) {}
+
+    /**
+     * "lat,lon" snapped to its cell centre; any other query is returned unchanged (level 0).
+     * Counts the request against its level.
+     */
+    public Snapped snap(String query) {
+        GeoPoint p = GeoPoint.parse(query);
+        if (p == null || precision <= 0) return new Snapped(query, null, 0);
+
+        int level = Math.min(precision, levelFor(query));
+        String hash = encode(p, level);
+        GeoPoint c = center(hash);
+
+        // 5 decimals (~1 m) is far finer than any cell, and keeps keys short
+        String snapped = round(c.lat()) + "," + round(c.lon());
+        level(level).requests.incrementAndGet();
+        return new Snapped(snapped, hash, level);
+    }
+
+    /** Records that a snapped query missed the cache and went to the loader. */
+    public void recordLoad(Snapped s) {
+        if (s.level() > 0) level(s.level()).loads.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("precision", precision);
+        Map<String, Object> byLevel = new LinkedHashMap<>();
+        levels.keySet().stream().sorted().forEach(l -> {
+            Level c = levels.get(l);
+            long requests = c.requests.get();
+            long loads = c.loads.get();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("requests", requests);
+            m.put("misses", loads);
+            m.put("hitRate", requests == 0 ? 0.0 : Math.round(1000.0 * (requests - loads) / requests) / 1000.0);
+            byLevel.put(String.valueOf(l), m);
+        });
+        out.put("levels", byLevel);
+        return out;
+    }
+
+    // =====================================================
+    // GEOHASH
+    // =====================================================
+
+    public static String encode(GeoPoint p, int length) {
+        double latLo = -90, latHi = 90, lonLo = -180, lonHi = 180;
+        StringBuilder sb = new StringBuilder(length);
+        boolean lonBit = true;
+        int bits = 0, ch = 0;
+
+        while (sb.length() < length) {
+            if (lonBit) {
+                double mid = (lonLo + lonHi) / 2;
+                if (p.lon() >= mid) {
+                    ch = (ch << 1) | 1;
+                    lonLo = mid;
+                } else {
+                    ch <<= 1;
+                    lonHi = mid;
+                }
+            } else {
+                double mid = (latLo + latHi) / 2;
+                if (p.lat() >= mid) {
+                    ch = (ch << 1) | 1;
+                    latLo = mid;
+                } else {
+                    ch <<= 1;
+                    latHi = mid;
+                }
+            }
+            lonBit = !lonBit;
+            if (++bits == 5) {
+                sb.append(BASE32.charAt(ch));
+                bits = 0;
+                ch = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static GeoPoint center(String hash) {
+        double latLo = -90, latHi = 90, lonLo = -180, lonHi = 180;
+        boolean lonBit = true;
+
+        for (int i = 0; i < hash.length(); i++) {
+            int v = BASE32.indexOf(hash.charAt(i));
+            for (int b = 4; b >= 0; b--) {
+                boolean set = ((v >> b) & 1) == 1;
+                if (lonBit) {
+                    double mid = (lonLo + lonHi) / 2;
+                    if (set) lonLo = mid;
+                    else lonHi = mid;
+                } else {
+                    double mid = (latLo + latHi) / 2;
+                    if (set) latLo = mid;
+                    else latHi = mid;
+                }
+                lonBit = !lonBit;
+            }
+        }
+        return new GeoPoint((latLo + latHi) / 2, (lonLo + lonHi) / 2);
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    // a cell no finer than what the client sent: 0 decimals -> 3 chars (~156 km), each decimal one char more
+    private static int levelFor(String query) {
+        int comma = query.indexOf(',');
+        int decimals = Math.min(decimals(query.substring(0, comma)), decimals(query.substring(comma + 1)));
+        return 3 + decimals;
+    }
+
+    // digits after the point; exponent forms count as full precision
+    private static int decimals(String number) {
+        String t = number.trim();
+        if (t.indexOf('e') >= 0 || t.indexOf('E') >= 0) return 12;
+        int dot = t.indexOf('.');
+        return dot < 0 ? 0 : t.length() - dot - 1;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100_000) / 100_000.0;
+    }
+
+    private Level level(int level) {
+        return levels.computeIfAbsent(level, l -> new Level());
+    }
+
+    private static final class Level {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong loads = new AtomicLong();
+    }
+}
@@ -0,0 +1,226 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Date-range aggregation over the daily history dataset (history_latest.csv).
+ * Rows are grouped per country (also reachable by its capital); every numeric column
+ * becomes a metric backed by a RangeAggregates, so a range query never rescans rows.
+ * Built lazily from the CSV tier's daily table and rebuilt when that file changes.
+ */
+@Service
+public class HistoryAggregationService implements ReloadableDataset {
+
+    @Autowired
+    private LocalCSVLoaderService csvService;
+
+    // numeric columns that are not metrics
+    private static final Set<String> NOT_METRICS = Set.of("lat", "lon", "latitude", "longitude");
+
+    private volatile Index index;
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /**
+     * Aggregates one metric of a country / capital over [from, to] (inclusive; open ends = all data).
+     * bucket: null for one total, or WEEK / MONTH for per-bucket stats.
+     *
+     * @throws IllegalArgumentException unknown place or metric
+     */
+    public Map<String, Object> aggregate(String place, String metric, LocalDate from, LocalDate to,
+                                         List<Double> percentiles, RangeAggregates.Bucket bucket) {
+        Index idx = ensureBuilt();
+
+        Series series = idx.places.get(WeatherCacheService.normalizeKey(place));
+        if (series == null) throw new IllegalArgumentException("unknown place: " + place);
+
+        RangeAggregates agg = series.metrics.get(metric.trim().toLowerCase());
+        if (agg == null) throw new IllegalArgumentException("unknown metric: " + metric);
+
+        int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+        int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE - 1;
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("country", series.country);
+        out.put("capital", series.capital);
+        out.put("metric", metric.trim().toLowerCase());
+        out.put("from", from);
+        out.put("to", to);
+        out.putAll(toMap(agg.range(fromDay, toDay)));
+
+        if (percentiles != null && !percentiles.isEmpty()) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            for (double q : percentiles) {
+                p.put("p" + format(q), number(agg.percentile(fromDay, toDay, q)));
+            }
+            out.put("percentiles", p);
+        }
+
+        if (bucket != null) {
+            List<Map<String, Object>> buckets = new ArrayList<>();
+            for (RangeAggregates.BucketStats b : agg.buckets(fromDay, toDay, bucket)) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("start", b.start());
+                m.putAll(toMap(b.stats()));
+                buckets.add(m);
+            }
+            out.put("bucket", bucket.name().toLowerCase());
+            out.put("buckets", buckets);
+        }
+        return out;
+    }
+
+    /** Metric names, and the day span of the data. */
+    public Map<String, Object> describe() {
+        Index idx = ensureBuilt();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("metrics", idx.metrics);
+        out.put("places", idx.seriesCount);
+        out.put("from", idx.firstDay == ColumnarTable.MISSING_INT ? null : LocalDate.ofEpochDay(idx.firstDay));
+        out.put("to", idx.lastDay == ColumnarTable.MISSING_INT ? null : LocalDate.ofEpochDay(idx.lastDay));
+        return out;
+    }
+
+    // =====================================================
+    // BUILD
+    // =====================================================
+
+    @Override
+    public String datasetName() {
+        return "history-aggregates";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return csvService.dependsOn(relativePath);
+    }
+
+    @Override
+    public void reload() {
+        index = build(csvService.getDailyTable());
+    }
+
+    private Index ensureBuilt() {
+        Index idx = index;
+        return idx != null ? idx : buildOnce();
+    }
+
+    private synchronized Index buildOnce() {
+        if (index == null) index = build(csvService.getDailyTable());
+        return index;
+    }
+
+    private Index build(ColumnarTable t) {
+        long start = System.nanoTime();
+
+        int date = t.columnCount() > 0 ? t.column("date") : -1;
+        int country = t.columnCount() > 0 ? t.column("country") : -1;
+        if (date < 0 || country < 0 || t.type(date) != ColumnarTable.Type.DATE) {
+            System.err.println("❌ History aggregates: no date / country columns in the daily dataset");
+            return new Index(Map.of(), List.of(), 0, ColumnarTable.MISSING_INT, ColumnarTable.MISSING_INT);
+        }
+        int capital = t.column("capital");
+
+        List<Integer> metricCols = new ArrayList<>();
+        List<String> metricNames = new ArrayList<>();
+        for (int c = 0; c < t.columnCount(); c++) {
+            if (t.type(c) == ColumnarTable.Type.DOUBLE && !NOT_METRICS.contains(t.name(c))) {
+                metricCols.add(c);
+                metricNames.add(t.name(c));
+            }
+        }
+
+        // rows per country, in day order
+        Map<String, List<Integer>> rowsByCountry = new LinkedHashMap<>();
+        for (int r = 0; r < t.size(); r++) {
+            if (t.getEpochDay(r, date) == ColumnarTable.MISSING_INT) continue;
+            String name = t.getString(r, country);
+            if (!name.isEmpty()) rowsByCountry.computeIfAbsent(name, k -> new ArrayList<>()).add(r);
+        }
+
+        Map<String, Series> places = new HashMap<>();
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
+
+        for (Map.Entry<String, List<Integer>> e : rowsByCountry.entrySet()) {
+            int[] rows = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+            rows = sortByDay(t, date, rows);
+
+            int[] days = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) days[i] = t.getEpochDay(rows[i], date);
+            firstDay = Math.min(firstDay, days[0]);
+            lastDay = Math.max(lastDay, days[days.length - 1]);
+
+            Map<String, RangeAggregates> metrics = new HashMap<>();
+            for (int m = 0; m < metricCols.size(); m++) {
+                double[] column = t.doubleColumn(metricCols.get(m));
+                double[] values = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) values[i] = column[rows[i]];
+                metrics.put(metricNames.get(m), new RangeAggregates(days, values));
+            }
+
+            // latest row names the capital
+            String cap = capital >= 0 ? t.getString(rows[rows.length - 1], capital) : "";
+            Series series = new Series(e.getKey(), cap, Map.copyOf(metrics));
+
+            // capitals first, so a country key wins a clash
+            if (!cap.isEmpty()) places.putIfAbsent(WeatherCacheService.normalizeKey(cap), series);
+            places.put(WeatherCacheService.normalizeKey(e.getKey()), series);
+        }
+
+        System.out.println("✔ History aggregates: " + rowsByCountry.size() + " countries x "
+                + metricNames.size() + " metrics in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        return new Index(Map.copyOf(places), List.copyOf(new TreeSet<>(metricNames)), rowsByCountry.size(),
+                rowsByCountry.isEmpty() ? ColumnarTable.MISSING_INT : firstDay,
+                rowsByCountry.isEmpty() ? ColumnarTable.MISSING_INT : lastDay);
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private static int[] sortByDay(ColumnarTable t, int date, int[] rows) {
+        return Arrays.stream(rows).boxed()
+                .sorted((a, b) -> Integer.compare(t.getEpochDay(a, date), t.getEpochDay(b, date)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static Map<String, Object> toMap(RangeAggregates.Stats s) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", s.count());
+        out.put("min", number(s.min()));
+        out.put("max", number(s.max()));
+        out.put("sum", s.count() == 0 ? null : s.sum());
+        out.put("mean", number(s.mean()));
+        return out;
+    }
+
+    // JSON has no NaN
+    private static Double number(double v) {
+        return Double.isNaN(v) ? null : v;
+    }
+
+    private static String format(double q) {
+        return q == Math.rint(q) ? String.valueOf((long) q) : String.valueOf(q);
+    }
+
+    private record Series(String country, String capital, Map<String, RangeAggregates> metrics) {}
+
+    private record Index(Map<String, Series> places, List<String> metrics, int seriesCount,
+                         int firstDay, int lastDay) {}
+}
@@ -1,30 +1,372 @@
 package com.skystream.skystreambackend.service;
 
+import com.opencsv.CSVReader;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * IP -> location.
+ * Answers from a local IP-range database (CSV: a "network" CIDR column, or
+ * "start_ip" / "end_ip", plus city / region / country / coordinates) loaded into one
+ * CidrTrie per address family; recent answers sit in an LRU. ipapi.co is only asked
+ * for addresses the database does not cover, and only when the remote fallback is on.
+ * Also picks the real client address out of an X-Forwarded-For chain.
+ */
 @Service
-public class IPLocationService {
+public class IPLocationService implements ReloadableDataset {
 
-    private final RestTemplate rest = new RestTemplate();
+    @Autowired
+    private UpstreamClient upstream;
+
+    @Autowired
+    private DatasetLocator locator;
+
+    @Value("${weather.ip.database:ip/ip-locations.csv}")
+    private String databasePath;
+
+    @Value("${weather.ip.remote-fallback:true}")
+    private boolean remoteFallback;
+
+    @Value("${weather.ip.cache-size:10000}")
+    private int cacheSize;
+
+    // proxies (CIDRs) whose X-Forwarded-For entries are believed, on top of internal addresses
+    @Value("${weather.ip.trusted-proxies:}")
+    private String trustedProxiesProperty;
+
+    // header candidates, first match wins
+    private static final String[] NETWORK_COLUMNS = {"network", "cidr"};
+    private static final String[] START_COLUMNS = {"start_ip", "ip_from", "first_ip"};
+    private static final String[] END_COLUMNS = {"end_ip", "ip_to", "last_ip"};
+    private static final String[] CITY_COLUMNS = {"city", "city_name"};
+    private static final String[] REGION_COLUMNS = {"region", "region_name", "subdivision"};
+    private static final String[] COUNTRY_COLUMNS = {"country_name", "country"};
+    private static final String[] COUNTRY_CODE_COLUMNS = {"country_code", "country_iso_code"};
+    private static final String[] LAT_COLUMNS = {"latitude", "lat"};
+    private static final String[] LON_COLUMNS = {"longitude", "lon"};
+
+    private volatile Database database = Database.EMPTY;
+
+    private final CidrTrie trustedV4 = new CidrTrie(32);
+    private final CidrTrie trustedV6 = new CidrTrie(128);
+
+    private Map<String, Map<String, Object>> cache;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong remoteCalls = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // access-ordered LinkedHashMap = LRU eviction once cacheSize is reached
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+
+        for (String cidr : trustedProxiesProperty.split(",")) {
+            if (!cidr.isBlank() && !addCidr(cidr.trim(), trustedV4, trustedV6, 0)) {
+                System.err.println("❌ Ignoring trusted proxy entry: " + cidr.trim());
+            }
+        }
+
+        try {
+            database = loadDatabase();
+        } catch (Exception e) {
+            System.err.println("❌ IP database load failed: " + e.getMessage());
+        }
+    }
+
+    // =====================================================
+    // LOOKUP
+    // =====================================================
 
-    @SuppressWarnings("unchecked")
     public Map<String, Object> lookup(String ip) {
+        return lookupAsync(ip).block();
+    }
+
+    /** Location of an address: LRU, then the local database, then (optionally) ipapi.co. */
+    public Mono<Map<String, Object>> lookupAsync(String ip) {
+        byte[] address = IpAddresses.parse(ip);
+        if (address == null) return Mono.just(Map.of("error", "invalid-ip"));
+
+        String key = IpAddresses.format(address);
+        Map<String, Object> cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return Mono.just(cached);
+        }
+
+        // no database, public or not, knows where a private address is
+        if (IpAddresses.isInternal(address)) {
+            unresolved.incrementAndGet();
+            return Mono.just(Map.of("ip", key, "error", "reserved-address"));
+        }
+
+        Map<String, Object> local = database.find(address, key);
+        if (local != null) {
+            localHits.incrementAndGet();
+            cache.put(key, local);
+            return Mono.just(local);
+        }
+
+        if (!remoteFallback) {
+            unresolved.incrementAndGet();
+            return Mono.just(Map.of("ip", key, "error", "not-in-database"));
+        }
+        return remoteLookup(key);
+    }
+
+    private Mono<Map<String, Object>> remoteLookup(String ip) {
+        remoteCalls.incrementAndGet();
+
+        // Using free API: ipapi.co
+        URI url = UriComponentsBuilder.fromHttpUrl("https://ipapi.co/{ip}/json/")
+                .buildAndExpand(ip)
+                .encode()
+                .toUri();
+
+        return upstream.getJson("ipapi", url, UpstreamClient.MAP)
+                .doOnNext(data -> {
+                    // ipapi.co reports failures as {"error": true, ...}
+                    if (!data.containsKey("error")) cache.put(ip, data);
+                })
+                .defaultIfEmpty(Map.of("error", "no-response"))
+                .onErrorResume(ex -> Mono.just(UpstreamClient.error("ip-lookup-failed", ex)));
+    }
+
+    // =====================================================
+    // CLIENT ADDRESS
+    // =====================================================
+
+    /**
+     * The client's address for a request.
+     * X-Forwarded-For ("client, proxy1, proxy2") is only believed when the direct peer is a
+     * trusted proxy; the chain is then walked from the right, and the first entry that is not
+     * itself a trusted proxy is the client. Entries to the left of it can be forged by the client.
+     */
+    public String clientAddress(String remoteAddr, String forwardedFor) {
+        byte[] peer = IpAddresses.parse(remoteAddr);
+        if (forwardedFor == null || forwardedFor.isBlank() || peer == null || !trusted(peer)) {
+            return remoteAddr;
+        }
+
+        String[] hops = forwardedFor.split(",");
+        String candidate = null;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            byte[] hop = IpAddresses.parse(hops[i]);
+            // "unknown" / garbage: nothing left of it can be vouched for
+            if (hop == null) break;
+
+            candidate = IpAddresses.format(hop);
+            if (!trusted(hop)) return candidate;
+        }
+        return candidate != null ? candidate : remoteAddr;
+    }
+
+    private boolean trusted(byte[] address) {
+        if (IpAddresses.isInternal(address)) return true;
+        CidrTrie trie = address.length == 4 ? trustedV4 : trustedV6;
+        return trie.longestMatch(address) >= 0;
+    }
+
+    public Map<String, Object> stats() {
+        Database db = database;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("ranges", db.ranges);
+        out.put("locations", db.locations.size());
+        out.put("trieNodes", db.v4.nodeCount() + db.v6.nodeCount());
+        out.put("trieBytes", db.v4.estimatedBytes() + db.v6.estimatedBytes());
+        out.put("cached", cache.size());
+        out.put("cacheHits", cacheHits.get());
+        out.put("localHits", localHits.get());
+        out.put("remoteCalls", remoteCalls.get());
+        out.put("unresolved", unresolved.get());
+        return out;
+    }
+
+    // =====================================================
+    // DATABASE
+    // =====================================================
+
+    @Override
+    public String datasetName() {
+        return "ip-database";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return relativePath.equals(databasePath);
+    }
+
+    @Override
+    public void reload() throws Exception {
+        database = loadDatabase();
+        // answers may have moved
+        cache.clear();
+    }
+
+    private Database loadDatabase() throws Exception {
+        Resource res = locator.resolve(databasePath);
+        if (!res.exists()) {
+            System.out.println("IP database not found (" + databasePath + "), "
+                    + (remoteFallback ? "using ipapi.co only" : "IP lookups disabled"));
+            return Database.EMPTY;
+        }
+
+        long start = System.nanoTime();
+        CidrTrie v4 = new CidrTrie(32);
+        CidrTrie v6 = new CidrTrie(128);
+        List<Map<String, Object>> locations = new ArrayList<>();
+        Map<List<String>, Integer> locationIds = new HashMap<>();
+        int ranges = 0;
+        int skipped = 0;
+
+        try (CSVReader reader = new CSVReader(new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8))) {
+            String[] header = reader.readNext();
+            if (header == null) return Database.EMPTY;
+
+            List<String> headers = new ArrayList<>();
+            for (String h : header) headers.add(h == null ? "" : h.trim().toLowerCase());
+
+            int network = column(headers, NETWORK_COLUMNS);
+            int first = column(headers, START_COLUMNS);
+            int last = column(headers, END_COLUMNS);
+            int[] fields = {
+                    column(headers, CITY_COLUMNS), column(headers, REGION_COLUMNS),
+                    column(headers, COUNTRY_COLUMNS), column(headers, COUNTRY_CODE_COLUMNS),
+                    column(headers, LAT_COLUMNS), column(headers, LON_COLUMNS)
+            };
+            if (network < 0 && (first < 0 || last < 0)) {
+                throw new IllegalStateException("no network or start/end columns in " + databasePath);
+            }
+
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                // same place -> same location id, so the trie only stores ints
+                List<String> place = new ArrayList<>(fields.length);
+                for (int f : fields) place.add(value(row, f));
+                Integer id = locationIds.get(place);
+                if (id == null) {
+                    id = locations.size();
+                    locationIds.put(place, id);
+                    locations.add(toLocation(place));
+                }
+
+                boolean ok;
+                if (network >= 0 && !value(row, network).isEmpty()) {
+                    ok = addCidr(value(row, network), v4, v6, id);
+                } else {
+                    ok = addRange(value(row, first), value(row, last), v4, v6, id);
+                }
+                if (ok) ranges++;
+                else skipped++;
+            }
+        }
+        v4.trim();
+        v6.trim();
+
+        System.out.println("✔ IP database: " + ranges + " ranges, " + locations.size() + " locations, "
+                + (v4.nodeCount() + v6.nodeCount()) + " trie nodes in " + (System.nanoTime() - start) / 1_000_000 + " ms"
+                + (skipped > 0 ? " (" + skipped + " bad rows skipped)" : ""));
+        return new Database(v4, v6, List.copyOf(locations), ranges);
+    }
+
+    // "a.b.c.d/len", "v6/len" or a single address
+    private static boolean addCidr(String cidr, CidrTrie v4, CidrTrie v6, int id) {
+        int slash = cidr.indexOf('/');
+        byte[] address = IpAddresses.parse(slash < 0 ? cidr : cidr.substring(0, slash));
+        if (address == null) return false;
+
+        CidrTrie trie = address.length == 4 ? v4 : v6;
+        int length = trie.bits();
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(cidr.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (length < 0 || length > trie.bits()) return false;
+        }
+        trie.insert(address, length, id);
+        return true;
+    }
+
+    private static boolean addRange(String firstIp, String lastIp, CidrTrie v4, CidrTrie v6, int id) {
+        byte[] first = IpAddresses.parse(firstIp);
+        byte[] last = IpAddresses.parse(lastIp);
+        if (first == null || last == null || first.length != last.length) return false;
+        if (Arrays.compareUnsigned(first, last) > 0) return false;
+
+        (first.length == 4 ? v4 : v6).insertRange(first, last, id);
+        return true;
+    }
+
+    // ipapi.co field names, so callers see one shape whichever source answered
+    private static Map<String, Object> toLocation(List<String> place) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("city", place.get(0));
+        out.put("region", place.get(1));
+        out.put("country_name", place.get(2));
+        out.put("country_code", place.get(3));
+        out.put("latitude", toDouble(place.get(4)));
+        out.put("longitude", toDouble(place.get(5)));
+        out.put("source", "local");
+        return out;
+    }
+
+    private static int column(List<String> headers, String[] candidates) {
+        for (String c : candidates) {
+            int i = headers.indexOf(c);
+            if (i >= 0) return i;
+        }
+        return -1;
+    }
+
+    private static String value(String[] row, int col) {
+        return col >= 0 && col < row.length && row[col] != null ? row[col].trim() : "";
+    }
+
+    private static Double toDouble(String v) {
         try {
-            // Using free API: ipapi.co
-            String url = "https://ipapi.co/" + ip + "/json/";
+            return v.isEmpty() ? null : Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // one loaded database version
+    private record Database(CidrTrie v4, CidrTrie v6, List<Map<String, Object>> locations, int ranges) {
 
-            Map<String, Object> resp = rest.getForObject(url, Map.class);
+        static final Database EMPTY = new Database(new CidrTrie(32), new CidrTrie(128), List.of(), 0);
 
-            return resp != null ? resp : Map.of("error", "no-response");
+        Map<String, Object> find(byte[] address, String ip) {
+            int id = (address.length == 4 ? v4 : v6).longestMatch(address);
+            if (id < 0) return null;
 
-        } catch (Exception ex) {
-            return Map.of(
-                    "error", "ip-lookup-failed",
-                    "message", ex.getMessage()
-            );
+            Map<String, Object> out = new LinkedHashMap<>(locations.get(id));
+            out.put("ip", ip);
+            return Collections.unmodifiableMap(out);
         }
     }
 }
@@ -0,0 +1,98 @@
+package com.skystream.skystreambackend.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IP literal parsing without DNS: 4 bytes for IPv4, 16 for IPv6.
+ * IPv4-mapped IPv6 (::ffff:a.b.c.d) comes back as IPv4.
+ */
+public final class IpAddresses {
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Bytes of an address literal, or null for anything else (host names included).
+     * Accepts the forms found in proxy headers: "1.2.3.4:8080", "[2001:db8::1]:443", "2001:db8::1".
+     */
+    public static byte[] parse(String s) {
+        if (s == null) return null;
+        String t = s.trim();
+        if (t.isEmpty()) return null;
+
+        // [v6] or [v6]:port
+        if (t.startsWith("[")) {
+            int end = t.indexOf(']');
+            if (end < 0) return null;
+            return parseV6(t.substring(1, end));
+        }
+
+        int colons = t.length() - t.replace(":", "").length();
+        if (colons == 1) t = t.substring(0, t.indexOf(':'));  // v4:port
+        if (colons <= 1) return parseV4(t);
+        return parseV6(t);
+    }
+
+    public static String format(byte[] address) {
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            return "";
+        }
+    }
+
+    /** Loopback, private, link-local, CGNAT, unique-local or unspecified: never in a geo database. */
+    public static boolean isInternal(byte[] a) {
+        if (a.length == 4) {
+            int b0 = a[0] & 0xff, b1 = a[1] & 0xff;
+            return b0 == 10 || b0 == 127 || b0 == 0
+                    || (b0 == 172 && b1 >= 16 && b1 <= 31)
+                    || (b0 == 192 && b1 == 168)
+                    || (b0 == 169 && b1 == 254)
+                    || (b0 == 100 && b1 >= 64 && b1 <= 127);
+        }
+        boolean zeroPrefix = true;
+        for (int i = 0; i < 15; i++) if (a[i] != 0) zeroPrefix = false;
+        if (zeroPrefix && (a[15] == 0 || a[15] == 1)) return true;       // :: and ::1
+        int b0 = a[0] & 0xff, b1 = a[1] & 0xff;
+        return (b0 & 0xfe) == 0xfc                                        // fc00::/7
+                || (b0 == 0xfe && (b1 & 0xc0) == 0x80);                  // fe80::/10
+    }
+
+    private static byte[] parseV4(String s) {
+        String[] parts = s.split("\\.", -1);
+        if (parts.length != 4) return null;
+        byte[] out = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String p = parts[i];
+            if (p.isEmpty() || p.length() > 3) return null;
+            int v = 0;
+            for (int j = 0; j < p.length(); j++) {
+                char c = p.charAt(j);
+                if (c < '0' || c > '9') return null;
+                v = v * 10 + (c - '0');
+            }
+            if (v > 255) return null;
+            out[i] = (byte) v;
+        }
+        return out;
+    }
+
+    private static byte[] parseV6(String s) {
+        // zone ids ("%eth0") say nothing about location
+        int zone = s.indexOf('%');
+        if (zone >= 0) s = s.substring(0, zone);
+        if (s.indexOf(':') < 0) return null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!(Character.digit(c, 16) >= 0 || c == ':' || c == '.')) return null;
+        }
+        try {
+            // a literal with ':' is parsed, never resolved; ::ffff:a.b.c.d yields 4 bytes
+            return InetAddress.getByName(s).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.skystream.skystreambackend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Static k-d tree for nearest-neighbour queries over lat/lon points.
+ * Points are stored as 3D unit vectors, where straight-line (chord) distance grows
+ * with great-circle distance, so there is no distortion near the poles and the
+ * antimeridian needs no special case.
+ * The tree is implicit: each range [lo, hi) keeps its median at (lo + hi) / 2,
+ * split on axis depth % 3. Immutable once built.
+ */
+public final class KdTree {
+
+    private final int[] ids;      // caller's point index, in tree order
+    private final double[][] xyz; // unit vector per tree slot
+
+    /** Query results refer to a point by its index in this list. */
+    public KdTree(List<GeoPoint> points) {
+        int n = points.size();
+        Integer[] order = new Integer[n];
+        double[][] vectors = new double[n][];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            vectors[i] = toVector(points.get(i));
+        }
+        build(order, vectors, 0, n, 0);
+
+        this.ids = new int[n];
+        this.xyz = new double[n][];
+        for (int i = 0; i < n; i++) {
+            ids[i] = order[i];
+            xyz[i] = vectors[order[i]];
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** Up to k nearest points, closest first. */
+    public List<Neighbour> nearest(GeoPoint query, int k) {
+        if (k <= 0 || ids.length == 0) return List.of();
+
+        double[] q = toVector(query);
+        // farthest of the best k on top
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::chord).reversed());
+        search(q, 0, ids.length, 0, k, best);
+
+        List<Neighbour> out = new ArrayList<>(best);
+        out.sort(Comparator.comparingDouble(Neighbour::chord));
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private void search(double[] q, int lo, int hi, int depth, int k, PriorityQueue<Neighbour> best) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        double[] p = xyz[mid];
+        double chord = Math.sqrt(sq(q[0] - p[0]) + sq(q[1] - p[1]) + sq(q[2] - p[2]));
+
+        if (best.size() < k) {
+            best.add(new Neighbour(ids[mid], chord));
+        } else if (chord < best.peek().chord()) {
+            best.poll();
+            best.add(new Neighbour(ids[mid], chord));
+        }
+
+        int axis = depth % 3;
+        double diff = q[axis] - p[axis];
+
+        // near side first; the far side only if the splitting plane is closer than the current k-th
+        if (diff < 0) {
+            search(q, lo, mid, depth + 1, k, best);
+            if (best.size() < k || -diff < best.peek().chord()) search(q, mid + 1, hi, depth + 1, k, best);
+        } else {
+            search(q, mid + 1, hi, depth + 1, k, best);
+            if (best.size() < k || diff < best.peek().chord()) search(q, lo, mid, depth + 1, k, best);
+        }
+    }
+
+    // sorts each range on its axis and recurses around the median
+    private static void build(Integer[] order, double[][] vectors, int lo, int hi, int depth) {
+        if (hi - lo <= 1) return;
+        int axis = depth % 3;
+        Arrays.sort(order, lo, hi, Comparator.comparingDouble(i -> vectors[i][axis]));
+
+        int mid = (lo + hi) >>> 1;
+        build(order, vectors, lo, mid, depth + 1);
+        build(order, vectors, mid + 1, hi, depth + 1);
+    }
+
+    private static double[] toVector(GeoPoint p) {
+        double lat = Math.toRadians(p.lat());
+        double lon = Math.toRadians(p.lon());
+        return new double[]{Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+    }
+
+    private static double sq(double v) {
+        return v * v;
+    }
+
+    /** A result: the caller's point index and its distance. */
+    public record Neighbour(int id, double chord) {
+
+        public double distanceKm() {
+            // chord of the unit sphere -> central angle
+            return 2 * Math.asin(Math.min(1, chord / 2)) * GeoPoint.EARTH_RADIUS_KM;
+        }
+    }
+}
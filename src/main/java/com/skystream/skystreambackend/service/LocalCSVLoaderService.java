@@ -1,8 +1,9 @@
 package com.skystream.skystreambackend.service;
 
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.annotation.Order;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
@@ -10,9 +11,22 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
+/**
+ * CSV fallback datasets, held column-wise (ColumnarTable) instead of one HashMap per row.
+ * The failover CSV tier reads a prebuilt index: normalized city / capital / country ->
+ * that place's latest row, already in the unified map shape WeatherMapper consumes.
+ * Tables and index are published together as one Datasets value, so a reload swaps them atomically.
+ * Parsed tables are kept as a binary snapshot (DatasetSnapshots); the CSVs are only parsed
+ * again when one of them changed.
+ * With fallback.dataset.global-mapped the global repository is not loaded at all: it is
+ * memory-mapped (MappedCsvFile) with a per-location row-offset index, and rows are decoded per query.
+ */
 @Service
-public class LocalCSVLoaderService {
+@Order(1)   // reloads before the datasets built from it
+public class LocalCSVLoaderService implements ReloadableDataset {
 
     @Value("${fallback.dataset.global}")
     private String globalPath;
@@ -20,77 +34,394 @@ public class LocalCSVLoaderService {
     @Value("${fallback.dataset.daily}")
     private String dailyPath;
 
-    private final List<Map<String, String>> globalData = new ArrayList<>();
-    private final List<Map<String, String>> dailyData = new ArrayList<>();
+    // serve the global file from a memory mapping instead of the heap
+    @Value("${fallback.dataset.global-mapped:false}")
+    private boolean globalMapped;
 
-    private volatile boolean loaded = false;
+    @Autowired
+    private DatasetLocator locator;
+
+    @Autowired
+    private DatasetSnapshots snapshots;
+
+    private static final ColumnarTable EMPTY = new ColumnarTable(List.of(), List.of());
+
+    // current version; null until first use
+    private volatile Datasets data;
+
+    // header candidates, first match wins
+    private static final String[] CITY_COLUMNS = {"city", "location_name", "capital"};
+    private static final String[] TEMP_COLUMNS = {"temperature", "temperature_celsius", "temp_c", "temp_mean_c_approx"};
+    private static final String[] HUMIDITY_COLUMNS = {"humidity"};
+    private static final String[] WIND_COLUMNS = {"wind", "wind_kph", "windspeed_10m_max_kmh"};
+    private static final String[] CONDITION_COLUMNS = {"condition", "condition_text"};
+    private static final String[] DATE_COLUMNS = {"date", "last_updated"};
+
+    // bump when the line splitting or type inference changes; snapshots of older parses are then ignored
+    private static final int PARSER_VERSION = 1;
+    private static final String SCHEMA = DatasetSnapshots.schema(PARSER_VERSION, CITY_COLUMNS, TEMP_COLUMNS,
+            HUMIDITY_COLUMNS, WIND_COLUMNS, CONDITION_COLUMNS, DATE_COLUMNS);
 
     @PostConstruct
     public void init() {
         System.out.println("LocalCSVLoaderService initialized (lazy mode)");
     }
 
-    private synchronized void ensureLoaded() {
-        if (loaded) return;
+    private Datasets ensureLoaded() {
+        Datasets d = data;
+        return d != null ? d : load();
+    }
+
+    private synchronized Datasets load() {
+        if (data == null) {
+            data = build(false);
+            System.out.println("CSV fallback datasets loaded");
+        }
+        return data;
+    }
+
+    // strict: a file that fails to parse aborts the build (reload keeps the live version)
+    private Datasets build(boolean strict) {
+        MappedCsvFile mapped = globalMapped ? mapGlobal(strict) : null;
+        String snapshotName = mapped != null ? datasetName() + "-mapped" : datasetName();
+
+        String fingerprint = snapshots.fingerprint(SCHEMA, List.of(locator.resolve(globalPath), locator.resolve(dailyPath)));
+
+        List<ColumnarTable> cached = snapshots.load(snapshotName, fingerprint,
+                in -> List.of(ColumnarTable.read(in), ColumnarTable.read(in)));
+        if (cached != null) {
+            System.out.println("✔ CSV fallback tables loaded from snapshot: "
+                    + cached.get(0).size() + " + " + cached.get(1).size() + " rows");
+            return new Datasets(cached.get(0), cached.get(1), mapped, buildCurrentIndex(cached));
+        }
+
+        ColumnarTable global = mapped != null ? EMPTY : loadCsv(globalPath, "Global", strict);
+        ColumnarTable daily = loadCsv(dailyPath, "Daily", strict);
+
+        // a file that failed to parse is not frozen into the snapshot
+        if (global != null && daily != null) {
+            ColumnarTable g = global, d = daily;
+            snapshots.save(snapshotName, fingerprint, out -> {
+                g.write(out);
+                d.write(out);
+            });
+        }
 
-        loadCsv(globalPath, globalData, "Global", 5000);
-        loadCsv(dailyPath, dailyData, "Daily", 5000);
+        global = global != null ? global : EMPTY;
+        daily = daily != null ? daily : EMPTY;
+        return new Datasets(global, daily, mapped, buildCurrentIndex(List.of(global, daily)));
+    }
 
-        loaded = true;
-        System.out.println("CSV fallback datasets loaded");
+    // null (heap loading instead) when the global file is not a plain file on disk, e.g. inside the jar,
+    // or when it was rewritten in place under the live mapping instead of replaced by a rename
+    private MappedCsvFile mapGlobal(boolean strict) {
+        Resource resource = locator.resolve(globalPath);
+        try {
+            if (!resource.exists() || !resource.isFile()) {
+                System.err.println("❌ Global CSV not mappable (" + globalPath + "), loading it on-heap");
+                return null;
+            }
+            Datasets live = data;
+            if (live != null && live.mapped != null && live.mapped.rewrittenInPlace()) {
+                System.err.println("❌ Global CSV was rewritten in place (" + globalPath
+                        + "); replace it by an atomic rename to keep it mapped. Loading it on-heap");
+                return null;
+            }
+            long start = System.nanoTime();
+            MappedCsvFile mapped = MappedCsvFile.open(resource.getFile().toPath(), CITY_COLUMNS, DATE_COLUMNS);
+            System.out.println("✔ Mapped Global CSV: " + mapped.rowCount() + " rows, "
+                    + mapped.locationCount() + " locations in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return mapped;
+        } catch (Exception e) {
+            if (strict) throw new IllegalStateException("Global CSV mapping failed: " + e.getMessage(), e);
+            System.err.println("❌ Global CSV mapping failed: " + e.getMessage());
+            return null;
+        }
     }
 
-    private void loadCsv(String path,
-                         List<Map<String, String>> target,
-                         String label,
-                         int maxRows) {
+    // =====================================================
+    // RELOAD
+    // =====================================================
+
+    @Override
+    public String datasetName() {
+        return "csv-tier";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return relativePath.equals(globalPath) || relativePath.equals(dailyPath);
+    }
+
+    @Override
+    public void reload() {
+        // built beside the live version; readers switch on the assignment
+        data = build(true);
+    }
+
+    // null when the file exists but could not be read (non-strict)
+    private ColumnarTable loadCsv(String path,
+                                  String label,
+                                  boolean strict) {
 
         try {
-            Resource resource = new ClassPathResource(path);
+            Resource resource = locator.resolve(path);
 
             if (!resource.exists()) {
                 System.err.println("❌ " + label + " CSV not found: " + path);
-                return;
+                return EMPTY;
             }
 
             try (BufferedReader br = new BufferedReader(
                     new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
 
                 String headerLine = br.readLine();
-                if (headerLine == null) return;
+                if (headerLine == null) return EMPTY;
 
-                String[] headers = headerLine.split(",");
+                List<String> headers = new ArrayList<>();
+                for (String h : headerLine.split(",")) {
+                    headers.add(h.trim().toLowerCase());
+                }
 
+                ColumnarTable table = null;
                 String line;
-                int count = 0;
 
-                while ((line = br.readLine()) != null && count < maxRows) {
+                while ((line = br.readLine()) != null) {
                     String[] values = line.split(",", -1);
-                    Map<String, String> row = new HashMap<>();
 
-                    for (int i = 0; i < Math.min(headers.length, values.length); i++) {
-                        row.put(headers[i].trim().toLowerCase(), values[i].trim());
-                    }
-
-                    target.add(row);
-                    count++;
+                    // column types come from the first row; odd values later widen a column to text
+                    if (table == null) table = ColumnarTable.infer(headers, values);
+                    table.append(values);
                 }
-            }
 
-            System.out.println("✔ Loaded " + label + " CSV rows: " + target.size());
+                if (table == null) return EMPTY;
+                table.trim();
+
+                System.out.println("✔ Loaded " + label + " CSV rows: " + table.size()
+                        + " (~" + table.estimatedBytes() / 1024 + " KB)");
+                return table;
+            }
 
         } catch (Exception e) {
+            if (strict) throw new IllegalStateException(label + " CSV load failed: " + e.getMessage(), e);
             System.err.println("❌ " + label + " CSV load failed: " + e.getMessage());
+            return null;
         }
     }
 
-    public List<Map<String, String>> getGlobalData() {
-        ensureLoaded();
-        return globalData;
+    // =====================================================
+    // CSV TIER LOOKUP
+    // =====================================================
+
+    /**
+     * Latest dataset weather for a city, capital or country name, in the unified map shape;
+     * null when the datasets do not know the place.
+     */
+    public Map<String, Object> findCurrent(String query) {
+        Datasets d = ensureLoaded();
+
+        // the mapped global repository is the fuller source, so it answers first
+        if (d.mapped != null) {
+            Map<String, String> row = d.mapped.latest(query);
+            if (row != null) return unified(row);
+        }
+        return d.currentIndex.get(WeatherCacheService.normalizeKey(query));
+    }
+
+    // unified map from a decoded text row
+    private static Map<String, Object> unified(Map<String, String> row) {
+        return unified(first(row, CITY_COLUMNS),
+                number(first(row, TEMP_COLUMNS)),
+                number(first(row, HUMIDITY_COLUMNS)),
+                number(first(row, WIND_COLUMNS)),
+                first(row, CONDITION_COLUMNS));
     }
 
-    public List<Map<String, String>> getDailyData() {
-        ensureLoaded();
-        return dailyData;
+    // also the shape of the history-CSV fallback in WeatherFailoverService
+    static Map<String, Object> unified(String city, Double temperature, Double humidity,
+                                       Double wind, String condition) {
+        Map<String, Object> out = new HashMap<>();
+        out.put("city", city);
+        out.put("temperature", temperature);
+        out.put("humidity", humidity);
+        out.put("wind", wind);
+        out.put("condition", condition.isEmpty() ? "Unknown" : condition);
+        out.put("source", "CSV");
+        return Collections.unmodifiableMap(out);
     }
+
+    // city / capital keys win over country keys. A place or country takes its most recent row, by the date
+    // text as MappedCsvFile orders it (ISO dates and timestamps sort as text); on equal dates a later row
+    // of the same table wins, as in MappedCsvFile, and an earlier table wins over a later one
+    private Map<String, Map<String, Object>> buildCurrentIndex(List<ColumnarTable> tables) {
+        Map<String, Best> byPlace = new HashMap<>();
+        Map<String, Best> byCountry = new HashMap<>();
+
+        for (int ti = 0; ti < tables.size(); ti++) {
+            ColumnarTable t = tables.get(ti);
+            int city = firstColumn(t, CITY_COLUMNS);
+            if (city < 0) continue;
+
+            int country = t.column("country");
+            int temp = firstColumn(t, TEMP_COLUMNS);
+            int humidity = firstColumn(t, HUMIDITY_COLUMNS);
+            int wind = firstColumn(t, WIND_COLUMNS);
+            int condition = firstColumn(t, CONDITION_COLUMNS);
+            int date = firstColumn(t, DATE_COLUMNS);
+
+            for (int r = 0; r < t.size(); r++) {
+                String name = t.getString(r, city);
+                if (name.isEmpty()) continue;
+
+                String day = date >= 0 ? t.getString(r, date) : "";
+                String placeKey = WeatherCacheService.normalizeKey(name);
+                String countryKey = country >= 0 ? WeatherCacheService.normalizeKey(t.getString(r, country)) : "";
+
+                boolean place = Best.beats(byPlace.get(placeKey), day, ti);
+                boolean land = !countryKey.isEmpty() && Best.beats(byCountry.get(countryKey), day, ti);
+                if (!place && !land) continue;
+
+                Map<String, Object> unified = unified(name,
+                        number(t, r, temp), number(t, r, humidity), number(t, r, wind),
+                        condition >= 0 ? t.getString(r, condition) : "");
+
+                if (place) byPlace.put(placeKey, new Best(day, ti, unified));
+                if (land) byCountry.put(countryKey, new Best(day, ti, unified));
+            }
+        }
+
+        Map<String, Map<String, Object>> index = new HashMap<>();
+        byCountry.forEach((key, best) -> index.put(key, best.row()));
+        byPlace.forEach((key, best) -> index.put(key, best.row()));
+        System.out.println("✔ CSV tier index: " + index.size() + " keys");
+        return Map.copyOf(index);
+    }
+
+    // most recent row seen for a key; rows of one table come in file order
+    private record Best(String day, int table, Map<String, Object> row) {
+        static boolean beats(Best held, String day, int table) {
+            if (held == null) return true;
+            int c = day.compareTo(held.day);
+            return c > 0 || (c == 0 && table == held.table);
+        }
+    }
+
+    private static int firstColumn(ColumnarTable t, String[] candidates) {
+        for (String c : candidates) {
+            int col = t.column(c);
+            if (col >= 0) return col;
+        }
+        return -1;
+    }
+
+    private static Double number(ColumnarTable t, int row, int col) {
+        if (col < 0) return null;
+        double v = t.getDouble(row, col);
+        return Double.isNaN(v) ? null : v;
+    }
+
+    private static Double number(String v) {
+        try {
+            return v.isEmpty() ? null : Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // first non-empty value among the candidate columns, "" when none
+    private static String first(Map<String, String> row, String[] candidates) {
+        for (String c : candidates) {
+            String v = row.get(c);
+            if (v != null && !v.isEmpty()) return v;
+        }
+        return "";
+    }
+
+    // =====================================================
+    // RAW DATASETS
+    // =====================================================
+
+    /**
+     * Visits every global row through the column accessors, without building a map per row.
+     * columns[i] lists header candidates; values[i] is the first non-blank one in the row (trimmed, "" when none).
+     * In mapped mode: one row per location (its latest), decoded from the mapping.
+     * The values array is reused from row to row.
+     */
+    public void forEachGlobalRow(String[][] columns, Consumer<String[]> visitor) {
+        Datasets d = ensureLoaded();
+        if (d.mapped == null) {
+            forEachRow(d.global, columns, visitor);
+            return;
+        }
+
+        List<String> header = d.mapped.header();
+        int[][] cols = resolve(columns, header::indexOf);
+        String[] values = new String[columns.length];
+        d.mapped.forEachLatest(fields -> {
+            for (int i = 0; i < cols.length; i++) {
+                values[i] = "";
+                for (int c : cols[i]) {
+                    String v = c < fields.size() ? fields.get(c).trim() : "";
+                    if (!v.isEmpty()) {
+                        values[i] = v;
+                        break;
+                    }
+                }
+            }
+            visitor.accept(values);
+        });
+    }
+
+    /** Same as forEachGlobalRow, over the daily dataset. */
+    public void forEachDailyRow(String[][] columns, Consumer<String[]> visitor) {
+        forEachRow(ensureLoaded().daily, columns, visitor);
+    }
+
+    private static void forEachRow(ColumnarTable t, String[][] columns, Consumer<String[]> visitor) {
+        int[][] cols = resolve(columns, t::column);
+        String[] values = new String[columns.length];
+        for (int r = 0; r < t.size(); r++) {
+            for (int i = 0; i < cols.length; i++) {
+                values[i] = "";
+                for (int c : cols[i]) {
+                    String v = t.getString(r, c).trim();
+                    if (!v.isEmpty()) {
+                        values[i] = v;
+                        break;
+                    }
+                }
+            }
+            visitor.accept(values);
+        }
+    }
+
+    // candidate names -> the indexes of those present, in candidate order
+    private static int[][] resolve(String[][] columns, ToIntFunction<String> index) {
+        int[][] out = new int[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            out[i] = Arrays.stream(columns[i]).mapToInt(index).filter(c -> c >= 0).toArray();
+        }
+        return out;
+    }
+
+    /** Column access for scans (row ids, primitive columns); empty in mapped mode. */
+    public ColumnarTable getGlobalTable() {
+        return ensureLoaded().global;
+    }
+
+    public ColumnarTable getDailyTable() {
+        return ensureLoaded().daily;
+    }
+
+    /** Mapped global file figures; null before first use or when the global dataset is on-heap. */
+    public Map<String, Object> mappedStats() {
+        Datasets d = data;
+        return d != null && d.mapped != null ? d.mapped.stats() : null;
+    }
+
+    // one consistent version of the tables and the index built from them
+    private record Datasets(ColumnarTable global,
+                            ColumnarTable daily,
+                            MappedCsvFile mapped,
+                            Map<String, Map<String, Object>> currentIndex) {}
 }
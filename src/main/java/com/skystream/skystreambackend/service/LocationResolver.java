@@ -0,0 +1,310 @@
+package com.skystream.skystreambackend.service;
+
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Free-text query -> canonical location, in front of the failover chain, so "NYC",
+ * "new york", "New York, US" and "Nueva York" share one cache entry and one upstream call.
+ *
+ * Order: alias table, then the local indexes - the autocomplete index (CSV dataset places
+ * plus every learned search.json result) and the WeatherService city keys. Only exact
+ * names count; "Name, Country" / "Name, Region" narrows by the part after the comma.
+ * Anything else stays as typed (id "q:<normalized query>").
+ *
+ * Aliases are seeded from location-aliases.tsv (resolved like the other datasets) and
+ * learned when an unresolved query comes back from upstream as a city known by a single
+ * name; learned ones are appended to weather.location.learned-file and survive restarts
+ * (kept for this run only when no file is configured).
+ */
+@Service
+public class LocationResolver implements ReloadableDataset {
+
+    @Value("${weather.location.aliases:location-aliases.tsv}")
+    private String seedPath;
+
+    @Value("${weather.location.learned-file:}")
+    private String learnedFile;
+
+    @Value("${weather.location.learn:true}")
+    private boolean learnEnabled;
+
+    @Value("${weather.location.max-learned:50000}")
+    private int maxLearned;
+
+    @Autowired
+    private DatasetLocator locator;
+
+    @Autowired
+    private CityAutocompleteService autocomplete;
+
+    @Autowired
+    private WeatherService weatherService;
+
+    @Autowired
+    private BlockingExecutor blocking;
+
+    // normalized alias -> target query (a place name, optionally ", country")
+    private volatile Map<String, String> seeded = Map.of();
+    private final Map<String, String> learned = new ConcurrentHashMap<>();
+
+    private final AtomicLong resolutions = new AtomicLong();
+    private final AtomicLong aliasHits = new AtomicLong();
+    private final AtomicLong indexHits = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+    private final AtomicLong learnedThisRun = new AtomicLong();
+
+    /**
+     * A resolved query: id is the cache / coalescing identity, query what upstream
+     * gets, name what the local datasets are searched for.
+     */
+    public record Location(String id, String name, String query) {
+
+        /** Not in any alias table or local index: goes upstream as typed. */
+        public boolean asTyped() {
+            return id.startsWith("q:");
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            seeded = readSeeds();
+        } catch (Exception e) {
+            System.err.println("❌ Location aliases load failed: " + e.getMessage());
+        }
+        readLearned();
+        System.out.println("✔ Location aliases: " + seeded.size() + " seeded, " + learned.size() + " learned");
+    }
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    public Location resolve(String query) {
+        return resolve(query, null);
+    }
+
+    /**
+     * geohash: the cell GeoQuantizer snapped a "lat,lon" query to (null when not snapped);
+     * coordinates key on it, or on the exact text, never on the normalized form, which drops dots.
+     */
+    public Location resolve(String query, String geohash) {
+        resolutions.incrementAndGet();
+        String text = query == null ? "" : query.trim();
+        String key = normalize(text);
+
+        if (key.isEmpty() || GeoPoint.parse(text) != null) {
+            return new Location("geo:" + (geohash != null ? geohash : text), text, text);
+        }
+
+        String target = seeded.get(key);
+        if (target == null) target = learned.get(key);
+        if (target != null) {
+            aliasHits.incrementAndGet();
+            Location known = known(target);
+            return known != null ? known : asTyped(target);
+        }
+
+        Location known = known(text);
+        if (known != null) {
+            indexHits.incrementAndGet();
+            return known;
+        }
+
+        unresolved.incrementAndGet();
+        return asTyped(text);
+    }
+
+    /**
+     * Remembers an unresolved query as an alias of the city upstream answered with,
+     * when that city is known locally under one unambiguous name and upstream places it
+     * in the same country (and region, where both say). A query with a ", qualifier" is
+     * never learned: the qualifier matched nothing locally, so the answer can't be checked.
+     */
+    public void learn(Location location, WeatherResponse response) {
+        if (!learnEnabled || !location.asTyped() || location.name().indexOf(',') >= 0) return;
+        if (response == null || response.city == null || response.city.isBlank()) return;
+        if (learned.size() >= maxLearned) return;
+
+        CityAutocompleteService.Match m = autocomplete.match(response.city, "");
+        if (m == null || m.homonyms() != 1 || !samePlace(m, response)) return;
+
+        String key = location.id().substring(2);
+        if (key.equals(normalize(m.name())) || seeded.containsKey(key)) return;
+
+        String target = m.country().isEmpty() ? m.name() : m.name() + ", " + m.country();
+        if (learned.putIfAbsent(key, target) == null) {
+            learnedThisRun.incrementAndGet();
+            blocking.scheduler().schedule(() -> append(key, target));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("seededAliases", seeded.size());
+        out.put("learnedAliases", learned.size());
+        out.put("learnedThisRun", learnedThisRun.get());
+        out.put("resolutions", resolutions.get());
+        out.put("aliasHits", aliasHits.get());
+        out.put("indexHits", indexHits.get());
+        out.put("unresolved", unresolved.get());
+        return out;
+    }
+
+    // =====================================================
+    // RESOLUTION
+    // =====================================================
+
+    // exact name, else "name, hint"
+    private Location known(String text) {
+        Location l = lookup(text, "");
+        if (l != null) return l;
+
+        int comma = text.indexOf(',');
+        if (comma <= 0) return null;
+        return lookup(text.substring(0, comma), text.substring(text.lastIndexOf(',') + 1));
+    }
+
+    private Location lookup(String name, String hint) {
+        CityAutocompleteService.Match m = autocomplete.match(name, hint);
+        if (m != null) {
+            String id = "loc:" + normalize(m.name()) + "|" + normalize(m.country());
+            // the country only goes upstream when the bare name is ambiguous
+            String query = m.homonyms() > 1 && !m.country().isEmpty() ? m.name() + ", " + m.country() : m.name();
+            return new Location(id, m.name(), query);
+        }
+        if (!normalize(hint).isEmpty()) return null;
+
+        // history CSVs carry no country
+        String city = weatherService.canonicalCity(name);
+        return city != null ? new Location("loc:" + normalize(city) + "|", city, city) : null;
+    }
+
+    // upstream's country is the entry's name or code; regions only count when both sides have one
+    private static boolean samePlace(CityAutocompleteService.Match m, WeatherResponse r) {
+        String country = normalize(r.country);
+        if (country.isEmpty()) return false;
+        if (!country.equals(normalize(m.country())) && !country.equals(normalize(m.countryCode()))) return false;
+
+        String region = normalize(r.region);
+        return region.isEmpty() || normalize(m.region()).isEmpty() || region.equals(normalize(m.region()));
+    }
+
+    private static Location asTyped(String text) {
+        return new Location("q:" + normalize(text), text, text);
+    }
+
+    // =====================================================
+    // ALIAS TABLE
+    // =====================================================
+
+    @Override
+    public String datasetName() {
+        return "location-aliases";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return relativePath.equals(seedPath);
+    }
+
+    @Override
+    public void reload() throws Exception {
+        seeded = readSeeds();
+    }
+
+    private Map<String, String> readSeeds() throws IOException {
+        Resource res = locator.resolve(seedPath);
+        if (!res.exists()) return Map.of();
+
+        Map<String, String> out = new ConcurrentHashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8))) {
+            readAliases(in, out);
+        }
+        return out;
+    }
+
+    private void readLearned() {
+        if (learnedFile == null || learnedFile.isBlank()) return;
+        Path file = Paths.get(learnedFile);
+        if (!Files.isRegularFile(file)) return;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            readAliases(in, learned);
+        } catch (IOException e) {
+            System.err.println("❌ Learned location aliases unreadable: " + e.getMessage());
+        }
+    }
+
+    // "alias<TAB>target" per line, '#' comments; later lines win
+    private static void readAliases(BufferedReader in, Map<String, String> out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            int tab = line.indexOf('\t');
+            if (tab <= 0) continue;
+
+            String alias = normalize(line.substring(0, tab));
+            String target = line.substring(tab + 1).trim();
+            if (!alias.isEmpty() && !target.isEmpty()) out.put(alias, target);
+        }
+    }
+
+    private synchronized void append(String alias, String target) {
+        if (learnedFile == null || learnedFile.isBlank()) return;
+        try {
+            Path file = Paths.get(learnedFile);
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Files.writeString(file, alias + "\t" + target + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("❌ Could not persist location alias '" + alias + "': " + e.getMessage());
+        }
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    // lowercase, no diacritics or punctuation, single spaces, commas as ", "
+    private static String normalize(String s) {
+        if (s == null) return "";
+        String t = Normalizer.normalize(s.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(t.length());
+        boolean space = false;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (c == ',') {
+                sb.append(',');
+                space = true;
+            } else if (Character.isLetterOrDigit(c) || c == '-') {
+                if (space && sb.length() > 0) sb.append(' ');
+                space = false;
+                sb.append(c);
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+}
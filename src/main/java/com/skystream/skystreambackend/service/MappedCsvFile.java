@@ -0,0 +1,395 @@
+package com.skystream.skystreambackend.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A CSV file served straight from a read-only memory mapping.
+ * Opening it makes one pass over the bytes and keeps only the start offset of each
+ * location's latest row (by the date column, normalized with WeatherCacheService.normalizeKey),
+ * plus country -> location key of the country's latest row. Rows are decoded into maps only when
+ * a location is queried, so the heap holds one offset per location instead of the rows themselves.
+ * Files over 2 GB are mapped in 1 GB chunks. Quoted fields (with commas, newlines and "") are handled.
+ *
+ * The file must be replaced by an atomic rename, never rewritten in place: the mapping keeps
+ * reading the old inode after a rename, but sees new bytes at old offsets (or faults, on
+ * truncation) when the same file is overwritten.
+ */
+public final class MappedCsvFile {
+
+    private static final int CHUNK_BITS = 30;
+
+    private final Path path;
+    private final long length;
+    private final MappedByteBuffer[] chunks;
+    private final int chunkBits;
+
+    // identity of the mapped inode, to tell a rename-replacement from an in-place rewrite
+    private final Object fileKey;
+    private final long modifiedAt;
+
+    private final List<String> header;
+    private final long rowCount;
+
+    // location key -> start offset of its latest row
+    private final Map<String, Long> latestByLocation;
+    // country key -> location key of its latest row
+    private final Map<String, String> locationByCountry;
+
+    private MappedCsvFile(Path path, long length, MappedByteBuffer[] chunks, int chunkBits,
+                          BasicFileAttributes attributes, List<String> header, long rowCount,
+                          Map<String, Long> latestByLocation, Map<String, String> locationByCountry) {
+        this.path = path;
+        this.length = length;
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.fileKey = attributes.fileKey();
+        this.modifiedAt = attributes.lastModifiedTime().toMillis();
+        this.header = header;
+        this.rowCount = rowCount;
+        this.latestByLocation = latestByLocation;
+        this.locationByCountry = locationByCountry;
+    }
+
+    /**
+     * Maps the file and indexes its rows.
+     * locationColumns / dateColumns: header candidates, first match wins; the location column is required.
+     */
+    public static MappedCsvFile open(Path path, String[] locationColumns, String[] dateColumns) throws IOException {
+        return open(path, locationColumns, dateColumns, CHUNK_BITS);
+    }
+
+    // chunkBits below 30 only to exercise rows that straddle chunks without a gigabyte file
+    static MappedCsvFile open(Path path, String[] locationColumns, String[] dateColumns, int chunkBits)
+            throws IOException {
+        long chunkSize = 1L << chunkBits;
+        MappedByteBuffer[] chunks;
+        long length;
+        BasicFileAttributes attributes;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            // the mapping stays valid after the channel is closed
+            length = ch.size();
+            chunks = new MappedByteBuffer[(int) ((length + chunkSize - 1) >>> chunkBits)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << chunkBits;
+                chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+            }
+        }
+
+        Scanner scanner = new Scanner(chunks, chunkBits, length);
+        List<String> header = new ArrayList<>();
+        for (String h : scanner.readHeader()) header.add(h.trim().toLowerCase());
+
+        int location = firstIndex(header, locationColumns);
+        if (location < 0) throw new IOException("no location column in " + path.getFileName());
+
+        int country = header.indexOf("country");
+        scanner.index(location, country, firstIndex(header, dateColumns));
+
+        return new MappedCsvFile(path, length, chunks, chunkBits, attributes, List.copyOf(header),
+                scanner.rows, scanner.latestByLocation(), Map.copyOf(scanner.locationByCountry));
+    }
+
+    /**
+     * True when the path still names the mapped file (same inode) but its contents changed:
+     * it was rewritten in place rather than replaced by a rename. False when unknown.
+     */
+    public boolean rewrittenInPlace() {
+        try {
+            BasicFileAttributes now = Files.readAttributes(path, BasicFileAttributes.class);
+            return fileKey != null && fileKey.equals(now.fileKey())
+                    && (now.size() != length || now.lastModifiedTime().toMillis() != modifiedAt);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // =====================================================
+    // LOOKUP
+    // =====================================================
+
+    public List<String> header() {
+        return header;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public int locationCount() {
+        return latestByLocation.size();
+    }
+
+    /** Location key for a city or country query; null when the file has neither. */
+    public String locationKey(String query) {
+        String key = WeatherCacheService.normalizeKey(query);
+        if (latestByLocation.containsKey(key)) return key;
+        return locationByCountry.get(key);
+    }
+
+    /**
+     * Most recent row of a location (by the date column, later rows winning ties),
+     * decoded from the mapping; null when unknown.
+     */
+    public Map<String, String> latest(String query) {
+        String key = locationKey(query);
+        return key == null ? null : row(latestByLocation.get(key));
+    }
+
+    /** Every location once, as its latest row (decoded on access). */
+    public List<Map<String, String>> latestRows() {
+        String[] keys = latestByLocation.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        return new AbstractList<>() {
+            @Override
+            public Map<String, String> get(int i) {
+                return latest(keys[i]);
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    /** Every location's latest row as its raw fields in header order, without a map per row; sorted by key. */
+    public void forEachLatest(Consumer<List<String>> visitor) {
+        String[] keys = latestByLocation.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        for (String key : keys) visitor.accept(fields(latestByLocation.get(key)));
+    }
+
+    /** The row starting at offset, as column name -> value. */
+    public Map<String, String> row(long offset) {
+        List<String> fields = fields(offset);
+        Map<String, String> out = new LinkedHashMap<>();
+        for (int c = 0; c < header.size(); c++) {
+            out.put(header.get(c), c < fields.size() ? fields.get(c).trim() : "");
+        }
+        return out;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("file", path.toString());
+        out.put("bytes", length);
+        out.put("rows", rowCount);
+        out.put("locations", latestByLocation.size());
+        return out;
+    }
+
+    // =====================================================
+    // DECODING
+    // =====================================================
+
+    private static byte at(MappedByteBuffer[] chunks, int chunkBits, long pos) {
+        return chunks[(int) (pos >>> chunkBits)].get((int) (pos & ((1L << chunkBits) - 1)));
+    }
+
+    private List<String> fields(long offset) {
+        List<String> out = new ArrayList<>();
+        readLine(chunks, chunkBits, length, offset, out);
+        return out;
+    }
+
+    // fields of the line at offset into out, quotes removed and "" unescaped; returns where the next line starts
+    private static long readLine(MappedByteBuffer[] chunks, int chunkBits, long length, long offset, List<String> out) {
+        ByteString field = new ByteString();
+        boolean quoted = false;
+
+        long pos = offset;
+        while (pos < length) {
+            byte b = at(chunks, chunkBits, pos++);
+            if (quoted) {
+                if (b != '"') {
+                    field.add(b);
+                } else if (pos < length && at(chunks, chunkBits, pos) == '"') {
+                    field.add(b);
+                    pos++;
+                } else {
+                    quoted = false;
+                }
+            } else if (b == '"') {
+                quoted = true;
+            } else if (b == ',') {
+                out.add(field.take());
+            } else if (b == '\n') {
+                break;
+            } else if (b != '\r') {
+                field.add(b);
+            }
+        }
+        out.add(field.take());
+        return pos;
+    }
+
+    private static int firstIndex(List<String> header, String[] candidates) {
+        for (String c : candidates) {
+            int i = header.indexOf(c);
+            if (i >= 0) return i;
+        }
+        return -1;
+    }
+
+    // growable UTF-8 buffer for one field
+    private static final class ByteString {
+        byte[] bytes = new byte[64];
+        int len;
+
+        void add(byte b) {
+            if (len == bytes.length) bytes = Arrays.copyOf(bytes, len * 2);
+            bytes[len++] = b;
+        }
+
+        String take() {
+            String s = new String(bytes, 0, len, StandardCharsets.UTF_8);
+            len = 0;
+            return s;
+        }
+    }
+
+    // a key's latest row so far, and the raw location name on it
+    private static final class Latest {
+        long offset;
+        String date;
+        String name;
+
+        Latest(long offset, String date, String name) {
+            this.offset = offset;
+            this.date = date;
+            this.name = name;
+        }
+
+        // ISO dates / timestamps order as text; a row later in the file wins ties
+        void offer(long offset, String date, String name) {
+            if (date.compareTo(this.date) > 0 || (date.equals(this.date) && offset > this.offset)) {
+                this.offset = offset;
+                this.date = date;
+                this.name = name;
+            }
+        }
+    }
+
+    // the single indexing pass; only the location, country and date fields are decoded
+    private static final class Scanner {
+        private final MappedByteBuffer[] chunks;
+        private final int chunkBits;
+        private final long length;
+
+        private long pos;
+        long rows;
+
+        // raw name / raw country -> its latest row; normalized once per distinct value at the end
+        private final Map<String, Latest> byName = new HashMap<>();
+        private final Map<String, Latest> byCountry = new HashMap<>();
+        final Map<String, String> locationByCountry = new HashMap<>();
+
+        Scanner(MappedByteBuffer[] chunks, int chunkBits, long length) {
+            this.chunks = chunks;
+            this.chunkBits = chunkBits;
+            this.length = length;
+        }
+
+        // decoded like any row, so a quoted name may hold commas
+        List<String> readHeader() {
+            List<String> out = new ArrayList<>();
+            pos = readLine(chunks, chunkBits, length, pos, out);
+            return out;
+        }
+
+        // dateColumn < 0: no dates, the last row of a location is its latest
+        void index(int locationColumn, int countryColumn, int dateColumn) {
+            ByteString location = new ByteString();
+            ByteString country = new ByteString();
+            ByteString date = new ByteString();
+
+            long rowStart = pos;
+            int column = 0;
+            boolean quoted = false;
+            boolean empty = true;
+
+            int first = (int) (pos >>> chunkBits);
+            for (int c = first; c < chunks.length; c++) {
+                MappedByteBuffer buf = chunks[c];
+                long base = (long) c << chunkBits;
+                int from = c == first ? (int) (pos & ((1L << chunkBits) - 1)) : 0;
+
+                for (int i = from; i < buf.limit(); i++) {
+                    byte b = buf.get(i);
+
+                    if (b == '"') {
+                        // "" inside quotes toggles twice = literal quote, which key fields can do without
+                        quoted = !quoted;
+                        continue;
+                    }
+                    if (!quoted && b == '\n') {
+                        if (!empty) addRow(rowStart, location.take(), country.take(), date.take());
+                        location.len = 0;
+                        country.len = 0;
+                        date.len = 0;
+                        rowStart = base + i + 1;
+                        column = 0;
+                        empty = true;
+                        continue;
+                    }
+                    if (b == '\r' && !quoted) continue;
+                    empty = false;
+
+                    if (!quoted && b == ',') column++;
+                    else if (column == locationColumn) location.add(b);
+                    else if (column == countryColumn) country.add(b);
+                    else if (column == dateColumn) date.add(b);
+                }
+            }
+            // last line without a trailing newline
+            if (!empty) addRow(rowStart, location.take(), country.take(), date.take());
+        }
+
+        private void addRow(long offset, String name, String country, String date) {
+            name = name.trim();
+            if (name.isEmpty()) return;
+            rows++;
+            offer(byName, name, offset, date.trim(), name);
+            if (!country.isBlank()) offer(byCountry, country.trim(), offset, date.trim(), name);
+        }
+
+        private static void offer(Map<String, Latest> latest, String key, long offset, String date, String name) {
+            Latest l = latest.get(key);
+            if (l == null) latest.put(key, new Latest(offset, date, name));
+            else l.offer(offset, date, name);
+        }
+
+        // same-key values ("Paris", "paris ") share one latest row
+        private static Map<String, Latest> merge(Map<String, Latest> byRaw) {
+            Map<String, Latest> merged = new HashMap<>(byRaw.size() * 2);
+            byRaw.forEach((raw, mine) -> offer(merged, WeatherCacheService.normalizeKey(raw),
+                    mine.offset, mine.date, mine.name));
+            return merged;
+        }
+
+        // a country points at the location of its most recent row, the same rule as LocalCSVLoaderService
+        Map<String, Long> latestByLocation() {
+            merge(byCountry).forEach((key, l) -> locationByCountry.put(key, WeatherCacheService.normalizeKey(l.name)));
+
+            Map<String, Long> out = new HashMap<>(byName.size() * 2);
+            merge(byName).forEach((key, l) -> out.put(key, l.offset));
+            return Map.copyOf(out);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nearest known dataset location to a coordinate.
+ * Every place with lat/lon in the CSV datasets goes into a KdTree; a query is a
+ * tree descent, not a scan. Used for "lat,lon" queries and as the CSV tier's answer
+ * for cities the datasets do not have (their coordinates come from the autocomplete index).
+ * Built lazily from the CSV tier and rebuilt when its files change.
+ */
+@Service
+public class NearestLocationService implements ReloadableDataset {
+
+    // a fallback answer farther than this is not the same place's weather
+    @Value("${weather.nearest.max-km:500}")
+    private double maxFallbackKm;
+
+    @Autowired
+    private LocalCSVLoaderService csvService;
+
+    @Autowired
+    private CityAutocompleteService autocomplete;
+
+    private volatile Index index;
+
+    // dataset columns read per row: header candidates, first non-blank wins
+    private static final String[][] COLUMNS = {
+            {"location_name", "city", "capital", "name"}, {"country"}, {"lat", "latitude"}, {"lon", "longitude"}};
+    private static final int NAME = 0, COUNTRY = 1, LAT = 2, LON = 3;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /** Up to k nearest dataset locations, closest first: name, country, lat, lon, distanceKm. */
+    public List<Map<String, Object>> nearest(GeoPoint point, int k) {
+        queries.incrementAndGet();
+        Index idx = ensureBuilt();
+
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (KdTree.Neighbour n : idx.tree.nearest(point, k)) {
+            Place p = idx.places.get(n.id());
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", p.name);
+            m.put("country", p.country);
+            m.put("lat", p.point.lat());
+            m.put("lon", p.point.lon());
+            m.put("distanceKm", Math.round(n.distanceKm() * 10) / 10.0);
+            out.add(m);
+        }
+        return out;
+    }
+
+    /**
+     * Name of the dataset location nearest to a query the datasets do not know:
+     * the query's own "lat,lon", or a city's coordinates from the autocomplete index.
+     * Null when there are no coordinates or the nearest place is beyond weather.nearest.max-km.
+     */
+    public String nearestKnown(String query) {
+        GeoPoint point = GeoPoint.parse(query);
+        if (point == null) point = autocomplete.coordinates(query);
+        if (point == null) return null;
+
+        queries.incrementAndGet();
+        Index idx = ensureBuilt();
+        List<KdTree.Neighbour> hit = idx.tree.nearest(point, 1);
+        if (hit.isEmpty() || hit.get(0).distanceKm() > maxFallbackKm) return null;
+
+        fallbacks.incrementAndGet();
+        return idx.places.get(hit.get(0).id()).name;
+    }
+
+    public Map<String, Object> stats() {
+        Index idx = index;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("places", idx == null ? 0 : idx.places.size());
+        out.put("queries", queries.get());
+        out.put("fallbacks", fallbacks.get());
+        return out;
+    }
+
+    // =====================================================
+    // BUILD
+    // =====================================================
+
+    @Override
+    public String datasetName() {
+        return "nearest-index";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return csvService.dependsOn(relativePath);
+    }
+
+    @Override
+    public void reload() {
+        index = build();
+    }
+
+    private Index ensureBuilt() {
+        Index idx = index;
+        return idx != null ? idx : buildOnce();
+    }
+
+    private synchronized Index buildOnce() {
+        if (index == null) index = build();
+        return index;
+    }
+
+    private Index build() {
+        long start = System.nanoTime();
+
+        List<Place> places = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        csvService.forEachDailyRow(COLUMNS, row -> addRow(row, places, seen));
+        csvService.forEachGlobalRow(COLUMNS, row -> addRow(row, places, seen));
+
+        KdTree tree = new KdTree(places.stream().map(p -> p.point).toList());
+        System.out.println("✔ Nearest-location index: " + places.size() + " places in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new Index(List.copyOf(places), tree);
+    }
+
+    // one point per place name + country; rows without valid coordinates are skipped
+    private static void addRow(String[] row, List<Place> places, Set<String> seen) {
+        String name = row[NAME];
+        if (name.isEmpty()) return;
+        String country = row[COUNTRY];
+
+        try {
+            double lat = Double.parseDouble(row[LAT]);
+            double lon = Double.parseDouble(row[LON]);
+            if (!GeoPoint.valid(lat, lon)) return;
+
+            String key = WeatherCacheService.normalizeKey(name) + "|" + WeatherCacheService.normalizeKey(country);
+            if (seen.add(key)) places.add(new Place(name, country, new GeoPoint(lat, lon)));
+        } catch (NumberFormatException ignored) {
+            // no coordinates for this place
+        }
+    }
+
+    private record Place(String name, String country, GeoPoint point) {}
+
+    // places[i] is tree point i
+    private record Index(List<Place> places, KdTree tree) {}
+}
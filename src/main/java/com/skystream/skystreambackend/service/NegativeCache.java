@@ -0,0 +1,192 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queries no provider knows ("asdf", half-typed names), remembered for a short TTL so
+ * repeats skip every upstream and dataset tier and go straight to the static fallback.
+ *
+ * Provider clients report "no such location" answers (HTTP 400 / 404) here; outages,
+ * timeouts and auth errors never count. A query becomes a known miss only when every
+ * configured provider rejected it and the CSV tier had nothing either.
+ *
+ * Lookups go through a Bloom filter first, so the common case (not a known miss) is
+ * a few bit reads; a filter hit is confirmed against the exact expiry map, which keeps
+ * false positives from ever turning a real city away. The filter cannot delete, so there
+ * are two generations, swapped every TTL: a key stays in the filter for at most 2 x TTL.
+ */
+@Service
+public class NegativeCache {
+
+    @Value("${weather.negative-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${weather.negative-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // sizes one filter generation and caps the exact map
+    @Value("${weather.negative-cache.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${weather.negative-cache.fpp:0.01}")
+    private double fpp;
+
+    // rejections seen for queries whose request is still in flight
+    private static final int MAX_PENDING = 10_000;
+
+    private volatile Generations filters;
+
+    // normalized query -> expiry (epoch millis); kept a TTL past expiry, while the filter may still hold it
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+    // normalized query -> providers that rejected it during the current request
+    private final Map<String, Set<String>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong filterPositives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    private record Generations(BloomFilter current, BloomFilter previous, long rotatedAt) {}
+
+    @PostConstruct
+    public void init() {
+        filters = new Generations(newFilter(), newFilter(), System.currentTimeMillis());
+    }
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /** True when every provider rejected this query less than a TTL ago. */
+    public boolean isKnownMiss(String query) {
+        if (!enabled) return false;
+        lookups.incrementAndGet();
+
+        String key = WeatherCacheService.normalizeKey(query);
+        Generations g = rotateIfDue();
+        if (!g.current.mightContain(key) && !g.previous.mightContain(key)) return false;
+
+        filterPositives.incrementAndGet();
+        Long expiry = expiries.get(key);
+        if (expiry == null) {
+            falsePositives.incrementAndGet();
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            // expired, still in the filter until its generation rotates out; not a false positive
+            expired.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /** Called by a provider client when a call failed; only "no such location" answers are kept. */
+    public void recordRejection(String provider, String query, Throwable error) {
+        if (!enabled || !UpstreamClient.isRejection(error)) return;
+        rejections.incrementAndGet();
+
+        if (pending.size() >= MAX_PENDING) pending.clear();
+        pending.computeIfAbsent(WeatherCacheService.normalizeKey(query), k -> ConcurrentHashMap.newKeySet())
+                .add(provider);
+    }
+
+    /**
+     * The whole chain found nothing for the query: remembers it as a known miss when
+     * every one of the given providers rejected it (not just failed) during this request.
+     */
+    public void recordMiss(String query, Collection<String> providers) {
+        if (!enabled) return;
+        String key = WeatherCacheService.normalizeKey(query);
+        Set<String> rejectedBy = pending.remove(key);
+        if (rejectedBy == null || providers.isEmpty() || !rejectedBy.containsAll(providers)) return;
+
+        Generations g = rotateIfDue();
+        if (expiries.size() >= maxEntries) return;
+
+        expiries.put(key, System.currentTimeMillis() + ttlSeconds * 1000);
+        g.current.put(key);
+        recorded.incrementAndGet();
+    }
+
+    /** Drops this request's rejections (the chain is done with the query). */
+    public void settle(String query) {
+        if (!pending.isEmpty()) pending.remove(WeatherCacheService.normalizeKey(query));
+    }
+
+    public Map<String, Object> stats() {
+        Generations g = filters;
+        long falses = falsePositives.get();
+        // lookups of keys that were never added (or long gone); FP rate is measured against these
+        long negatives = lookups.get() - hits.get() - expired.get();
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("ttlSeconds", ttlSeconds);
+        out.put("entries", expiries.size());
+        out.put("filterBytes", g.current.sizeBytes() + g.previous.sizeBytes());
+        out.put("filterHashes", g.current.hashes());
+        out.put("filterInsertions", g.current.insertions() + g.previous.insertions());
+        // either generation may answer "maybe"
+        out.put("estimatedFpp", round(1 - (1 - g.current.currentFpp()) * (1 - g.previous.currentFpp())));
+        out.put("lookups", lookups.get());
+        out.put("hits", hits.get());
+        out.put("filterPositives", filterPositives.get());
+        out.put("falsePositives", falses);
+        out.put("measuredFpp", negatives <= 0 ? 0.0 : round((double) falses / negatives));
+        out.put("rejections", rejections.get());
+        out.put("recorded", recorded.get());
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private Generations rotateIfDue() {
+        Generations g = filters;
+        long now = System.currentTimeMillis();
+        if (now - g.rotatedAt < ttlSeconds * 1000) return g;
+
+        synchronized (this) {
+            g = filters;
+            if (now - g.rotatedAt >= ttlSeconds * 1000) {
+                // the dropped generation only holds keys added over a TTL ago, all expired
+                long kept = g.rotatedAt;
+                g = new Generations(newFilter(), g.current, now);
+                filters = g;
+                purgeAddedBefore(kept);
+            }
+            return g;
+        }
+    }
+
+    // entries added before the oldest kept generation started are in no filter any more; only then
+    // are they dropped, so a lookup of an expired one until then counts as expired, not as a false positive
+    private void purgeAddedBefore(long generationStart) {
+        long cutoff = generationStart + ttlSeconds * 1000;
+        expiries.values().removeIf(expiry -> expiry < cutoff);
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(maxEntries, fpp);
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100_000) / 100_000.0;
+    }
+}
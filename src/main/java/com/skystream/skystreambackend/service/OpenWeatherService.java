@@ -1,18 +1,19 @@
 package com.skystream.skystreambackend.service;
 
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
 @Service
 public class OpenWeatherService {
 
-    private final RestTemplate rest = new RestTemplate();
-
     @Value("${openweather.api.key}")
     private String apiKey;
 
@@ -20,71 +21,129 @@ public class OpenWeatherService {
     @Value("${openweather.api.current.url}")
     private String currentUrl;
 
+    @Autowired
+    private RequestCoalescer coalescer;
+
+    @Autowired
+    private UpstreamClient upstream;
+
+    @Autowired
+    private StreamingWeatherParser parser;
+
+    @Autowired
+    private NegativeCache negativeCache;
+
     /**
      * Fetch current weather from OpenWeatherMap (fallback).
      * Returns frontend-friendly map:
      * city, date, temperature, high, low, humidity, wind, condition
      */
     public Map<String, Object> fetchCurrent(String city) {
-        try {
-            if (apiKey == null || apiKey.isBlank() || currentUrl == null || currentUrl.isBlank()) {
-                return Map.of("error", "fallback-api-config-missing");
-            }
+        return fetchCurrentAsync(city).block();
+    }
 
-            String url = UriComponentsBuilder.fromUriString(java.util.Objects.requireNonNull(currentUrl, "currentUrl must not be null"))
-                    .queryParam("q", city)
-                    .queryParam("appid", apiKey)
-                    .queryParam("units", "metric")
-                    .toUriString();
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> resp = rest.getForObject(url, Map.class);
-            if (resp == null) return Map.of("error", "no-response");
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> main = (Map<String, Object>) resp.get("main");
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> wind = (Map<String, Object>) resp.get("wind");
-
-            // Weather description extraction (safe)
-            String condition = "";
-            Object weatherObj = resp.get("weather");
-            if (weatherObj instanceof java.util.List<?> list && !list.isEmpty()) {
-                Object first = list.get(0);
-                if (first instanceof Map<?, ?>) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> w0 = (Map<String, Object>) first;
-                    Object desc = w0.get("description");
-                    if (desc != null) condition = desc.toString();
-                }
-            }
+    public Mono<Map<String, Object>> fetchCurrentAsync(String city) {
+        return coalescer.execute("openweather", "current", city, () -> doFetchCurrent(city));
+    }
 
-            Map<String, Object> out = new HashMap<>();
-            out.put("city", resp.getOrDefault("name", city));
-            out.put("date", java.time.Instant.now().toString());
-            out.put("temperature", main != null ? main.get("temp") : null);
-            out.put("high", main != null ? main.get("temp_max") : null);
-            out.put("low", main != null ? main.get("temp_min") : null);
-            out.put("humidity", main != null ? main.get("humidity") : null);
-
-            // Convert wind speed from m/s → km/h (one decimal)
-            if (wind != null && wind.get("speed") != null) {
-                double mps = ((Number) wind.get("speed")).doubleValue();
-                out.put("wind", Math.round(mps * 3.6 * 10.0) / 10.0);
-            } else {
-                out.put("wind", null);
-            }
+    private Mono<Map<String, Object>> doFetchCurrent(String city) {
+        if (!configured()) {
+            return Mono.just(Map.of("error", "fallback-api-config-missing"));
+        }
+
+        return upstream.getJson("openweather", currentUri(city), UpstreamClient.MAP)
+                .map(resp -> toFrontendMap(resp, city))
+                .defaultIfEmpty(Map.of("error", "no-response"))
+                .onErrorResume(ex -> Mono.just(UpstreamClient.error("fallback-api-failure", ex)));
+    }
+
+    /**
+     * Current weather decoded straight into the unified response (streaming parse).
+     * Completes empty on missing config or any upstream or payload error; a rejected
+     * query (404) is passed on as the error.
+     */
+    public Mono<WeatherResponse> fetchCurrentTypedAsync(String city) {
+        if (!configured()) {
+            return Mono.empty();
+        }
+
+        return coalescer.execute("openweather", "current:typed", city, () ->
+                upstream.getBytes("openweather", currentUri(city))
+                        .mapNotNull(this::parseQuietly)
+                        .onErrorResume(ex -> {
+                            negativeCache.recordRejection("openweather", city, ex);
+                            // a rejected query stays an error, so the breaker can tell it from an outage
+                            return UpstreamClient.isRejection(ex) ? Mono.error(ex) : Mono.empty();
+                        }));
+    }
+
+    public boolean configured() {
+        return apiKey != null && !apiKey.isBlank() && currentUrl != null && !currentUrl.isBlank();
+    }
+
+    // "lat,lon" goes as coordinates: q only takes place names, "48.85,2.35" would be a 404
+    URI currentUri(String city) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(java.util.Objects.requireNonNull(currentUrl, "currentUrl must not be null"));
+        GeoPoint point = GeoPoint.parse(city);
+        if (point != null) {
+            uri.queryParam("lat", point.lat()).queryParam("lon", point.lon());
+        } else {
+            uri.queryParam("q", city);
+        }
+        return uri
+                .queryParam("appid", apiKey)
+                .queryParam("units", "metric")
+                .build()
+                .encode()
+                .toUri();
+    }
 
-            out.put("condition", condition);
+    private WeatherResponse parseQuietly(byte[] body) {
+        try {
+            return parser.parseOpenWeather(body);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
-            return out;
+    private Map<String, Object> toFrontendMap(Map<String, Object> resp, String city) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> main = (Map<String, Object>) resp.get("main");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> wind = (Map<String, Object>) resp.get("wind");
+
+        // Weather description extraction (safe)
+        String condition = "";
+        Object weatherObj = resp.get("weather");
+        if (weatherObj instanceof java.util.List<?> list && !list.isEmpty()) {
+            Object first = list.get(0);
+            if (first instanceof Map<?, ?>) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> w0 = (Map<String, Object>) first;
+                Object desc = w0.get("description");
+                if (desc != null) condition = desc.toString();
+            }
+        }
 
-        } catch (Exception ex) {
-            return Map.of(
-                    "error", "fallback-api-failure",
-                    "message", ex.getMessage()
-            );
+        Map<String, Object> out = new HashMap<>();
+        out.put("city", resp.getOrDefault("name", city));
+        out.put("date", java.time.Instant.now().toString());
+        out.put("temperature", main != null ? main.get("temp") : null);
+        out.put("high", main != null ? main.get("temp_max") : null);
+        out.put("low", main != null ? main.get("temp_min") : null);
+        out.put("humidity", main != null ? main.get("humidity") : null);
+
+        // Convert wind speed from m/s → km/h (one decimal)
+        if (wind != null && wind.get("speed") != null) {
+            double mps = ((Number) wind.get("speed")).doubleValue();
+            out.put("wind", Math.round(mps * 3.6 * 10.0) / 10.0);
+        } else {
+            out.put("wind", null);
         }
+
+        out.put("condition", condition);
+
+        return out;
     }
 }
@@ -0,0 +1,214 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-provider circuit breakers + EWMA latency / error-rate tracking.
+ * - CLOSED    : calls pass, outcomes are recorded
+ * - OPEN      : calls are skipped (complete empty at once) until open-seconds elapse
+ * - HALF_OPEN : a limited number of probe calls decide between CLOSED and OPEN
+ * Healthy providers are ordered by observed latency.
+ */
+@Service
+public class ProviderHealthService {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${weather.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${weather.breaker.error-rate-threshold:0.5}")
+    private double errorRateThreshold;
+
+    @Value("${weather.breaker.min-calls:20}")
+    private int minCalls;
+
+    @Value("${weather.breaker.open-seconds:30}")
+    private long openSeconds;
+
+    @Value("${weather.breaker.half-open-probes:1}")
+    private int halfOpenProbes;
+
+    @Value("${weather.breaker.ewma-alpha:0.2}")
+    private double alpha;
+
+    @Value("${weather.providers.adaptive-order:true}")
+    private boolean adaptiveOrder;
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /**
+     * Runs the call through the provider's breaker.
+     * The call must complete empty when it has no valid value; empty and error
+     * both count as failures, except a rejected query (UpstreamClient.isRejection):
+     * the provider answered, so that counts as a success and completes empty.
+     * Skipped calls (open circuit) complete empty.
+     */
+    public <T> Mono<T> guard(String provider, Mono<T> call) {
+        return Mono.defer(() -> {
+            Breaker b = breaker(provider);
+            if (!b.tryAcquire()) {
+                return Mono.empty();
+            }
+
+            long start = System.nanoTime();
+            AtomicBoolean done = new AtomicBoolean();
+
+            return call
+                    .onErrorResume(UpstreamClient::isRejection, e -> {
+                        if (done.compareAndSet(false, true)) {
+                            b.onSuccess((System.nanoTime() - start) / 1_000_000.0);
+                        }
+                        return Mono.empty();
+                    })
+                    .onErrorResume(e -> Mono.empty())
+                    .doOnNext(v -> {
+                        if (done.compareAndSet(false, true)) {
+                            b.onSuccess((System.nanoTime() - start) / 1_000_000.0);
+                        }
+                    })
+                    .doOnSuccess(v -> {
+                        if (v == null && done.compareAndSet(false, true)) b.onFailure();
+                    })
+                    .doOnCancel(() -> {
+                        // hedge loser: no verdict, just give back a probe slot
+                        if (done.compareAndSet(false, true)) b.release();
+                    });
+        });
+    }
+
+    /**
+     * Providers in call order: closed circuits first (fastest EWMA latency first when
+     * adaptive ordering is on), then half-open, then open. Ties keep the given order.
+     */
+    public List<String> order(List<String> providers) {
+        List<String> out = new ArrayList<>(providers);
+        Comparator<String> byState = Comparator.comparingInt(p -> breaker(p).rank());
+        out.sort(adaptiveOrder
+                ? byState.thenComparingDouble(p -> breaker(p).score())
+                : byState);
+        return out;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new TreeMap<>();
+        breakers.forEach((name, b) -> out.put(name, b.stats()));
+        return out;
+    }
+
+    private Breaker breaker(String provider) {
+        return breakers.computeIfAbsent(provider, k -> new Breaker());
+    }
+
+    // =====================================================
+    // BREAKER
+    // =====================================================
+
+    private class Breaker {
+
+        private State state = State.CLOSED;
+        private long openUntil = 0;
+        private int probesInFlight = 0;
+        private int consecutiveFailures = 0;
+
+        private double ewmaLatencyMs = -1;
+        private double errorRate = 0;
+
+        private long calls = 0;
+        private long failures = 0;
+        private long skipped = 0;
+        private long opened = 0;
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntil) {
+                    skipped++;
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    skipped++;
+                    return false;
+                }
+                probesInFlight++;
+            }
+
+            calls++;
+            return true;
+        }
+
+        synchronized void onSuccess(double latencyMs) {
+            ewmaLatencyMs = ewmaLatencyMs < 0 ? latencyMs : alpha * latencyMs + (1 - alpha) * ewmaLatencyMs;
+            errorRate = (1 - alpha) * errorRate;
+            consecutiveFailures = 0;
+
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                probesInFlight = 0;
+            }
+        }
+
+        synchronized void onFailure() {
+            failures++;
+            errorRate = alpha + (1 - alpha) * errorRate;
+            consecutiveFailures++;
+
+            boolean trip = state == State.HALF_OPEN
+                    || consecutiveFailures >= failureThreshold
+                    || (calls >= minCalls && errorRate >= errorRateThreshold);
+
+            if (trip) {
+                state = State.OPEN;
+                openUntil = System.currentTimeMillis() + openSeconds * 1000;
+                probesInFlight = 0;
+                opened++;
+            }
+        }
+
+        synchronized void release() {
+            if (state == State.HALF_OPEN && probesInFlight > 0) probesInFlight--;
+        }
+
+        synchronized int rank() {
+            if (state == State.OPEN && System.currentTimeMillis() < openUntil) return 2;
+            return state == State.CLOSED ? 0 : 1;
+        }
+
+        // lower is better; providers without samples go after measured ones
+        synchronized double score() {
+            if (ewmaLatencyMs < 0) return Double.MAX_VALUE;
+            return ewmaLatencyMs * (1 + errorRate);
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("state", state);
+            out.put("ewmaLatencyMs", ewmaLatencyMs < 0 ? null : Math.round(ewmaLatencyMs * 10) / 10.0);
+            out.put("errorRate", Math.round(errorRate * 1000) / 1000.0);
+            out.put("calls", calls);
+            out.put("failures", failures);
+            out.put("skipped", skipped);
+            out.put("opened", opened);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for the primary -> secondary provider pair.
+ * If the primary has not answered within the hedge delay (a percentile of its
+ * recent successful latencies), the secondary is fired in parallel and the first
+ * valid answer wins; the loser is cancelled.
+ * A primary that fails before the delay falls through to the secondary at once.
+ * Each provider keeps its own latency window, since either one can be primary.
+ */
+@Service
+public class ProviderHedger {
+
+    @Value("${weather.hedge.enabled:true}")
+    private boolean enabled;
+
+    // percentile of primary latency used as the hedge delay
+    @Value("${weather.hedge.percentile:95}")
+    private double percentile;
+
+    @Value("${weather.hedge.initial-delay-ms:800}")
+    private long initialDelayMs;
+
+    @Value("${weather.hedge.min-delay-ms:100}")
+    private long minDelayMs;
+
+    @Value("${weather.hedge.max-delay-ms:3000}")
+    private long maxDelayMs;
+
+    // ring buffer of recent latencies per provider, while it was primary
+    private static final int WINDOW = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong primaryWins = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    /**
+     * Both sources must complete empty (not with an error map) when they have no valid value.
+     * primaryName picks the latency window the delay comes from and the primary's answers feed.
+     */
+    public <T> Mono<T> hedge(String primaryName, Mono<T> primary, Supplier<Mono<T>> secondary) {
+        if (!enabled) {
+            return primary.onErrorResume(e -> Mono.empty())
+                    .switchIfEmpty(Mono.defer(secondary));
+        }
+
+        return Mono.defer(() -> {
+            requests.incrementAndGet();
+            Window window = window(primaryName);
+            long start = System.nanoTime();
+
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+            AtomicBoolean hedged = new AtomicBoolean();
+
+            Mono<Won<T>> first = primary
+                    .onErrorResume(e -> Mono.empty())
+                    .doOnNext(v -> window.record((System.nanoTime() - start) / 1_000_000))
+                    .map(v -> new Won<>(v, false))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        primaryFailed.tryEmitEmpty();
+                        return Mono.empty();
+                    }));
+
+            // fires on the hedge delay, or immediately when the primary failed
+            Mono<Won<T>> second = Mono.firstWithSignal(
+                            Mono.delay(Duration.ofMillis(window.delayMs()))
+                                    .doOnNext(t -> {
+                                        hedged.set(true);
+                                        hedgesFired.incrementAndGet();
+                                    }),
+                            primaryFailed.asMono().then(Mono.just(0L)))
+                    .flatMap(t -> Mono.defer(secondary))
+                    .onErrorResume(e -> Mono.empty())
+                    .map(v -> new Won<>(v, true));
+
+            return Mono.firstWithValue(first, second)
+                    .onErrorResume(e -> Mono.empty())
+                    .doOnNext(won -> {
+                        if (!won.secondary) primaryWins.incrementAndGet();
+                        else if (hedged.get()) hedgeWins.incrementAndGet();
+                        else failovers.incrementAndGet();
+                    })
+                    .map(Won::value);
+        });
+    }
+
+    /**
+     * Bookkeeping for a hedge the caller runs itself (virtual-thread tier scopes), so that
+     * path feeds the same latency samples and counters as hedge().
+     */
+    public Tracker track(String primaryName) {
+        requests.incrementAndGet();
+        return new Tracker(window(primaryName), System.nanoTime());
+    }
+
+    public final class Tracker {
+
+        private final Window window;
+        private final long start;
+        private final AtomicBoolean primaryFailed = new AtomicBoolean();
+        private final AtomicBoolean hedged = new AtomicBoolean();
+        private final AtomicBoolean decided = new AtomicBoolean();
+
+        private Tracker(Window window, long start) {
+            this.window = window;
+            this.start = start;
+        }
+
+        /** How long the secondary waits for the primary; "until it fails" when hedging is off. */
+        public long delayMs() {
+            return enabled ? window.delayMs() : Long.MAX_VALUE / 4;
+        }
+
+        /** The primary call: an answer is a latency sample (and may win), empty marks it failed. */
+        public <T> Mono<T> primary(Mono<T> call) {
+            return call
+                    .doOnNext(v -> {
+                        window.record((System.nanoTime() - start) / 1_000_000);
+                        won(false);
+                    })
+                    .doOnSuccess(v -> {
+                        if (v == null) primaryFailed.set(true);
+                    });
+        }
+
+        /** The secondary call; started by the hedge delay or by the primary failing. */
+        public <T> Mono<T> secondary(Mono<T> call) {
+            return Mono.defer(() -> {
+                if (!primaryFailed.get()) {
+                    hedged.set(true);
+                    hedgesFired.incrementAndGet();
+                }
+                return call.doOnNext(v -> won(true));
+            });
+        }
+
+        // first answer wins, as in scope.firstResult()
+        private void won(boolean secondary) {
+            if (!decided.compareAndSet(false, true)) return;
+            if (!secondary) primaryWins.incrementAndGet();
+            else if (hedged.get()) hedgeWins.incrementAndGet();
+            else failovers.incrementAndGet();
+        }
+    }
+
+    /** Delay before the secondary is fired behind this primary (adaptive percentile of its latency). */
+    public long currentDelayMs(String primaryName) {
+        return window(primaryName).delayMs();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> delays = new TreeMap<>();
+        windows.forEach((name, w) -> delays.put(name, w.delayMs()));
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("initialDelayMs", initialDelayMs);
+        out.put("hedgeDelayMs", delays);
+        out.put("requests", requests.get());
+        out.put("hedgesFired", hedgesFired.get());
+        out.put("hedgeWins", hedgeWins.get());
+        out.put("primaryWins", primaryWins.get());
+        out.put("failovers", failovers.get());
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private Window window(String provider) {
+        return windows.computeIfAbsent(provider, p -> new Window());
+    }
+
+    private final class Window {
+
+        private final long[] samples = new long[WINDOW];
+        private int sampleCount = 0;
+        private int next = 0;
+
+        private volatile long hedgeDelayMs = -1;
+
+        long delayMs() {
+            long d = hedgeDelayMs;
+            return d < 0 ? initialDelayMs : d;
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % WINDOW;
+            if (sampleCount < WINDOW) sampleCount++;
+
+            if (sampleCount >= MIN_SAMPLES && next % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, sampleCount);
+                Arrays.sort(sorted);
+                int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+                long p = sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+                hedgeDelayMs = Math.max(minDelayMs, Math.min(maxDelayMs, p));
+            }
+        }
+    }
+
+    private record Won<T>(T value, boolean secondary) {}
+}
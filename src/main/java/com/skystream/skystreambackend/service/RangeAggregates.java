@@ -0,0 +1,252 @@
+package com.skystream.skystreambackend.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Range statistics over one metric of one place, by epoch day.
+ * - sum / count / mean : prefix sums, O(1)
+ * - min / max          : segment tree, O(log n)
+ * - percentiles        : merge-sort tree (sorted values per segment node), O(log^3 n)
+ * - week / month       : precomputed rollups; only the partial buckets at the range edges
+ *                        go through the trees
+ * Missing values are left out when built; immutable afterwards.
+ */
+public final class RangeAggregates {
+
+    public enum Bucket { WEEK, MONTH }
+
+    // non-missing points, ascending by day (one value per day)
+    private final int[] days;
+    private final double[] values;
+
+    private final double[] prefix;
+
+    // iterative segment trees: leaves at [n, 2n), node i = children 2i and 2i + 1
+    private final double[] min;
+    private final double[] max;
+    private final double[][] sorted;
+
+    // every value, ascending; the search space for percentiles
+    private final double[] all;
+
+    private final Rollup weeks;
+    private final Rollup months;
+
+    /** days ascending; later duplicates of a day are dropped, NaN values skipped. */
+    public RangeAggregates(int[] days, double[] values) {
+        int[] d = new int[days.length];
+        double[] v = new double[days.length];
+        int n = 0;
+        for (int i = 0; i < days.length; i++) {
+            if (Double.isNaN(values[i])) continue;
+            if (n > 0 && d[n - 1] == days[i]) continue;
+            d[n] = days[i];
+            v[n] = values[i];
+            n++;
+        }
+        this.days = Arrays.copyOf(d, n);
+        this.values = Arrays.copyOf(v, n);
+
+        this.prefix = new double[n + 1];
+        for (int i = 0; i < n; i++) prefix[i + 1] = prefix[i] + this.values[i];
+
+        this.min = new double[2 * n];
+        this.max = new double[2 * n];
+        this.sorted = new double[2 * n][];
+        for (int i = 0; i < n; i++) {
+            min[n + i] = this.values[i];
+            max[n + i] = this.values[i];
+            sorted[n + i] = new double[]{this.values[i]};
+        }
+        for (int i = n - 1; i >= 1; i--) {
+            min[i] = Math.min(min[2 * i], min[2 * i + 1]);
+            max[i] = Math.max(max[2 * i], max[2 * i + 1]);
+            sorted[i] = merge(sorted[2 * i], sorted[2 * i + 1]);
+        }
+
+        this.all = this.values.clone();
+        Arrays.sort(all);
+
+        this.weeks = rollup(Bucket.WEEK);
+        this.months = rollup(Bucket.MONTH);
+    }
+
+    public int size() {
+        return days.length;
+    }
+
+    public int firstDay() {
+        return days.length == 0 ? ColumnarTable.MISSING_INT : days[0];
+    }
+
+    public int lastDay() {
+        return days.length == 0 ? ColumnarTable.MISSING_INT : days[days.length - 1];
+    }
+
+    // =====================================================
+    // QUERIES
+    // =====================================================
+
+    /** count / min / max / sum / mean over [fromDay, toDay], both inclusive. */
+    public Stats range(int fromDay, int toDay) {
+        return stats(lower(fromDay), lower(toDay + 1));
+    }
+
+    /** Nearest-rank percentile (0..100) over [fromDay, toDay]; NaN when the range is empty. */
+    public double percentile(int fromDay, int toDay, double p) {
+        int l = lower(fromDay);
+        int r = lower(toDay + 1);
+        int count = r - l;
+        if (count <= 0) return Double.NaN;
+
+        int rank = Math.max(1, (int) Math.ceil(p / 100.0 * count));
+        rank = Math.min(rank, count);
+
+        // smallest value with at least `rank` range values <= it
+        int lo = 0, hi = all.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (countAtMost(l, r, all[mid]) >= rank) hi = mid;
+            else lo = mid + 1;
+        }
+        return all[lo];
+    }
+
+    /** Per-week or per-month stats of [fromDay, toDay], each bucket labelled by its first calendar day. */
+    public List<BucketStats> buckets(int fromDay, int toDay, Bucket bucket) {
+        Rollup rollup = bucket == Bucket.WEEK ? weeks : months;
+        List<BucketStats> out = new ArrayList<>();
+
+        int l = lower(fromDay);
+        int r = lower(toDay + 1);
+        if (l >= r) return out;
+
+        // first rollup bucket that holds point l
+        int b = Arrays.binarySearch(rollup.first, l);
+        if (b < 0) b = -b - 2;
+
+        for (; b < rollup.start.length && rollup.first[b] < r; b++) {
+            int bl = rollup.first[b];
+            int br = b + 1 < rollup.first.length ? rollup.first[b + 1] : days.length;
+
+            Stats s = bl >= l && br <= r
+                    ? rollup.stats[b]                           // whole bucket inside the range
+                    : stats(Math.max(bl, l), Math.min(br, r));  // cut by the range edge
+            out.add(new BucketStats(LocalDate.ofEpochDay(rollup.start[b]), s));
+        }
+        return out;
+    }
+
+    // =====================================================
+    // TREES
+    // =====================================================
+
+    // stats over points [l, r)
+    private Stats stats(int l, int r) {
+        if (l >= r) return Stats.EMPTY;
+
+        int n = days.length;
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        for (int a = l + n, b = r + n; a < b; a >>= 1, b >>= 1) {
+            if ((a & 1) == 1) {
+                lo = Math.min(lo, min[a]);
+                hi = Math.max(hi, max[a]);
+                a++;
+            }
+            if ((b & 1) == 1) {
+                b--;
+                lo = Math.min(lo, min[b]);
+                hi = Math.max(hi, max[b]);
+            }
+        }
+        return new Stats(r - l, lo, hi, prefix[r] - prefix[l]);
+    }
+
+    // number of points in [l, r) with value <= v
+    private int countAtMost(int l, int r, double v) {
+        int n = days.length;
+        int count = 0;
+        for (int a = l + n, b = r + n; a < b; a >>= 1, b >>= 1) {
+            if ((a & 1) == 1) count += upper(sorted[a++], v);
+            if ((b & 1) == 1) count += upper(sorted[--b], v);
+        }
+        return count;
+    }
+
+    // first point index with day >= day
+    private int lower(int day) {
+        int i = Arrays.binarySearch(days, day);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    // number of values <= v in an ascending array
+    private static int upper(double[] a, double v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= v) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double[] merge(double[] a, double[] b) {
+        double[] out = new double[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) out[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        while (i < a.length) out[k++] = a[i++];
+        while (j < b.length) out[k++] = b[j++];
+        return out;
+    }
+
+    // =====================================================
+    // ROLLUPS
+    // =====================================================
+
+    private Rollup rollup(Bucket bucket) {
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> firsts = new ArrayList<>();
+        for (int i = 0; i < days.length; i++) {
+            int start = bucketStart(days[i], bucket);
+            if (starts.isEmpty() || starts.get(starts.size() - 1) != start) {
+                starts.add(start);
+                firsts.add(i);
+            }
+        }
+
+        int[] start = starts.stream().mapToInt(Integer::intValue).toArray();
+        int[] first = firsts.stream().mapToInt(Integer::intValue).toArray();
+        Stats[] stats = new Stats[start.length];
+        for (int b = 0; b < start.length; b++) {
+            stats[b] = stats(first[b], b + 1 < first.length ? first[b + 1] : days.length);
+        }
+        return new Rollup(start, first, stats);
+    }
+
+    // Monday of the ISO week / first of the month, as epoch day
+    private static int bucketStart(int day, Bucket bucket) {
+        if (bucket == Bucket.WEEK) {
+            // epoch day 0 (1970-01-01) was a Thursday
+            return day - Math.floorMod(day + 3, 7);
+        }
+        return (int) LocalDate.ofEpochDay(day).withDayOfMonth(1).toEpochDay();
+    }
+
+    // bucket b: calendar start start[b], points [first[b], first[b + 1])
+    private record Rollup(int[] start, int[] first, Stats[] stats) {}
+
+    public record Stats(int count, double min, double max, double sum) {
+
+        static final Stats EMPTY = new Stats(0, Double.NaN, Double.NaN, 0);
+
+        public double mean() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+    }
+
+    public record BucketStats(LocalDate start, Stats stats) {}
+}
@@ -0,0 +1,17 @@
+package com.skystream.skystreambackend.service;
+
+/**
+ * A dataset that DatasetWatcher can rebuild when its files change.
+ * reload() builds the new version off to the side and publishes it with a single
+ * reference swap, so readers see either the old or the new version, never a mix.
+ */
+public interface ReloadableDataset {
+
+    /** Name used in reload stats. */
+    String datasetName();
+
+    /** True when a change to this path (relative to a dataset dir, "/" separated) affects the dataset. */
+    boolean dependsOn(String relativePath);
+
+    void reload() throws Exception;
+}
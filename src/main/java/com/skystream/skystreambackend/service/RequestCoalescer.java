@@ -0,0 +1,79 @@
+package com.skystream.skystreambackend.service;
+
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for upstream calls.
+ * Concurrent calls with the same provider + endpoint + normalized query
+ * share one in-flight call; the first subscriber starts it, the rest join it.
+ * The shared call is only cancelled once every caller has cancelled.
+ */
+@Service
+public class RequestCoalescer {
+
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+
+    // per "provider:endpoint" counters
+    private final Map<String, AtomicLong> executed = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> collapsed = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(String provider, String endpoint, String query, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            String group = provider + ":" + endpoint;
+            String key = group + ":" + WeatherCacheService.normalizeKey(query);
+
+            AtomicReference<Mono<T>> self = new AtomicReference<>();
+            Mono<T> shared = Mono.defer(call)
+                    .doFinally(s -> inFlight.remove(key, self.get()))
+                    .flux()
+                    .replay(1)
+                    .refCount(1)
+                    .next();
+            self.set(shared);
+
+            Mono<?> existing = inFlight.putIfAbsent(key, shared);
+
+            // follower: join the leader's call
+            if (existing != null) {
+                counter(collapsed, group).incrementAndGet();
+                return (Mono<T>) existing;
+            }
+
+            // leader: start the call
+            counter(executed, group).incrementAndGet();
+            return shared;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("inFlight", inFlight.size());
+        out.put("executed", snapshot(executed));
+        out.put("collapsed", snapshot(collapsed));
+        return out;
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private AtomicLong counter(Map<String, AtomicLong> counters, String group) {
+        return counters.computeIfAbsent(group, k -> new AtomicLong());
+    }
+
+    private Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+        Map<String, Long> out = new TreeMap<>();
+        counters.forEach((k, v) -> out.put(k, v.get()));
+        return out;
+    }
+}
@@ -0,0 +1,370 @@
+package com.skystream.skystreambackend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming (token-level) decoders for provider payloads.
+ * Reads only the fields WeatherResponse needs and skips everything else
+ * without building a Map tree; same output as WeatherMapper for the same payload.
+ * Returns null when the payload is an error body.
+ */
+@Component
+public class StreamingWeatherParser {
+
+    private final JsonFactory json = new JsonFactory();
+
+    // =====================================================
+    // WEATHERAPI.COM (current.json / forecast.json)
+    // =====================================================
+    public WeatherResponse parseWeatherApi(byte[] body) throws IOException {
+        try (JsonParser p = json.createParser(body)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+
+            WeatherResponse out = new WeatherResponse();
+            out.source = "WeatherAPI.com";
+            out.city = "";
+            out.country = "";
+            out.region = "";
+            out.condition = "";
+            out.icon = "";
+
+            boolean hasLocation = false;
+            boolean hasCurrent = false;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+
+                switch (field) {
+                    case "location" -> {
+                        hasLocation = true;
+                        readLocation(p, out);
+                    }
+                    case "current" -> {
+                        hasCurrent = true;
+                        readCurrent(p, out);
+                    }
+                    case "forecast" -> readForecast(p, out);
+                    case "error" -> {
+                        return null;
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+
+            return hasLocation && hasCurrent ? out : null;
+        }
+    }
+
+    private void readLocation(JsonParser p, WeatherResponse out) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            switch (field) {
+                case "name" -> out.city = str(scalar(p));
+                case "country" -> out.country = str(scalar(p));
+                case "region" -> out.region = str(scalar(p));
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private void readCurrent(JsonParser p, WeatherResponse out) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+
+            switch (field) {
+                case "temp_c" -> out.temperature = dbl(p);
+                case "humidity" -> out.humidity = dbl(p);
+                case "wind_kph" -> out.wind = dbl(p);
+                case "uv" -> out.uv = dbl(p);
+                case "vis_km" -> out.visibility = dbl(p);
+                case "condition" -> {
+                    Map<String, Object> c = flatObject(p);
+                    out.condition = str(c.get("text"));
+                    out.icon = str(c.get("icon"));
+                }
+                case "air_quality" -> {
+                    Map<String, Object> air = flatObject(p);
+                    out.epaIndex = toInt(air.get("us-epa-index"));
+                    out.airQualityRaw = air;
+                    out.aqi = WeatherMapper.mapEpaToAqi(out.epaIndex);
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        // always expose the raw air block, like WeatherMapper does
+        if (out.airQualityRaw == null) out.airQualityRaw = new HashMap<>();
+    }
+
+    private void readForecast(JsonParser p, WeatherResponse out) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+
+            if (!"forecastday".equals(field) || p.currentToken() != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+
+            List<Map<String, Object>> daily = new ArrayList<>();
+            int index = 0;
+
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (p.currentToken() != JsonToken.START_OBJECT) {
+                    p.skipChildren();
+                    continue;
+                }
+                daily.add(readForecastDay(p, out, index == 0));
+                index++;
+            }
+
+            if (!daily.isEmpty()) out.daily = daily;
+        }
+    }
+
+    // one forecastday entry; astro + hourly only for the first day
+    private Map<String, Object> readForecastDay(JsonParser p, WeatherResponse out, boolean first) throws IOException {
+        Map<String, Object> dm = new HashMap<>();
+        dm.put("date", null);
+        dm.put("max", null);
+        dm.put("min", null);
+        dm.put("condition", null);
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+
+            switch (field) {
+                case "date" -> dm.put("date", scalar(p));
+                case "day" -> readDay(p, dm);
+                case "astro" -> {
+                    if (!first) {
+                        p.skipChildren();
+                        break;
+                    }
+                    Map<String, Object> astro = flatObject(p);
+                    out.sunrise = str(astro.get("sunrise"));
+                    out.sunset = str(astro.get("sunset"));
+                }
+                case "hour" -> {
+                    if (first) out.hourly = readHours(p);
+                    else p.skipChildren();
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        if (first) {
+            if (out.sunrise == null) out.sunrise = "";
+            if (out.sunset == null) out.sunset = "";
+            if (out.hourly == null) out.hourly = new ArrayList<>();
+        }
+        return dm;
+    }
+
+    private void readDay(JsonParser p, Map<String, Object> dm) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+
+            switch (field) {
+                case "maxtemp_c" -> dm.put("max", scalar(p));
+                case "mintemp_c" -> dm.put("min", scalar(p));
+                case "condition" -> dm.put("condition", flatObject(p).get("text"));
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private List<Map<String, Object>> readHours(JsonParser p) throws IOException {
+        List<Map<String, Object>> hourly = new ArrayList<>(24);
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return hourly;
+        }
+
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+
+            Map<String, Object> m = new HashMap<>();
+            m.put("time", null);
+            m.put("temp", null);
+            m.put("condition", null);
+            m.put("icon", null);
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+
+                switch (field) {
+                    case "time" -> m.put("time", scalar(p));
+                    case "temp_c" -> m.put("temp", scalar(p));
+                    case "condition" -> {
+                        Map<String, Object> c = flatObject(p);
+                        m.put("condition", c.get("text"));
+                        m.put("icon", c.get("icon"));
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            hourly.add(m);
+        }
+        return hourly;
+    }
+
+    // =====================================================
+    // OPENWEATHERMAP (data/2.5/weather)
+    // =====================================================
+    public WeatherResponse parseOpenWeather(byte[] body) throws IOException {
+        try (JsonParser p = json.createParser(body)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+
+            WeatherResponse out = new WeatherResponse();
+            out.source = "OpenWeatherMap";
+            out.city = "";
+            out.country = "";
+
+            // WeatherMapper only takes a payload with both blocks as OpenWeather
+            boolean hasMain = false;
+            boolean hasWeather = false;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+
+                switch (field) {
+                    case "name" -> out.city = str(scalar(p));
+                    case "sys" -> out.country = str(flatObject(p).get("country"));
+                    case "main" -> {
+                        hasMain = true;
+                        Map<String, Object> main = flatObject(p);
+                        out.temperature = toDouble(main.get("temp"));
+                        out.humidity = toDouble(main.get("humidity"));
+                    }
+                    case "wind" -> {
+                        Double mps = toDouble(flatObject(p).get("speed"));
+                        out.wind = mps != null ? Math.round(mps * 3.6 * 10) / 10.0 : null;
+                    }
+                    case "weather" -> {
+                        hasWeather = true;
+                        readOpenWeatherCondition(p, out);
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+
+            if (!hasMain || !hasWeather) return null;
+
+            out.hourly = Collections.emptyList();
+            out.daily = Collections.emptyList();
+            return out;
+        }
+    }
+
+    // first entry of the "weather" array
+    private void readOpenWeatherCondition(JsonParser p, WeatherResponse out) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return;
+        }
+        boolean first = true;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (first && p.currentToken() == JsonToken.START_OBJECT) {
+                out.condition = str(flatObject(p).get("description"));
+            } else {
+                p.skipChildren();
+            }
+            first = false;
+        }
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    // scalar value at the current token; containers are skipped and read as null
+    private Object scalar(JsonParser p) throws IOException {
+        return switch (p.currentToken()) {
+            case VALUE_STRING -> p.getText();
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> p.getNumberValue();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case START_OBJECT, START_ARRAY -> {
+                p.skipChildren();
+                yield null;
+            }
+            default -> null;
+        };
+    }
+
+    // object of scalars; nested containers are skipped
+    private Map<String, Object> flatObject(JsonParser p) throws IOException {
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return out;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            Object v = scalar(p);
+            if (v != null || p.currentToken() == JsonToken.VALUE_NULL) out.put(field, v);
+        }
+        return out;
+    }
+
+    private Double dbl(JsonParser p) throws IOException {
+        return toDouble(scalar(p));
+    }
+
+    private Double toDouble(Object o) {
+        if (o instanceof Number n) return n.doubleValue();
+        try { return o != null ? Double.parseDouble(o.toString()) : null; }
+        catch (Exception e) { return null; }
+    }
+
+    // numbers or numeric strings, like WeatherMapper.intVal
+    private Integer toInt(Object o) {
+        if (o instanceof Number n) return n.intValue();
+        try { return o != null ? Integer.parseInt(o.toString()) : null; }
+        catch (Exception e) { return null; }
+    }
+
+    private String str(Object o) {
+        return o == null ? "" : String.valueOf(o);
+    }
+}
@@ -0,0 +1,136 @@
+package com.skystream.skystreambackend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structured concurrency for the failover tiers (blocking style).
+ * Forked tiers run on the scope's executor; the owner waits for the first non-null
+ * result within the deadline, and close() cancels (interrupts) whatever is still running,
+ * so no tier outlives the request.
+ *
+ * <pre>
+ * try (TierScope&lt;T&gt; scope = new TierScope&lt;&gt;(executor, deadline)) {
+ *     scope.fork(primary);
+ *     scope.forkAfter(hedgeDelayMs, secondary);
+ *     return scope.firstResult();
+ * }
+ * </pre>
+ */
+public final class TierScope<T> implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Deadline deadline;
+
+    private final List<Future<T>> forks = new ArrayList<>();
+    private final BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<>();
+
+    // bumped whenever a tier finishes without a result; wakes delayed forks early
+    private final Object failureSignal = new Object();
+    private int failures = 0;
+
+    public TierScope(ExecutorService executor, Deadline deadline) {
+        this.executor = executor;
+        this.deadline = deadline;
+    }
+
+    public void fork(Callable<T> tier) {
+        FutureTask<T> task = new FutureTask<>(tier) {
+            @Override
+            protected void done() {
+                completed.add(this);
+                if (!hasResult(this)) signalFailure();
+            }
+        };
+        forks.add(task);
+        executor.execute(task);
+    }
+
+    /**
+     * Fork that starts after the delay, or as soon as an earlier tier fails
+     * (the waiting is cheap on virtual threads).
+     */
+    public void forkAfter(long delayMs, Callable<T> tier) {
+        int seenFailures = failures();
+        fork(() -> {
+            awaitFailure(seenFailures, delayMs);
+            return tier.call();
+        });
+    }
+
+    /**
+     * First non-null tier result, or null when every tier failed / returned null
+     * or the deadline passed first.
+     */
+    public T firstResult() throws InterruptedException {
+        int seen = 0;
+        while (seen < forks.size()) {
+            long remaining = deadline.remainingMs();
+            if (remaining <= 0) return null;
+
+            Future<T> f = completed.poll(remaining, TimeUnit.MILLISECONDS);
+            if (f == null) return null;
+            seen++;
+
+            if (f.isCancelled()) continue;
+            try {
+                T result = f.get();
+                if (result != null) return result;
+            } catch (ExecutionException e) {
+                // failed tier -> wait for the next one
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        for (Future<T> f : forks) {
+            f.cancel(true);
+        }
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private boolean hasResult(Future<T> f) {
+        if (f.isCancelled()) return false;
+        try {
+            return f.get() != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private int failures() {
+        synchronized (failureSignal) {
+            return failures;
+        }
+    }
+
+    private void signalFailure() {
+        synchronized (failureSignal) {
+            failures++;
+            failureSignal.notifyAll();
+        }
+    }
+
+    private void awaitFailure(int seen, long delayMs) throws InterruptedException {
+        long end = System.currentTimeMillis() + delayMs;
+        synchronized (failureSignal) {
+            long left;
+            while (failures == seen && (left = end - System.currentTimeMillis()) > 0) {
+                failureSignal.wait(left);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.skystream.skystreambackend.service;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared non-blocking HTTP engine for every upstream provider.
+ * One pooled keep-alive connection provider + gzip, so in-flight upstream
+ * calls cost a pooled connection instead of a parked servlet thread.
+ * Each provider gets its own connect / read timeouts on top of the shared pool:
+ * upstream.timeout.{provider}.connect-ms / read-ms, defaulting to upstream.timeout.*.
+ */
+@Service
+public class UpstreamClient {
+
+    public static final ParameterizedTypeReference<Map<String, Object>> MAP =
+            new ParameterizedTypeReference<>() {};
+
+    @Value("${upstream.pool.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${upstream.pool.pending-acquire-max:5000}")
+    private int pendingAcquireMax;
+
+    @Value("${upstream.pool.max-idle-seconds:30}")
+    private long maxIdleSeconds;
+
+    @Value("${upstream.max-in-memory-kb:4096}")
+    private int maxInMemoryKb;
+
+    @Value("${upstream.timeout.connect-ms:2000}")
+    private int defaultConnectMs;
+
+    @Value("${upstream.timeout.read-ms:5000}")
+    private long defaultReadMs;
+
+    @Autowired
+    private Environment env;
+
+    private ConnectionProvider pool;
+
+    // provider -> WebClient with that provider's timeouts
+    private final Map<String, WebClient> clients = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        pool = ConnectionProvider.builder("upstream")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+                .evictInBackground(Duration.ofSeconds(maxIdleSeconds))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) pool.dispose();
+    }
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    public Mono<String> getString(String provider, URI uri) {
+        return client(provider).get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class);
+    }
+
+    /** Raw body, for callers that decode with a streaming parser. */
+    public Mono<byte[]> getBytes(String provider, URI uri) {
+        return client(provider).get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(byte[].class);
+    }
+
+    public <T> Mono<T> getJson(String provider, URI uri, Class<T> type) {
+        return client(provider).get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(type);
+    }
+
+    public <T> Mono<T> getJson(String provider, URI uri, ParameterizedTypeReference<T> type) {
+        return client(provider).get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(type);
+    }
+
+    /**
+     * The provider answered and the answer was "no such location" (WeatherAPI 400 / 1006,
+     * OpenWeather 404): a healthy call without a result. Timeouts, connection errors,
+     * 5xx and auth / quota errors are not rejections.
+     */
+    public static boolean isRejection(Throwable error) {
+        if (!(error instanceof WebClientResponseException e)) return false;
+        int status = e.getStatusCode().value();
+        return status == 400 || status == 404;
+    }
+
+    /** Error map in the shape every provider client already returns. */
+    public static Map<String, Object> error(String code, Throwable ex) {
+        return Map.of(
+                "error", code,
+                "message", String.valueOf(ex.getMessage())
+        );
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private WebClient client(String provider) {
+        return clients.computeIfAbsent(provider, this::build);
+    }
+
+    private WebClient build(String provider) {
+        HttpClient http = HttpClient.create(pool)
+                .keepAlive(true)
+                .compress(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectMs(provider))
+                .responseTimeout(Duration.ofMillis(readMs(provider)));
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .codecs(c -> c.defaultCodecs().maxInMemorySize(maxInMemoryKb * 1024))
+                .build();
+    }
+
+    private int connectMs(String provider) {
+        return env.getProperty("upstream.timeout." + provider + ".connect-ms", Integer.class, defaultConnectMs);
+    }
+
+    private long readMs(String provider) {
+        return env.getProperty("upstream.timeout." + provider + ".read-ms", Long.class, defaultReadMs);
+    }
+}
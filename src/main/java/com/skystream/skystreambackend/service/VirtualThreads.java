@@ -0,0 +1,40 @@
+package com.skystream.skystreambackend.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread support, looked up reflectively so the app still builds and runs on JDK 17.
+ * Virtual threads are only used when the running JDK has them (21+).
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_PER_TASK_EXECUTOR = lookup();
+
+    private VirtualThreads() {}
+
+    public static boolean supported() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor(); only call when supported() is true. */
+    public static ExecutorService newPerTaskExecutor() {
+        if (NEW_PER_TASK_EXECUTOR == null) {
+            throw new IllegalStateException("virtual threads need JDK 21+, running " + Runtime.version());
+        }
+        try {
+            return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+        } catch (Exception e) {
+            throw new IllegalStateException("could not create virtual-thread executor", e);
+        }
+    }
+
+    private static Method lookup() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,56 +1,93 @@
 package com.skystream.skystreambackend.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class WeatherApiClient {
 
-    private final RestTemplate rest = new RestTemplate();
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> LIST_OF_MAPS =
+            new ParameterizedTypeReference<>() {};
 
     @Value("${weather.api.key}")
     private String apiKey;
 
+    @Autowired
+    private RequestCoalescer coalescer;
+
+    @Autowired
+    private UpstreamClient upstream;
+
+    @Autowired
+    private StreamingWeatherParser parser;
+
+    @Autowired
+    private NegativeCache negativeCache;
+
     private static final String BASE = "https://api.weatherapi.com/v1";
 
     // -------------------------------------------------------------------------
     // HELPERS
     // -------------------------------------------------------------------------
 
-
+    private URI uri(UriComponentsBuilder builder) {
+        return builder.build().encode().toUri();
+    }
 
     // -------------------------------------------------------------------------
     // CURRENT WEATHER API
     // -------------------------------------------------------------------------
 
     public Map<String, Object> getCurrent(String q) {
+        return getCurrentAsync(q).block();
+    }
+
+    public Mono<Map<String, Object>> getCurrentAsync(String q) {
+        return coalescer.execute("weatherapi", "current", q, () -> fetchCurrent(q));
+    }
+
+    private Mono<Map<String, Object>> fetchCurrent(String q) {
+        return upstream.getJson("weatherapi", currentUri(q), UpstreamClient.MAP)
+                .onErrorResume(ex -> Mono.just(UpstreamClient.error("external-api-failure", ex)));
+    }
+
+    /**
+     * Current weather decoded straight into the unified response (streaming parse).
+     * Completes empty on any upstream or payload error; a rejected query (400 / 404)
+     * is passed on as the error.
+     */
+    public Mono<WeatherResponse> getCurrentTypedAsync(String q) {
+        return coalescer.execute("weatherapi", "current:typed", q, () ->
+                upstream.getBytes("weatherapi", currentUri(q))
+                        .mapNotNull(this::parseQuietly)
+                        .onErrorResume(ex -> {
+                            negativeCache.recordRejection("weatherapi", q, ex);
+                            // a rejected query stays an error, so the breaker can tell it from an outage
+                            return UpstreamClient.isRejection(ex) ? Mono.error(ex) : Mono.empty();
+                        }));
+    }
+
+    private URI currentUri(String q) {
+        return uri(UriComponentsBuilder.fromHttpUrl(BASE + "/current.json")
+                .queryParam("key", apiKey)
+                .queryParam("q", q)
+                .queryParam("aqi", "yes"));
+    }
+
+    private WeatherResponse parseQuietly(byte[] body) {
         try {
-            String url = UriComponentsBuilder.fromHttpUrl(BASE + "/current.json")
-                    .queryParam("key", apiKey)
-                    .queryParam("q", q)
-                    .queryParam("aqi", "yes")
-                    .toUriString();
-
-            // Type-safe parse into Map<String,Object>
-            String json = rest.getForObject(url, String.class);
-            Map<String, Object> parsed =
-                    mapper.readValue(json, new TypeReference<Map<String, Object>>() {});
-
-            return parsed;
-
-        } catch (Exception ex) {
-            return Map.of(
-                    "error", "external-api-failure",
-                    "message", ex.getMessage()
-            );
+            return parser.parseWeatherApi(body);
+        } catch (Exception e) {
+            return null;
         }
     }
 
@@ -59,62 +96,49 @@ public class WeatherApiClient {
     // -------------------------------------------------------------------------
 
     public Map<String, Object> getForecast(String q, int days) {
+        return getForecastAsync(q, days).block();
+    }
+
+    public Mono<Map<String, Object>> getForecastAsync(String q, int days) {
         if (days < 1) days = 1;
         if (days > 15) days = 15;
 
-        try {
-            String url = UriComponentsBuilder.fromHttpUrl(BASE + "/forecast.json")
-                    .queryParam("key", apiKey)
-                    .queryParam("q", q)
-                    .queryParam("days", days)
-                    .queryParam("aqi", "yes")
-                    .queryParam("alerts", "yes")
-                    .toUriString();
-
-            String json = rest.getForObject(url, String.class);
-            Map<String, Object> parsed =
-                    mapper.readValue(json, new TypeReference<Map<String, Object>>() {});
-
-            return parsed;
-
-        } catch (Exception ex) {
-            return Map.of(
-                    "error", "external-api-failure",
-                    "message", ex.getMessage()
-            );
-        }
+        int clamped = days;
+        return coalescer.execute("weatherapi", "forecast:" + clamped, q, () -> fetchForecast(q, clamped));
     }
 
-
-// -------------------------------------------------------------------------
-// AUTOCOMPLETE / CITY SEARCH API
-// -------------------------------------------------------------------------
-
-public List<Map<String, Object>> searchCitiesTyped(String q) {
-    try {
-        String url = UriComponentsBuilder
-                .fromHttpUrl(BASE + "/search.json")
+    private Mono<Map<String, Object>> fetchForecast(String q, int days) {
+        URI url = uri(UriComponentsBuilder.fromHttpUrl(BASE + "/forecast.json")
                 .queryParam("key", apiKey)
                 .queryParam("q", q)
-                .toUriString();
+                .queryParam("days", days)
+                .queryParam("aqi", "yes")
+                .queryParam("alerts", "yes"));
 
-        System.out.println("WeatherAPI SEARCH URL = " + url);
-
-        String json = rest.getForObject(url, String.class);
-        System.out.println("WeatherAPI RAW RESPONSE = " + json);
+        return upstream.getJson("weatherapi", url, UpstreamClient.MAP)
+                .onErrorResume(ex -> Mono.just(UpstreamClient.error("external-api-failure", ex)));
+    }
 
-        return mapper.readValue(
-                json,
-                new TypeReference<List<Map<String, Object>>>() {}
-        );
+    // -------------------------------------------------------------------------
+    // AUTOCOMPLETE / CITY SEARCH API
+    // -------------------------------------------------------------------------
 
-    } catch (Exception ex) {
-        ex.printStackTrace();   // 👈 THIS IS CRITICAL
-        return List.of();
+    public List<Map<String, Object>> searchCitiesTyped(String q) {
+        return searchCitiesAsync(q).block();
     }
-}
-
 
+    public Mono<List<Map<String, Object>>> searchCitiesAsync(String q) {
+        URI url = uri(UriComponentsBuilder
+                .fromHttpUrl(BASE + "/search.json")
+                .queryParam("key", apiKey)
+                .queryParam("q", q));
+
+        return coalescer.execute("weatherapi", "search", q, () ->
+                upstream.getJson("weatherapi", url, LIST_OF_MAPS)
+                        .defaultIfEmpty(List.of())
+                        .onErrorResume(ex -> {
+                            System.err.println("❌ WeatherAPI search failed: " + ex.getMessage());
+                            return Mono.just(List.of());
+                        }));
+    }
 }
-
-
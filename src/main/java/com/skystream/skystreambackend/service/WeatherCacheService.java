@@ -0,0 +1,155 @@
+package com.skystream.skystreambackend.service;
+
+import jakarta.annotation.PostConstruct;
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache for current weather, keyed by normalized city.
+ * - fresh (age < ttl)          -> served from memory
+ * - stale (age < ttl + stale)  -> served from memory, refreshed in background
+ * - expired / missing          -> loaded synchronously
+ * If the loader fails, the last good value is served and marked "stale".
+ */
+@Service
+public class WeatherCacheService {
+
+    @Value("${weather.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${weather.cache.stale-seconds:1800}")
+    private long staleSeconds;
+
+    @Value("${weather.cache.max-entries:1000}")
+    private int maxEntries;
+
+    private Map<String, Entry> entries;
+
+    // keys with a background refresh already running
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong staleOnFailure = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // access-ordered LinkedHashMap = LRU eviction once maxEntries is reached
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // =====================================================
+    // PUBLIC API
+    // =====================================================
+
+    /**
+     * Returns the cached value for the city, loading it when missing or expired.
+     * The loader must complete empty on failure (never with an error map).
+     * Completes empty only when the loader failed and nothing was ever cached.
+     */
+    public Mono<WeatherResponse> getOrLoad(String city, Supplier<Mono<WeatherResponse>> loader) {
+        return Mono.defer(() -> {
+            String key = normalizeKey(city);
+            Entry entry = get(key);
+            long now = System.currentTimeMillis();
+
+            if (entry != null) {
+                long age = now - entry.storedAt;
+
+                if (age < ttlSeconds * 1000) {
+                    hits.incrementAndGet();
+                    return Mono.just(entry.value);
+                }
+
+                if (age < (ttlSeconds + staleSeconds) * 1000) {
+                    staleHits.incrementAndGet();
+                    refreshAsync(key, loader);
+                    return Mono.just(entry.value);
+                }
+            }
+
+            misses.incrementAndGet();
+            return loader.get()
+                    .onErrorResume(e -> Mono.empty())
+                    .doOnNext(loaded -> put(key, loaded))
+                    // every upstream tier failed -> last good value, marked stale
+                    .switchIfEmpty(Mono.defer(() -> {
+                        if (entry == null) return Mono.empty();
+                        staleOnFailure.incrementAndGet();
+                        return Mono.just(markStale(entry));
+                    }));
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        synchronized (this) {
+            out.put("size", entries.size());
+        }
+        out.put("maxEntries", maxEntries);
+        out.put("hits", hits.get());
+        out.put("staleHits", staleHits.get());
+        out.put("misses", misses.get());
+        out.put("evictions", evictions.get());
+        out.put("staleOnFailure", staleOnFailure.get());
+        return out;
+    }
+
+    // lower, trim, collapse whitespace
+    public static String normalizeKey(String city) {
+        if (city == null) return "";
+        return city.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    private void refreshAsync(String key, Supplier<Mono<WeatherResponse>> loader) {
+        if (!refreshing.add(key)) return;
+
+        Mono.defer(loader)
+                .doFinally(s -> refreshing.remove(key))
+                .subscribe(
+                        loaded -> put(key, loaded),
+                        e -> System.err.println("Cache refresh failed for " + key + ": " + e.getMessage())
+                );
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, WeatherResponse value) {
+        entries.put(key, new Entry(value, System.currentTimeMillis()));
+    }
+
+    private WeatherResponse markStale(Entry entry) {
+        WeatherResponse out = new WeatherResponse(entry.value);
+        out.stale = true;
+        return out;
+    }
+
+    private record Entry(WeatherResponse value, long storedAt) {}
+}
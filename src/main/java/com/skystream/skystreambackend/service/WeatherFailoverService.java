@@ -2,17 +2,23 @@ package com.skystream.skystreambackend.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import com.skystream.skystreambackend.model.WeatherRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import jakarta.annotation.PostConstruct;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
-public class WeatherFailoverService {
+public class WeatherFailoverService implements ReloadableDataset {
 
     @Autowired
     private WeatherApiClient api;
@@ -24,134 +30,282 @@ public class WeatherFailoverService {
     private LocalCSVLoaderService csvService;
 
     @Autowired
-    private ResourceLoader resourceLoader;
+    private DatasetLocator locator;
 
-    private Map<String, Object> fallback;
+    @Autowired
+    private WeatherCacheService cache;
+
+    @Autowired
+    private ProviderHedger hedger;
+
+    @Autowired
+    private ProviderHealthService health;
+
+    @Autowired
+    private WeatherMapper mapper;
+
+    @Autowired
+    private ForecastStore forecastStore;
+
+    @Autowired
+    private BlockingExecutor blocking;
+
+    @Autowired
+    private NearestLocationService nearest;
+
+    @Autowired
+    private WeatherService weatherService;
+
+    @Autowired
+    private GeoQuantizer geo;
+
+    @Autowired
+    private LocationResolver locations;
+
+    @Autowired
+    private NegativeCache negativeCache;
+
+    // end-to-end latency budget for one request
+    @Value("${weather.deadline.total-ms:4000}")
+    private long totalBudgetMs;
+
+    // part of the budget kept for the local tiers (CSV, static JSON)
+    @Value("${weather.deadline.local-reserve-ms:300}")
+    private long localReserveMs;
+
+    // share of the live budget the first provider may use, so the second still gets a turn
+    @Value("${weather.deadline.primary-share:0.6}")
+    private double primaryShare;
+
+    // max cities resolved concurrently by one batch request
+    @Value("${weather.batch.max-parallelism:16}")
+    private int batchParallelism;
+
+    private static final String WEATHER_API = "weatherapi";
+    private static final String OPEN_WEATHER = "openweather";
+
+    // live providers, in configured preference order
+    private static final List<String> PROVIDERS = List.of(WEATHER_API, OPEN_WEATHER);
+
+    private static final String FALLBACK_PATH = "static/fallback-weatherapi.json";
+
+    // static JSON tier: raw payload (forecast) + the same payload already mapped (current weather)
+    private volatile StaticFallback fallback = new StaticFallback(new HashMap<>(), null);
 
     @PostConstruct
     public void init() {
         try {
-            Resource res = resourceLoader.getResource("classpath:static/fallback-weatherapi.json");
-            ObjectMapper mapper = new ObjectMapper();
-            fallback = mapper.readValue(
-                    res.getInputStream(),
-                    new TypeReference<Map<String, Object>>() {}
-            );
+            fallback = readFallback();
             System.out.println("✔ Loaded WeatherAPI fallback JSON");
         } catch (Exception e) {
-            fallback = new HashMap<>();
             System.err.println("❌ Failed to load fallback JSON: " + e.getMessage());
         }
     }
 
+    private StaticFallback readFallback() throws Exception {
+        Resource res = locator.resolve(FALLBACK_PATH);
+        ObjectMapper json = new ObjectMapper();
+        try (var in = res.getInputStream()) {
+            Map<String, Object> raw = json.readValue(in, new TypeReference<Map<String, Object>>() {});
+            return new StaticFallback(raw, raw.isEmpty() ? null : mapper.mapToUnified(raw));
+        }
+    }
+
+    @Override
+    public String datasetName() {
+        return "fallback-json";
+    }
+
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return relativePath.equals(FALLBACK_PATH);
+    }
+
+    @Override
+    public void reload() throws Exception {
+        fallback = readFallback();
+    }
+
     // =====================================================
     // CURRENT WEATHER
     // =====================================================
-    public Map<String, Object> getWeather(String city) {
-
-        // 1️⃣ WeatherAPI primary
-        Map<String, Object> live = api.getCurrent(city);
-        if (live != null && !live.containsKey("error")) {
-
-            // 🔧 FIX AQI HERE (correct Java syntax)
-            Object currentObj = live.get("current");
-            if (currentObj instanceof Map<?, ?>) {
-
-                @SuppressWarnings("unchecked")
-                Map<String, Object> current = (Map<String, Object>) currentObj;
-
-                Object airObj = current.get("air_quality");
-                if (airObj instanceof Map<?, ?>) {
-
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> air = (Map<String, Object>) airObj;
-
-                    Object epaObj = air.get("us-epa-index");
-                    if (epaObj instanceof Number) {
-                        int epa = ((Number) epaObj).intValue();
-
-                        Integer aqi = switch (epa) {
-                            case 1 -> 25;
-                            case 2 -> 75;
-                            case 3 -> 125;
-                            case 4 -> 175;
-                            case 5 -> 250;
-                            case 6 -> 350;
-                            default -> null;
-                        };
-
-                        live.put("aqi", aqi); // ✅ AQI exposed to frontend
-                    }
-                }
-            }
+    public WeatherResponse getWeather(String city) {
+        return getWeatherAsync(city).block();
+    }
 
-            return live;
-        }
+    public Mono<WeatherResponse> getWeatherAsync(String city) {
+        return Mono.defer(() -> {
+            Deadline deadline = Deadline.after(totalBudgetMs);
+            return getWeatherAsync(city, deadline);
+        });
+    }
 
-        // 2️⃣ OpenWeather fallback
-        Map<String, Object> ow = openWeatherService.fetchCurrent(city);
-        if (ow != null && !ow.containsKey("error")) {
-            return ow;
-        }
+    private Mono<WeatherResponse> getWeatherAsync(String query, Deadline deadline) {
+        Deadline live = deadline.minus(localReserveMs);
 
-        // 3️⃣ CSV fallback
-        Map<String, Object> csv = findInLocalCsv(city);
-        if (csv != null) {
-            return csv;
-        }
+        // "lat,lon" -> its grid cell centre, so nearby clients share cache entry and upstream call
+        GeoQuantizer.Snapped snapped = geo.snap(query);
 
-        // 4️⃣ Static JSON fallback
-        if (fallback != null && !fallback.isEmpty()) {
-            return fallback;
-        }
+        // "NYC" / "Nueva York" / "New York, US" -> one canonical location: the cache keys on
+        // its id, upstream (and so the coalescer) gets its canonical query
+        LocationResolver.Location location = locations.resolve(snapped.query(), snapped.geohash());
+        String city = location.query();
+
+        // a query every provider rejected a moment ago goes straight to the static tier
+        boolean knownMiss = location.asTyped() && negativeCache.isKnownMiss(city);
+
+        // 1️⃣ + 2️⃣ upstream tiers, behind the response cache
+        Mono<WeatherResponse> found = knownMiss ? Mono.empty() : cache.getOrLoad(location.id(), () -> {
+                    geo.recordLoad(snapped);
+                    return fetchUpstream(city, live)
+                            .doOnNext(resp -> locations.learn(location, resp));
+                })
 
-        return Map.of("error", "no-valid-data");
+                // 3️⃣ CSV fallback: keyed lookup (first access may load the CSV files),
+                // else the dataset location nearest to the query
+                .switchIfEmpty(Mono.fromCallable(() -> findInDatasets(location.name()))
+                        .subscribeOn(blocking.scheduler())
+                        .map(mapper::mapToUnified));
+
+        // 4️⃣ Static JSON fallback; remembered as a known miss when every provider rejected the query
+        return found
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    if (!knownMiss && location.asTyped()) negativeCache.recordMiss(city, configuredProviders());
+                    return fallback.response();
+                }))
+                .defaultIfEmpty(mapper.mapToUnified(Map.of("error", "no-valid-data")))
+                .doFinally(signal -> negativeCache.settle(city));
+    }
+
+    // providers that can answer at all; a known miss needs a rejection from each
+    private List<String> configuredProviders() {
+        return openWeatherService.configured() ? PROVIDERS : List.of(WEATHER_API);
+    }
+
+    // the place itself, or for "lat,lon" / a city the datasets lack, the nearest place they have;
+    // last, the same name in the history CSVs (exact only: a prefix match would answer for another city)
+    private Map<String, Object> findInDatasets(String city) {
+        Map<String, Object> row = csvService.findCurrent(city);
+        if (row != null) return row;
+
+        String near = nearest.nearestKnown(city);
+        row = near != null ? csvService.findCurrent(near) : null;
+        if (row != null) return row;
+
+        String known = GeoPoint.parse(city) == null ? weatherService.canonicalCity(city) : null;
+        return known != null ? fromHistory(weatherService.getCurrentWeather(known)) : null;
+    }
+
+    // same unified shape as the CSV tier's rows
+    private static Map<String, Object> fromHistory(WeatherRecord r) {
+        if (r == null) return null;
+        return LocalCSVLoaderService.unified(r.getCity(), r.getTemperature(), (double) r.getHumidity(),
+                r.getWind(), r.getCondition() != null ? r.getCondition() : "");
     }
 
     // =====================================================
-    // FORECAST
+    // BATCH CURRENT WEATHER
     // =====================================================
-    public Map<String, Object> getForecast(String city, int days) {
 
-        Map<String, Object> live = api.getForecast(city, days);
-        if (live != null && !live.containsKey("error")) {
-            return live;
+    /**
+     * Resolves each city through the normal chain (cache, coalescing, failover),
+     * at most weather.batch.max-parallelism at a time.
+     * Items are {"query": city, "weather": WeatherResponse}; in input order when
+     * ordered, otherwise in completion order.
+     */
+    public Flux<Map<String, Object>> getWeatherBatch(List<String> cities, boolean ordered) {
+        Flux<String> source = Flux.fromIterable(cities);
+        int parallelism = Math.max(1, batchParallelism);
+
+        return ordered
+                ? source.flatMapSequential(this::batchItem, parallelism)
+                : source.flatMap(this::batchItem, parallelism);
+    }
+
+    private Mono<Map<String, Object>> batchItem(String city) {
+        return getWeatherAsync(city).map(resp -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("query", city);
+            item.put("weather", resp);
+            return item;
+        });
+    }
+
+    // Live providers only; empty when every provider failed or the live budget ran out.
+    // A recent forecast.json for the city already carries "current": no provider call then,
+    // so no hedge latency sample or breaker verdict either
+    private Mono<WeatherResponse> fetchUpstream(String city, Deadline live) {
+        return forecastStore.peekCurrent(city)
+                .switchIfEmpty(Mono.defer(() -> raceProviders(city, live)));
+    }
+
+    private Mono<WeatherResponse> raceProviders(String city, Deadline live) {
+
+        // 1️⃣ + 2️⃣ healthiest provider first, the other as hedge / fallback;
+        // open circuits complete empty at once, timeouts count as failures
+        List<String> order = health.order(PROVIDERS);
+        String first = order.get(0);
+        String second = order.get(1);
+
+        Mono<WeatherResponse> primary = health.guard(first, live.bound(callProvider(first, city), primaryShare));
+        Mono<WeatherResponse> secondary = health.guard(second, live.bound(callProvider(second, city), 1.0));
+
+        if (blocking.isVirtual()) {
+            return fetchUpstreamStructured(first, primary, secondary, live);
         }
+        return hedger.hedge(first, primary, () -> secondary);
+    }
+
+    // Virtual-thread mode: both live tiers as blocking forks of one scope, same
+    // hedge timing as the reactive path (and feeding the hedger the same latency
+    // samples and outcomes); the loser is cancelled when the scope closes
+    private Mono<WeatherResponse> fetchUpstreamStructured(String primaryName,
+                                                          Mono<WeatherResponse> primary,
+                                                          Mono<WeatherResponse> secondary,
+                                                          Deadline live) {
+        return Mono.fromCallable(() -> {
+            ProviderHedger.Tracker hedge = hedger.track(primaryName);
+            Mono<WeatherResponse> first = hedge.primary(primary);
+            Mono<WeatherResponse> second = hedge.secondary(secondary);
+
+            try (TierScope<WeatherResponse> scope = blocking.openScope(live)) {
+                scope.fork(first::block);
+                scope.forkAfter(hedge.delayMs(), second::block);
+                return scope.firstResult();
+            }
+        }).subscribeOn(blocking.scheduler());
+    }
 
-        if (fallback.containsKey("forecast")) {
-            return fallback;
+    // decoded straight into WeatherResponse; empty on any provider error
+    private Mono<WeatherResponse> callProvider(String provider, String city) {
+        if (WEATHER_API.equals(provider)) {
+            return Mono.defer(() -> api.getCurrentTypedAsync(city));
         }
+        return Mono.defer(() -> openWeatherService.fetchCurrentTypedAsync(city));
+    }
 
-        return Map.of("error", "forecast-not-available");
+    private boolean isValid(Map<String, Object> resp) {
+        return resp != null && !resp.containsKey("error");
     }
 
     // =====================================================
-    // CSV FALLBACK
+    // FORECAST
     // =====================================================
-    private Map<String, Object> findInLocalCsv(String city) {
-        return csvService.getGlobalData().stream()
-                .filter(r -> city.equalsIgnoreCase(r.get("city")))
-                .findFirst()
-                .map(this::convertCsvRow)
-                .orElse(null);
-    }
-
-    private Map<String, Object> convertCsvRow(Map<String, String> row) {
-        Map<String, Object> out = new HashMap<>();
-        out.put("city", row.get("city"));
-        out.put("temperature", toDouble(row.get("temperature")));
-        out.put("humidity", toDouble(row.get("humidity")));
-        out.put("wind", toDouble(row.get("wind")));
-        out.put("condition", row.getOrDefault("condition", "Unknown"));
-        out.put("source", "CSV");
-        return out;
-    }
-
-    private Double toDouble(String v) {
-        try {
-            return v == null ? null : Double.parseDouble(v);
-        } catch (Exception e) {
-            return null;
-        }
+    public Map<String, Object> getForecast(String city, int days) {
+        return getForecastAsync(city, days).block();
     }
+
+    public Mono<Map<String, Object>> getForecastAsync(String city, int days) {
+        return Mono.defer(() -> Deadline.after(totalBudgetMs)
+                        .minus(localReserveMs)
+                        .bound(forecastStore.getForecast(locations.resolve(city).query(), days), 1.0))
+                .filter(this::isValid)
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    Map<String, Object> raw = fallback.raw();
+                    return raw.containsKey("forecast") ? raw : null;
+                }))
+                .defaultIfEmpty(Map.of("error", "forecast-not-available"));
+    }
+
+    private record StaticFallback(Map<String, Object> raw, WeatherResponse response) {}
 }
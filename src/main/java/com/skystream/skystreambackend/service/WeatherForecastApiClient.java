@@ -1,47 +1,63 @@
 package com.skystream.skystreambackend.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skystream.skystreambackend.dto.ForecastDay;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * ForecastDay view over the shared forecast store (no separate upstream call).
+ */
 @Service
 public class WeatherForecastApiClient {
 
-    @Value("${weather.api.key}")
-    private String apiKey;
-
-    private final ObjectMapper mapper = new ObjectMapper();
+    @Autowired
+    private ForecastStore forecastStore;
 
     public List<ForecastDay> getForecast(String city, int days) {
-        try {
-            String url = "http://api.weatherapi.com/v1/forecast.json?key=" + apiKey +
-                    "&q=" + city + "&days=" + days + "&aqi=yes";
+        return getForecastAsync(city, days).block();
+    }
 
-            JsonNode root = mapper.readTree(new java.net.URL(url));
+    public Mono<List<ForecastDay>> getForecastAsync(String city, int days) {
+        return forecastStore.getForecast(city, days)
+                .map(this::toForecastDays)
+                .onErrorResume(e -> {
+                    System.out.println("WeatherAPI forecast failed: " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
 
-            List<ForecastDay> list = new ArrayList<>();
+    private List<ForecastDay> toForecastDays(Map<String, Object> root) {
+        List<ForecastDay> list = new ArrayList<>();
+
+        for (Map<String, Object> node : list(map(root.get("forecast")).get("forecastday"))) {
+            Map<String, Object> day = map(node.get("day"));
+            list.add(new ForecastDay(
+                    String.valueOf(node.get("date")),
+                    String.valueOf(map(day.get("condition")).get("text")),
+                    num(day.get("maxtemp_c")),
+                    num(day.get("mintemp_c"))
+            ));
+        }
 
-            JsonNode arr = root.get("forecast").get("forecastday");
+        return list;
+    }
 
-            for (JsonNode node : arr) {
-                list.add(new ForecastDay(
-                        node.get("date").asText(),
-                        node.get("day").get("condition").get("text").asText(),
-                        node.get("day").get("maxtemp_c").asDouble(),
-                        node.get("day").get("mintemp_c").asDouble()
-                ));
-            }
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> map(Object o) {
+        return o instanceof Map ? (Map<String, Object>) o : Map.of();
+    }
 
-            return list;
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> list(Object o) {
+        return o instanceof List ? (List<Map<String, Object>>) o : List.of();
+    }
 
-        } catch (Exception e) {
-            System.out.println("WeatherAPI forecast failed: " + e.getMessage());
-            return null;
-        }
+    private double num(Object o) {
+        return o instanceof Number n ? n.doubleValue() : 0;
     }
 }
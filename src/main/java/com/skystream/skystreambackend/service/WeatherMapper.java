@@ -54,6 +54,8 @@ public class WeatherMapper {
         Map<String, Object> condition = map(current.get("condition"));
 
         out.city = str(location.get("name"));
+        out.country = str(location.get("country"));
+        out.region = str(location.get("region"));
         out.temperature = dbl(current.get("temp_c"));
         out.condition = str(condition.get("text"));
         out.icon = str(condition.get("icon"));
@@ -129,6 +131,7 @@ out.aqi = epa != null ? mapEpaToAqi(epa) : null;
         out.source = "OpenWeatherMap";
 
         out.city = str(data.get("name"));
+        out.country = str(map(data.get("sys")).get("country"));
 
         Map<String, Object> main = map(data.get("main"));
         Map<String, Object> wind = map(data.get("wind"));
@@ -230,7 +233,7 @@ out.aqi = epa != null ? mapEpaToAqi(epa) : null;
         catch (Exception e) { return null; }
     }
 
-    private Integer mapEpaToAqi(Integer epa) {
+    static Integer mapEpaToAqi(Integer epa) {
         if (epa == null) return null;
         return switch (epa) {
             case 1 -> 25;
@@ -2,19 +2,21 @@ package com.skystream.skystreambackend.service;
 
 import com.opencsv.CSVReader;
 import com.skystream.skystreambackend.model.WeatherRecord;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import jakarta.annotation.PostConstruct;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
-import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -22,113 +24,234 @@ import java.util.stream.Collectors;
  * - Auto-detects CSV header columns (common names)
  * - Indexes variants: normalized, trimmed, tokens prefixes
  * - Search: exact -> prefix -> contains
+ * Rows live in a ColumnarTable (primitive columns, dictionary-encoded text, epoch-day dates);
+ * the key index holds row ids. Both are built once and published as an immutable snapshot,
+ * so lookups take no locks; a reload builds a new snapshot and swaps it in.
+ * The snapshot is also kept on disk (DatasetSnapshots) and mapped back in on the next
+ * start, so the CSVs are only parsed when they changed.
  */
 @Service
-public class WeatherService {
+public class WeatherService implements ReloadableDataset {
 
-    // Map normalizedKey -> list of WeatherRecord (keep first = latest/simple)
-    private final Map<String, List<WeatherRecord>> cityIndex = new ConcurrentHashMap<>();
+    @Autowired
+    private DatasetLocator locator;
 
-    // Keep a set of canonical city names for suggestions
-    private final Set<String> canonicalCities = Collections.synchronizedSet(new HashSet<>());
+    @Autowired
+    private DatasetSnapshots snapshots;
+
+    // n-gram length of the substring index
+    private static final int GRAM = 3;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
 
    @PostConstruct
 public void init() {
     try {
-        loadCsv();
+        snapshot = loadCsv(false);
     } catch (Exception e) {
         System.err.println("WeatherService init failed: " + e.getMessage());
     }
 }
 
+    @Override
+    public String datasetName() {
+        return "city-index";
+    }
 
-    private void loadCsv() {
-        try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            // finds every CSV file under resources/data (recursive)
-            Resource[] resources = resolver.getResources("classpath*:data/**/*.csv");
-
-            for (Resource res : resources) {
-                try (CSVReader reader = new CSVReader(new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8))) {
-                    List<String[]> all = reader.readAll();
-                    if (all.isEmpty()) continue;
-
-                    String[] header = all.get(0);
-                    Map<String,Integer> headerIndex = indexHeader(header);
-
-                    // for each data row
-                    for (int i = 1; i < all.size(); i++) {
-                        String[] row = all.get(i);
-                        if (row.length == 0) continue;
-
-                        String city = getValue(row, headerIndex, new String[]{"location_name","location","city","name","loc","station"});
-                        if (city == null || city.isBlank()) continue;
-                        city = city.trim();
-
-                        String date = getValue(row, headerIndex, new String[]{"date","timestamp","datetime"});
-                        if (date == null || date.isBlank()) date = Instant.now().toString();
-
-                        double temp = parseDouble(getValue(row, headerIndex, new String[]{"temp","temperature","air_temperature","t"}));
-                        double high = parseDouble(getValue(row, headerIndex, new String[]{"high","temp_max","tmax"}));
-                        double low  = parseDouble(getValue(row, headerIndex, new String[]{"low","temp_min","tmin"}));
-                        int humidity = (int) Math.round(parseDouble(getValue(row, headerIndex, new String[]{"humidity","rh","rel_humidity"})));
-                        double wind = parseDouble(getValue(row, headerIndex, new String[]{"wind","windspeed","wind_speed","wind_kph","wind_mph"}));
-                        String cond = getValue(row, headerIndex, new String[]{"condition","weather","weather_description","desc"});
-
-                        WeatherRecord wr = new WeatherRecord(
-                                city,
-                                date,
-                                Double.isFinite(temp) ? temp : 0,
-                                Double.isFinite(high) ? high : (Double.isFinite(temp) ? temp : 0),
-                                Double.isFinite(low) ? low : (Double.isFinite(temp) ? temp : 0),
-                                humidity,
-                                Double.isFinite(wind) ? wind : 0,
-                                cond != null ? cond : ""
-                        );
-
-                        // index under several normalized keys
-                        addToIndex(city, wr);
-                    }
-
-                } catch (Exception e) {
-                    System.err.println("Failed to parse CSV " + res.getFilename() + " : " + e.getMessage());
-                }
+    @Override
+    public boolean dependsOn(String relativePath) {
+        return relativePath.startsWith("data/") && relativePath.endsWith(".csv");
+    }
+
+    @Override
+    public void reload() throws Exception {
+        // strict: a file that fails to parse aborts the reload, the live index stays
+        snapshot = loadCsv(true);
+    }
+
+
+    // header candidates per field, in priority order
+    private static final String[] CITY_COLUMNS = {"location_name","location","city","capital","name","loc","station"};
+    private static final String[] DATE_COLUMNS = {"date","timestamp","datetime"};
+    private static final String[] TEMP_COLUMNS = {"temp","temperature","air_temperature","temp_mean_c_approx","t"};
+    private static final String[] HIGH_COLUMNS = {"high","temp_max","tmax"};
+    private static final String[] LOW_COLUMNS = {"low","temp_min","tmin"};
+    private static final String[] HUMIDITY_COLUMNS = {"humidity","rh","rel_humidity"};
+    private static final String[] WIND_COLUMNS = {"wind","windspeed","wind_speed","wind_kph","wind_mph"};
+    private static final String[] CONDITION_COLUMNS = {"condition","weather","weather_description","desc"};
+
+    // record table layout
+    private static final int CITY = 0, DATE = 1, TEMP = 2, HIGH = 3, LOW = 4, HUMIDITY = 5, WIND = 6, CONDITION = 7;
+
+    // bump when row parsing or key indexing changes; snapshots of older parses are then ignored
+    private static final int PARSER_VERSION = 2;
+
+    private static ColumnarTable newRecordTable() {
+        return new ColumnarTable(
+                List.of("city", "date", "temperature", "high", "low", "humidity", "wind", "condition"),
+                List.of(ColumnarTable.Type.TEXT, ColumnarTable.Type.DATE,
+                        ColumnarTable.Type.DOUBLE, ColumnarTable.Type.DOUBLE, ColumnarTable.Type.DOUBLE,
+                        ColumnarTable.Type.INT, ColumnarTable.Type.DOUBLE, ColumnarTable.Type.TEXT));
+    }
+
+    // parser revision, header candidates and the record table's layout
+    private static String schema() {
+        ColumnarTable t = newRecordTable();
+        List<String> layout = new ArrayList<>();
+        for (int c = 0; c < t.columnCount(); c++) layout.add(t.name(c) + ":" + t.type(c));
+        return DatasetSnapshots.schema(PARSER_VERSION, CITY_COLUMNS, DATE_COLUMNS, TEMP_COLUMNS, HIGH_COLUMNS,
+                LOW_COLUMNS, HUMIDITY_COLUMNS, WIND_COLUMNS, CONDITION_COLUMNS, layout);
+    }
+
+    // non-strict: unreadable files are logged and skipped, and the partial index is not saved as a snapshot
+    private Snapshot loadCsv(boolean strict) throws Exception {
+        long start = System.nanoTime();
+
+        // every CSV under data/ (recursive), external dataset dirs overriding the bundled files
+        List<Resource> resources = locator.resolveAll("data", ".csv");
+
+        String fingerprint = snapshots.fingerprint(schema(), resources);
+        Snapshot cached = snapshots.load(datasetName(), fingerprint, Snapshot::read);
+        if (cached != null) {
+            System.out.println("✔ WeatherService loaded " + cached.table.size() + " rows from snapshot in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return cached;
+        }
+
+        // normalizedKey -> row ids (first = first seen), returned as a Snapshot to publish
+        ColumnarTable table = newRecordTable();
+        Map<String, List<Integer>> cityIndex = new HashMap<>();
+        Set<String> canonicalCities = new TreeSet<>();
+
+        // files are parsed in parallel; partial indexes merge in resource order,
+        // so "first seen" per key does not depend on thread timing
+        List<FileIndex> parts = resources.stream()
+                .parallel()
+                .map(res -> parseFile(res, strict))
+                .toList();
+
+        for (FileIndex part : parts) {
+            int offset = table.appendAll(part.table);
+            part.index.forEach((k, ids) -> {
+                List<Integer> target = cityIndex.computeIfAbsent(k, x -> new ArrayList<>());
+                for (int id : ids) target.add(offset + id);
+            });
+            canonicalCities.addAll(part.cities);
+        }
+        table.trim();
+
+        System.out.println("✔ WeatherService indexed " + table.size() + " rows from " + resources.size()
+                + " CSV file(s) in " + (System.nanoTime() - start) / 1_000_000 + " ms, ~"
+                + table.estimatedBytes() / 1024 + " KB");
+
+        Snapshot built = Snapshot.build(table, cityIndex, canonicalCities);
+        if (parts.stream().noneMatch(part -> part.failed)) snapshots.save(datasetName(), fingerprint, built::write);
+        return built;
+    }
+
+    // streams one file row by row into its own partial index
+    private FileIndex parseFile(Resource res, boolean strict) {
+        FileIndex part = new FileIndex();
+
+        try (CSVReader reader = new CSVReader(new InputStreamReader(res.getInputStream(), StandardCharsets.UTF_8))) {
+            String[] header = reader.readNext();
+            if (header == null) return part;
+
+            // column mapping is resolved once per file, not per row
+            List<String> headers = normalizeHeader(header);
+            int[] cityCols = columns(headers, CITY_COLUMNS);
+            int[] dateCols = columns(headers, DATE_COLUMNS);
+            int[] tempCols = columns(headers, TEMP_COLUMNS);
+            int[] highCols = columns(headers, HIGH_COLUMNS);
+            int[] lowCols = columns(headers, LOW_COLUMNS);
+            int[] humidityCols = columns(headers, HUMIDITY_COLUMNS);
+            int[] windCols = columns(headers, WIND_COLUMNS);
+            int[] condCols = columns(headers, CONDITION_COLUMNS);
+
+            if (cityCols.length == 0) return part;
+
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length == 0) continue;
+
+                String city = getValue(row, cityCols);
+                if (city == null || city.isBlank()) continue;
+                city = city.trim();
+
+                LocalDate date = parseDate(getValue(row, dateCols));
+
+                double temp = parseDouble(getValue(row, tempCols));
+                double high = parseDouble(getValue(row, highCols));
+                double low  = parseDouble(getValue(row, lowCols));
+                int humidity = (int) Math.round(parseDouble(getValue(row, humidityCols)));
+                double wind = parseDouble(getValue(row, windCols));
+                String cond = getValue(row, condCols);
+
+                ColumnarTable t = part.table;
+                int id = t.addRow();
+                t.setText(id, CITY, city);
+                t.setDate(id, DATE, date);
+                t.setDouble(id, TEMP, Double.isFinite(temp) ? temp : 0);
+                t.setDouble(id, HIGH, Double.isFinite(high) ? high : (Double.isFinite(temp) ? temp : 0));
+                t.setDouble(id, LOW, Double.isFinite(low) ? low : (Double.isFinite(temp) ? temp : 0));
+                t.setInt(id, HUMIDITY, humidity);
+                t.setDouble(id, WIND, Double.isFinite(wind) ? wind : 0);
+                t.setText(id, CONDITION, cond != null ? cond : "");
+
+                // index under several normalized keys
+                addToIndex(part.index, part.cities, city, id);
             }
 
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        } catch (Exception e) {
+            if (strict) throw new IllegalStateException("Failed to parse CSV " + res.getFilename() + ": " + e.getMessage(), e);
+            System.err.println("Failed to parse CSV " + res.getFilename() + " : " + e.getMessage());
+            part.failed = true;
         }
+        return part;
     }
 
-    // build header map name->index (lowercased)
-    private Map<String,Integer> indexHeader(String[] header) {
-        Map<String,Integer> map = new HashMap<>();
-        for (int i = 0; i < header.length; i++) {
-            if (header[i] == null) continue;
-            map.put(header[i].trim().toLowerCase(), i);
+    // header names, lowercased and trimmed (null -> "")
+    private List<String> normalizeHeader(String[] header) {
+        List<String> out = new ArrayList<>(header.length);
+        for (String h : header) {
+            out.add(h == null ? "" : h.trim().toLowerCase());
         }
-        return map;
+        return out;
     }
 
-    // get value by trying multiple candidate header names
-    private String getValue(String[] row, Map<String,Integer> headerIndex, String[] candidates) {
+    // column indexes to try for a field: exact header names first, then headers containing a candidate
+    private int[] columns(List<String> headers, String[] candidates) {
+        LinkedHashSet<Integer> cols = new LinkedHashSet<>();
+        for (String c : candidates) {
+            int idx = headers.indexOf(c);
+            if (idx >= 0) cols.add(idx);
+        }
         for (String c : candidates) {
-            Integer idx = headerIndex.get(c.toLowerCase());
-            if (idx != null && idx < row.length) {
+            for (int i = 0; i < headers.size(); i++) {
+                if (headers.get(i).contains(c)) cols.add(i);
+            }
+        }
+        return cols.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // first non-blank value among the resolved columns
+    private String getValue(String[] row, int[] columns) {
+        for (int idx : columns) {
+            if (idx < row.length) {
                 String v = row[idx];
                 if (v != null && !v.isBlank()) return v;
             }
         }
-        // fallback: try any header that contains candidate substring
-        for (String c : candidates) {
-            for (Map.Entry<String,Integer> e : headerIndex.entrySet()) {
-                if (e.getKey().contains(c.toLowerCase())) {
-                    int idx = e.getValue();
-                    if (idx < row.length) {
-                        String v = row[idx];
-                        if (v != null && !v.isBlank()) return v;
-                    }
-                }
+        return null;
+    }
+
+    // day granularity (epoch-day column); missing or unreadable dates stay missing (null)
+    private static LocalDate parseDate(String s) {
+        if (s != null && s.trim().length() >= 10) {
+            try {
+                return LocalDate.parse(s.trim().substring(0, 10));
+            } catch (Exception ignored) {
+                // fall through
             }
         }
         return null;
@@ -157,12 +280,13 @@ public void init() {
     }
 
     // Add multiple keys for flexible lookup
-    private void addToIndex(String city, WeatherRecord wr) {
+    private void addToIndex(Map<String, List<Integer>> cityIndex, Set<String> canonicalCities,
+                            String city, int row) {
         String canonical = city.trim();
         canonicalCities.add(canonical);
 
         String norm = normalize(canonical);               // full normalized
-        addKey(norm, wr);
+        addKey(cityIndex, norm, row);
 
         // add tokens, prefixes for multi-word city names
         String[] parts = norm.split("[,\\-\\s]+");
@@ -171,62 +295,75 @@ public void init() {
         for (int i = 0; i < parts.length; i++) {
             if (i > 0) prefix.append(" ");
             prefix.append(parts[i]);
-            addKey(prefix.toString(), wr); // prefixes: "new", "new york", "new york city"
+            addKey(cityIndex, prefix.toString(), row); // prefixes: "new", "new york", "new york city"
         }
         // also add individual token keys
         for (String p : parts) {
-            if (!p.isBlank()) addKey(p, wr);
+            if (!p.isBlank()) addKey(cityIndex, p, row);
         }
     }
 
-    private void addKey(String key, WeatherRecord wr) {
-        cityIndex.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(wr);
+    private void addKey(Map<String, List<Integer>> cityIndex, String key, int row) {
+        List<Integer> rows = cityIndex.computeIfAbsent(key, k -> new ArrayList<>());
+        // a row can reach the same key twice ("paris" as full name and as token)
+        if (rows.isEmpty() || rows.get(rows.size() - 1) != row) rows.add(row);
     }
 
     // Public: get best match for a city string (exact -> prefix -> contains)
     public WeatherRecord getCurrentWeather(String city) {
         if (city == null || city.isBlank()) return null;
         String q = normalize(city);
+        if (q.isEmpty()) return null;
 
-        // exact normalized match
-        List<WeatherRecord> exact = cityIndex.get(q);
-        if (exact != null && !exact.isEmpty()) return exact.get(0);
-
-        // prefix match (entries starting with q)
-        Optional<List<WeatherRecord>> prefix = cityIndex.entrySet().stream()
-                .filter(e -> e.getKey().startsWith(q))
-                .map(Map.Entry::getValue)
-                .findFirst();
-        if (prefix.isPresent() && !prefix.get().isEmpty()) return prefix.get().get(0);
-
-        // contains match (key contains q)
-        Optional<List<WeatherRecord>> contains = cityIndex.entrySet().stream()
-                .filter(e -> e.getKey().contains(q))
-                .map(Map.Entry::getValue)
-                .findFirst();
-        if (contains.isPresent() && !contains.get().isEmpty()) return contains.get().get(0);
-
-        // try canonical names contains (case-insensitive)
-        Optional<String> canon = canonicalCities.stream()
-                .filter(s -> s.toLowerCase().contains(city.trim().toLowerCase()))
-                .findFirst();
-        if (canon.isPresent()) {
-            List<WeatherRecord> list = cityIndex.get(normalize(canon.get()));
-            if (list != null && !list.isEmpty()) return list.get(0);
+        Snapshot index = snapshot;
+
+        // exact normalized match: a row of that very name before one that only has it as a word
+        int[] exact = index.byKey.get(q);
+        if (exact != null) {
+            int row = exactRow(index, q);
+            return index.record(row >= 0 ? row : exact[0]);
         }
 
+        // prefix match: shortest key starting with q, ties alphabetical
+        String prefix = index.bestPrefix(q);
+        if (prefix != null) return index.record(index.byKey.get(prefix)[0]);
+
+        // contains match: earliest occurrence of q, then shortest key, ties alphabetical
+        String contains = index.bestContains(q);
+        if (contains != null) return index.record(index.byKey.get(contains)[0]);
+
         return null;
     }
 
+    // Canonical spelling of a city stored under exactly this name (no prefix / token matches), else null
+    public String canonicalCity(String city) {
+        String q = normalize(city);
+        if (q.isEmpty()) return null;
+
+        Snapshot index = snapshot;
+        int row = exactRow(index, q);
+        return row >= 0 ? index.table.getString(row, CITY) : null;
+    }
+
+    // first row whose city normalizes to q, else -1; byKey also holds word tokens: "york" reaches New York's rows
+    private static int exactRow(Snapshot index, String q) {
+        int[] rows = index.byKey.get(q);
+        if (rows == null) return -1;
+        for (int row : rows) {
+            if (normalize(index.table.getString(row, CITY)).equals(q)) return row;
+        }
+        return -1;
+    }
+
     // Autocomplete / search suggestions
     // Autocomplete / search suggestions
 // Autocomplete / search suggestions
 @GetMapping("/search")
 public Map<String, Object> search(@RequestParam String q) {
 
-    // Search canonicalCities for matches to q
+    // Search canonical city names for matches to q
     String query = q == null ? "" : q.trim().toLowerCase();
-    List<Map<String, Object>> results = canonicalCities.stream()
+    List<Map<String, Object>> results = snapshot.cities.stream()
             .filter(city -> city.toLowerCase().contains(query))
             .limit(10)
             .map(city -> {
@@ -246,4 +383,187 @@ public Map<String, Object> search(@RequestParam String q) {
 
 
 
+    // one file's share of the index, merged after all files are parsed
+    private static final class FileIndex {
+        final ColumnarTable table = newRecordTable();
+        final Map<String, List<Integer>> index = new HashMap<>();
+        final Set<String> cities = new HashSet<>();
+
+        // stopped part-way: rows before the error are kept
+        boolean failed;
+    }
+
+    // =====================================================
+    // INDEX SNAPSHOT
+    // =====================================================
+
+    /**
+     * Immutable view of the city index.
+     * - byKey   : exact lookups
+     * - shortestByPrefix : top-1 key per prefix (shortest, then alphabetical)
+     * - grams   : n-gram -> ids of keys containing it; a substring query only
+     *             verifies the keys in the shortest posting list of its n-grams
+     */
+    static final class Snapshot {
+
+        static final Snapshot EMPTY = build(newRecordTable(), Map.of(), Set.of());
+
+        final ColumnarTable table;
+        final Map<String, int[]> byKey;
+        final List<String> cities;
+
+        // keys in sorted order, addressed by id from the posting lists
+        final String[] keys;
+        final Map<String, int[]> grams;
+
+        // every proper prefix of a key -> its best key
+        final Map<String, String> shortestByPrefix;
+
+        private Snapshot(ColumnarTable table, TreeMap<String, int[]> tree, List<String> cities, Map<String, int[]> grams) {
+            this.table = table;
+            this.byKey = Map.copyOf(tree);
+            this.cities = List.copyOf(cities);
+            this.keys = tree.keySet().toArray(new String[0]);
+            this.grams = Map.copyOf(grams);
+            this.shortestByPrefix = shortestByPrefix(keys);
+        }
+
+        // derived from the keys, so snapshots on disk do not carry it
+        private static Map<String, String> shortestByPrefix(String[] sortedKeys) {
+            Map<String, String> out = new HashMap<>();
+            for (String key : sortedKeys) {
+                for (int len = 1; len < key.length(); len++) {
+                    String prefix = key.substring(0, len);
+                    String best = out.get(prefix);
+                    // keys come alphabetically, so only a strictly shorter key replaces the holder
+                    if (best == null || key.length() < best.length()) out.put(prefix, key);
+                }
+            }
+            return out;
+        }
+
+        static Snapshot build(ColumnarTable table, Map<String, List<Integer>> index, Set<String> canonicalCities) {
+            TreeMap<String, int[]> tree = new TreeMap<>();
+            index.forEach((k, v) -> tree.put(k, v.stream().mapToInt(Integer::intValue).toArray()));
+
+            // ids follow the sorted key order and are added ascending, so every posting list is sorted
+            Map<String, List<Integer>> postings = new HashMap<>();
+            int id = 0;
+            for (String key : tree.keySet()) {
+                for (String g : gramsOf(key)) {
+                    postings.computeIfAbsent(g, x -> new ArrayList<>()).add(id);
+                }
+                id++;
+            }
+            Map<String, int[]> g = new HashMap<>(postings.size() * 2);
+            postings.forEach((k, ids) -> g.put(k, ids.stream().mapToInt(Integer::intValue).toArray()));
+
+            return new Snapshot(table, tree, new ArrayList<>(canonicalCities), g);
+        }
+
+        // table, key -> rows (sorted), cities, n-gram postings
+        void write(DataOutputStream out) throws IOException {
+            table.write(out);
+
+            out.writeInt(keys.length);
+            for (String key : keys) {
+                int[] rows = byKey.get(key);
+                DatasetSnapshots.writeString(out, key);
+                DatasetSnapshots.writeInts(out, rows, rows.length);
+            }
+
+            out.writeInt(cities.size());
+            for (String city : cities) DatasetSnapshots.writeString(out, city);
+
+            out.writeInt(grams.size());
+            for (Map.Entry<String, int[]> e : grams.entrySet()) {
+                DatasetSnapshots.writeString(out, e.getKey());
+                DatasetSnapshots.writeInts(out, e.getValue(), e.getValue().length);
+            }
+        }
+
+        static Snapshot read(ByteBuffer in) {
+            ColumnarTable table = ColumnarTable.read(in);
+
+            TreeMap<String, int[]> tree = new TreeMap<>();
+            int keyCount = in.getInt();
+            for (int i = 0; i < keyCount; i++) {
+                tree.put(DatasetSnapshots.readString(in), DatasetSnapshots.readInts(in));
+            }
+
+            int cityCount = in.getInt();
+            List<String> cities = new ArrayList<>(cityCount);
+            for (int i = 0; i < cityCount; i++) cities.add(DatasetSnapshots.readString(in));
+
+            int gramCount = in.getInt();
+            Map<String, int[]> grams = new HashMap<>(gramCount * 2);
+            for (int i = 0; i < gramCount; i++) {
+                grams.put(DatasetSnapshots.readString(in), DatasetSnapshots.readInts(in));
+            }
+            return new Snapshot(table, tree, cities, grams);
+        }
+
+        // materialized on demand; the table itself holds no objects per row
+        WeatherRecord record(int row) {
+            return new WeatherRecord(
+                    table.getString(row, CITY),
+                    table.getString(row, DATE),
+                    table.getDouble(row, TEMP),
+                    table.getDouble(row, HIGH),
+                    table.getDouble(row, LOW),
+                    table.getInt(row, HUMIDITY),
+                    table.getDouble(row, WIND),
+                    table.getString(row, CONDITION));
+        }
+
+        // top-1 per prefix, precomputed: a one-letter query is one map lookup, not a range walk
+        String bestPrefix(String q) {
+            return shortestByPrefix.get(q);
+        }
+
+        String bestContains(String q) {
+            int[] candidates = candidates(q);
+            String best = null;
+            int bestPos = Integer.MAX_VALUE;
+
+            for (int id : candidates) {
+                String key = keys[id];
+                int pos = key.indexOf(q);
+                if (pos < 0) continue;
+
+                if (pos < bestPos
+                        || (pos == bestPos && key.length() < best.length())) {
+                    best = key;
+                    bestPos = pos;
+                }
+            }
+            return best;
+        }
+
+        // ids of keys that can contain q: shortest posting list over q's n-grams
+        private int[] candidates(String q) {
+            if (q.length() < GRAM) {
+                int[] ids = grams.get(q);
+                return ids != null ? ids : new int[0];
+            }
+            int[] shortest = null;
+            for (String g : gramsOf(q)) {
+                int[] ids = grams.get(g);
+                if (ids == null) return new int[0];
+                if (shortest == null || ids.length < shortest.length) shortest = ids;
+            }
+            return shortest;
+        }
+
+        // all distinct substrings of length 1..GRAM (short queries look up directly)
+        private static Set<String> gramsOf(String s) {
+            Set<String> out = new HashSet<>();
+            for (int n = 1; n <= GRAM; n++) {
+                for (int i = 0; i + n <= s.length(); i++) {
+                    out.add(s.substring(i, i + n));
+                }
+            }
+            return out;
+        }
+    }
 }
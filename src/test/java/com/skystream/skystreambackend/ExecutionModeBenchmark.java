@@ -0,0 +1,95 @@
+package com.skystream.skystreambackend;
+
+import com.skystream.skystreambackend.service.Deadline;
+import com.skystream.skystreambackend.service.TierScope;
+import com.skystream.skystreambackend.service.VirtualThreads;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform vs virtual threads for the blocking failover path (not run by the build).
+ * Each simulated request opens a TierScope, forks a slow primary and a hedged
+ * secondary, and takes the first result - the same shape as the structured tiers.
+ *
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes com.skystream.skystreambackend.ExecutionModeBenchmark [requests]
+ */
+public class ExecutionModeBenchmark {
+
+    // Tomcat's default max request threads
+    private static final int PLATFORM_THREADS = 200;
+
+    private static final long PRIMARY_MS = 150;
+    private static final long SECONDARY_MS = 60;
+    private static final long HEDGE_DELAY_MS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        System.out.println("JDK " + Runtime.version() + ", " + requests + " requests");
+
+        try (Mode platform = new Mode("platform",
+                Executors.newFixedThreadPool(PLATFORM_THREADS), Executors.newCachedThreadPool())) {
+            run(platform, requests);
+        }
+
+        if (!VirtualThreads.supported()) {
+            System.out.println("virtual : skipped (JDK 21+ needed)");
+            return;
+        }
+        try (Mode virtual = new Mode("virtual",
+                VirtualThreads.newPerTaskExecutor(), VirtualThreads.newPerTaskExecutor())) {
+            run(virtual, requests);
+        }
+    }
+
+    private static void run(Mode mode, int requests) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger answered = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int slot = i;
+            mode.requests.execute(() -> {
+                long t0 = System.nanoTime();
+                try (TierScope<String> scope = new TierScope<>(mode.tiers, Deadline.after(4000))) {
+                    scope.fork(() -> upstream("primary", PRIMARY_MS));
+                    scope.forkAfter(HEDGE_DELAY_MS, () -> upstream("secondary", SECONDARY_MS));
+                    if (scope.firstResult() != null) answered.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latencies[slot] = (System.nanoTime() - t0) / 1_000_000;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s: %6d ms, %8.0f req/s, p50 %4d ms, p99 %5d ms, answered %d%n",
+                mode.name, elapsedMs, requests * 1000.0 / elapsedMs,
+                latencies[requests / 2], latencies[(int) (requests * 0.99)], answered.get());
+    }
+
+    // blocking upstream call with +/-20% jitter
+    private static String upstream(String name, long ms) throws InterruptedException {
+        long jitter = ms / 5;
+        Thread.sleep(ms - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1));
+        return name;
+    }
+
+    private record Mode(String name, ExecutorService requests, ExecutorService tiers) implements AutoCloseable {
+        @Override
+        public void close() {
+            requests.shutdownNow();
+            tiers.shutdownNow();
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package com.skystream.skystreambackend;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 // explicitly point to the main application class
 @SpringBootTest(classes = SkystreamBackendApplication.class)
 public class SkystreamBackendApplicationTests {
 
+    // files the app writes stay in a directory of this test's own
+    @TempDir
+    static Path workDir;
+
+    @DynamicPropertySource
+    static void workFiles(DynamicPropertyRegistry registry) {
+        registry.add("weather.datasets.snapshots.dir", () -> workDir.resolve("snapshots").toString());
+        registry.add("weather.location.learned-file", () -> workDir.resolve("location-aliases.tsv").toString());
+    }
+
     @Test
     void contextLoads() {
         // passes if Spring context starts
@@ -0,0 +1,53 @@
+package com.skystream.skystreambackend.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WeatherControllerTest {
+
+    private final MockMvc mvc = mvc();
+
+    @Test
+    void rejectedBatchHasTheSameBodyInJsonAndNdjson() throws Exception {
+        String tooMany = "{\"error\":\"batch-size\",\"message\":\"1 to 2 cities per request\"}";
+        String blank = "{\"error\":\"batch-city\",\"message\":\"every city must be a non-empty string\"}";
+
+        assertRejected("[]", tooMany);
+        assertRejected("[\"Paris\", \"Oslo\", \"Lima\"]", tooMany);
+        assertRejected("[\"Paris\", \" \"]", blank);
+        assertRejected("[\"Paris\", null]", blank);
+    }
+
+    private void assertRejected(String cities, String body) throws Exception {
+        mvc.perform(asyncDispatch(batch(cities, MediaType.APPLICATION_JSON)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json(body, true));
+
+        mvc.perform(asyncDispatch(batch(cities, MediaType.APPLICATION_NDJSON)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().json(body, true));
+    }
+
+    // both variants answer asynchronously (Mono / Flux body)
+    private MvcResult batch(String cities, MediaType accept) throws Exception {
+        return mvc.perform(post("/api/weather/current/batch")
+                        .contentType(MediaType.APPLICATION_JSON).accept(accept).content(cities))
+                .andReturn();
+    }
+
+    private static MockMvc mvc() {
+        WeatherController controller = new WeatherController(null, null, null, null, null);
+        ReflectionTestUtils.setField(controller, "maxBatchCities", 2);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+}
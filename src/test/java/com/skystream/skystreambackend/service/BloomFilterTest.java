@@ -0,0 +1,60 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndFppNearTarget() {
+        Random rnd = new Random(42);
+        for (double target : new double[]{0.1, 0.01, 0.001}) {
+            int n = 20_000;
+            BloomFilter filter = new BloomFilter(n, target);
+            Set<String> added = new HashSet<>();
+            while (added.size() < n) added.add(randomKey(rnd));
+            added.forEach(filter::put);
+
+            for (String key : added) assertTrue(filter.mightContain(key), key);
+            assertEquals(n, filter.insertions());
+
+            int trials = 200_000;
+            int falses = 0;
+            for (int i = 0; i < trials; i++) {
+                String key = randomKey(rnd);
+                if (!added.contains(key) && filter.mightContain(key)) falses++;
+            }
+            double measured = (double) falses / trials;
+            assertTrue(measured < target * 1.5, "measured " + measured + " for target " + target);
+            assertTrue(measured > target / 3, "measured " + measured + " for target " + target);
+            // the fill-based estimate agrees with what was measured
+            assertEquals(measured, filter.currentFpp(), target / 2);
+        }
+    }
+
+    @Test
+    void sizedFromTheFormulas() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        // m = -n ln p / (ln 2)^2 = 958,506 bits, k = m / n ln 2 = 7
+        assertEquals(119_816, filter.sizeBytes());
+        assertEquals(7, filter.hashes());
+
+        BloomFilter empty = new BloomFilter(0, 0);
+        assertFalse(empty.mightContain("x"));
+        assertEquals(0.0, empty.currentFpp());
+    }
+
+    private static String randomKey(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int length = 3 + rnd.nextInt(12);
+        for (int i = 0; i < length; i++) sb.append((char) ('a' + rnd.nextInt(26)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CidrTrieTest {
+
+    @Test
+    void insertRangeCoversExactlyTheRange() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            // disjoint ranges inside 10.0.0.0/16, so every address can be checked
+            TreeSet<Integer> cuts = new TreeSet<>();
+            while (cuts.size() < 2 + 2 * rnd.nextInt(20)) cuts.add(rnd.nextInt(1 << 16));
+            List<int[]> ranges = new ArrayList<>();
+            Integer[] c = cuts.toArray(new Integer[0]);
+            for (int i = 0; i + 1 < c.length; i += 2) ranges.add(new int[]{c[i], c[i + 1]});
+
+            CidrTrie trie = new CidrTrie(32);
+            for (int i = 0; i < ranges.size(); i++) {
+                trie.insertRange(v4(10, ranges.get(i)[0]), v4(10, ranges.get(i)[1]), i);
+            }
+
+            for (int a = 0; a < 1 << 16; a++) {
+                int expected = -1;
+                for (int i = 0; i < ranges.size(); i++) {
+                    if (a >= ranges.get(i)[0] && a <= ranges.get(i)[1]) expected = i;
+                }
+                assertEquals(expected, trie.longestMatch(v4(10, a)), "10.0." + (a >> 8) + "." + (a & 255));
+            }
+            // outside the /16
+            assertEquals(-1, trie.longestMatch(v4(11, 0)));
+        }
+    }
+
+    @Test
+    void longestPrefixWins() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            // overlapping prefixes over 16-bit addresses (the first two bytes of an IPv4 address)
+            List<int[]> prefixes = new ArrayList<>();
+            CidrTrie trie = new CidrTrie(32);
+            for (int i = 0; i < 30; i++) {
+                int length = rnd.nextInt(17);
+                int bits = length == 0 ? 0 : rnd.nextInt(1 << 16) & (-1 << (16 - length)) & 0xffff;
+                prefixes.add(new int[]{bits, length, i});
+                trie.insert(new byte[]{(byte) (bits >> 8), (byte) bits, 0, 0}, length, i);
+            }
+
+            for (int a = 0; a < 1 << 16; a += 7) {
+                // longest matching prefix; a later insert of the same prefix replaces the value
+                int expected = -1;
+                int bestLength = -1;
+                for (int[] p : prefixes) {
+                    int mask = p[1] == 0 ? 0 : (-1 << (16 - p[1])) & 0xffff;
+                    if ((a & mask) == p[0] && p[1] >= bestLength) {
+                        expected = p[2];
+                        bestLength = p[1];
+                    }
+                }
+                assertEquals(expected, trie.longestMatch(new byte[]{(byte) (a >> 8), (byte) a, 1, 2}));
+            }
+        }
+    }
+
+    @Test
+    void ipv6RangesUpToTheTopOfTheSpace() {
+        CidrTrie trie = new CidrTrie(128);
+        byte[] first = IpAddresses.parse("2001:db8::ffff");
+        byte[] last = IpAddresses.parse("2001:db8::1:0");
+        byte[] top = IpAddresses.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe");
+        byte[] max = IpAddresses.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+        trie.insertRange(first, last, 1);
+        trie.insertRange(top, max, 2);
+
+        assertEquals(-1, trie.longestMatch(IpAddresses.parse("2001:db8::fffe")));
+        assertEquals(1, trie.longestMatch(first));
+        assertEquals(1, trie.longestMatch(last));
+        assertEquals(-1, trie.longestMatch(IpAddresses.parse("2001:db8::1:1")));
+        assertEquals(2, trie.longestMatch(max));
+        assertEquals(2, trie.longestMatch(top));
+
+        // the whole space is one /0 block
+        CidrTrie all = new CidrTrie(128);
+        all.insertRange(new byte[16], max, 3);
+        assertEquals(1, all.nodeCount());
+        assertEquals(3, all.longestMatch(IpAddresses.parse("::1")));
+    }
+
+    @Test
+    void defaultRouteHostRouteAndOverwrite() {
+        CidrTrie trie = new CidrTrie(32);
+        assertEquals(-1, trie.longestMatch(new byte[]{8, 8, 8, 8}));
+
+        trie.insert(new byte[4], 0, 1);
+        trie.insert(new byte[]{8, 8, 8, 8}, 32, 2);
+        assertEquals(1, trie.longestMatch(new byte[]{8, 8, 8, 9}));
+        assertEquals(2, trie.longestMatch(new byte[]{8, 8, 8, 8}));
+
+        // host bits past the prefix are ignored; the same prefix again replaces the value
+        trie.insert(new byte[]{10, 1, 2, 3}, 8, 3);
+        trie.insert(new byte[]{10, 9, 9, 9}, 8, 4);
+        assertEquals(4, trie.longestMatch(new byte[]{10, 0, 0, 1}));
+    }
+
+    @Test
+    void singleAddressRangeIsAHostRoute() {
+        CidrTrie trie = new CidrTrie(32);
+        trie.insertRange(v4(10, 5), v4(10, 5), 9);
+
+        assertEquals(9, trie.longestMatch(v4(10, 5)));
+        assertEquals(-1, trie.longestMatch(v4(10, 4)));
+        assertEquals(-1, trie.longestMatch(v4(10, 6)));
+        assertEquals(33, trie.nodeCount());
+    }
+
+    @Test
+    void rangeBlocksAreMinimal() {
+        CidrTrie trie = new CidrTrie(32);
+        // 10.0.0.0 - 10.0.1.255 is exactly one /23: 23 nodes below the root
+        trie.insertRange(v4(10, 0), v4(10, 511), 0);
+        assertEquals(24, trie.nodeCount());
+    }
+
+    private static byte[] v4(int first, int low16) {
+        return new byte[]{(byte) first, 0, (byte) (low16 >> 8), (byte) low16};
+    }
+}
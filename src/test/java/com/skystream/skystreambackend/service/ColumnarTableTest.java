@@ -0,0 +1,215 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarTableTest {
+
+    private static final List<String> NAMES = List.of("city", "date", "temp", "humidity", "note");
+
+    @Test
+    void appendMatchesReferenceModelIncludingWidening() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            List<String[]> raw = randomRows(rnd, 300, round % 2 == 0);
+            ColumnarTable table = ColumnarTable.infer(NAMES, raw.get(0));
+            Model model = new Model(table);
+            for (String[] row : raw) {
+                table.append(row);
+                model.append(row);
+            }
+            model.assertMatches(table);
+        }
+    }
+
+    @Test
+    void widenedColumnKeepsEarlierValuesAsText() {
+        ColumnarTable t = ColumnarTable.infer(List.of("v"), new String[]{"1.50"});
+        t.append(new String[]{"1.50"});
+        t.append(new String[]{""});
+        t.append(new String[]{"2024-01-02"});
+
+        assertEquals(ColumnarTable.Type.TEXT, t.type(0));
+        assertEquals("1.5", t.getString(0, 0));
+        assertEquals("", t.getString(1, 0));
+        assertEquals("2024-01-02", t.getString(2, 0));
+        assertEquals(t.getCode(0, 0), t.codeOf(0, "1.5"));
+    }
+
+    @Test
+    void doublesReadAsPlainDecimals() {
+        ColumnarTable t = ColumnarTable.infer(List.of("v"), new String[]{"45.0"});
+        for (String v : new String[]{"45.0", "1.0E-4", "-0.50", "1e21", "0"}) t.append(new String[]{v});
+
+        assertEquals(ColumnarTable.Type.DOUBLE, t.type(0));
+        assertEquals(List.of("45", "0.0001", "-0.5", "1000000000000000000000", "0"),
+                List.of(t.getString(0, 0), t.getString(1, 0), t.getString(2, 0), t.getString(3, 0), t.getString(4, 0)));
+
+        // widening keeps the same text
+        t.append(new String[]{"n/a"});
+        assertEquals(ColumnarTable.Type.TEXT, t.type(0));
+        assertEquals("45", t.getString(0, 0));
+        assertEquals("0.0001", t.getString(1, 0));
+    }
+
+    @Test
+    void appendAllMatchesRowByRowAppend() {
+        Random rnd = new Random(7);
+        List<ColumnarTable.Type> types = List.of(ColumnarTable.Type.TEXT, ColumnarTable.Type.DATE,
+                ColumnarTable.Type.DOUBLE, ColumnarTable.Type.INT, ColumnarTable.Type.TEXT);
+
+        ColumnarTable merged = new ColumnarTable(NAMES, types);
+        ColumnarTable expected = new ColumnarTable(NAMES, types);
+        int rows = 0;
+        for (int part = 0; part < 6; part++) {
+            ColumnarTable p = new ColumnarTable(NAMES, types);
+            for (String[] row : randomRows(rnd, 1 + rnd.nextInt(200), true)) {
+                p.append(row);
+                expected.append(row);
+            }
+            assertEquals(rows, merged.appendAll(p));
+            rows += p.size();
+        }
+
+        assertEquals(expected.size(), merged.size());
+        for (int r = 0; r < expected.size(); r++) {
+            for (int c = 0; c < NAMES.size(); c++) {
+                assertEquals(expected.getString(r, c), merged.getString(r, c), "row " + r + " col " + c);
+            }
+        }
+        // codes are re-encoded through the target dictionary: equal strings, equal codes
+        for (int r = 0; r < merged.size(); r++) {
+            assertEquals(merged.codeOf(0, merged.getString(r, 0)), merged.getCode(r, 0));
+        }
+    }
+
+    @Test
+    void missingValuesReadAsTheirMarkers() {
+        ColumnarTable t = new ColumnarTable(List.of("d", "i", "day", "s"), List.of(ColumnarTable.Type.DOUBLE,
+                ColumnarTable.Type.INT, ColumnarTable.Type.DATE, ColumnarTable.Type.TEXT));
+        t.append(new String[]{"", " ", ""});
+
+        assertTrue(Double.isNaN(t.getDouble(0, 0)));
+        assertTrue(Double.isNaN(t.getDouble(0, 1)));
+        assertEquals(ColumnarTable.MISSING_INT, t.getInt(0, 1));
+        assertEquals(ColumnarTable.MISSING_INT, t.getEpochDay(0, 2));
+        assertEquals(0, t.getCode(0, 3));
+        for (int c = 0; c < 4; c++) assertEquals("", t.getString(0, c));
+    }
+
+    @Test
+    void typedReadsAcrossNumericTypes() {
+        ColumnarTable t = new ColumnarTable(List.of("d", "i"), List.of(ColumnarTable.Type.DOUBLE, ColumnarTable.Type.INT));
+        t.append(new String[]{"2.5", "7"});
+        t.append(new String[]{"-2.5", "7.0"});
+
+        assertEquals(3, t.getInt(0, 0));
+        assertEquals(-2, t.getInt(1, 0));
+        assertEquals(7.0, t.getDouble(0, 1));
+        assertEquals(ColumnarTable.Type.INT, t.type(1));
+        assertThrows(IllegalArgumentException.class, () -> t.intColumn(0));
+        assertThrows(IllegalArgumentException.class, () -> t.doubleColumn(1));
+        assertEquals(-1, t.column("missing"));
+    }
+
+    @Test
+    void inferKeepsTimestampsAsText() {
+        ColumnarTable t = ColumnarTable.infer(List.of("ts", "day", "n", "name"),
+                new String[]{"2024-05-01 13:00", "2024-05-01", "-0.5", "Paris"});
+
+        assertEquals(List.of(ColumnarTable.Type.TEXT, ColumnarTable.Type.DATE, ColumnarTable.Type.DOUBLE,
+                ColumnarTable.Type.TEXT), List.of(t.type(0), t.type(1), t.type(2), t.type(3)));
+    }
+
+    @Test
+    void appendAllRejectsAnotherSchema() {
+        ColumnarTable a = new ColumnarTable(List.of("v"), List.of(ColumnarTable.Type.DOUBLE));
+        ColumnarTable b = ColumnarTable.infer(List.of("v"), new String[]{"1"});
+        b.append(new String[]{"x"});
+
+        assertThrows(IllegalArgumentException.class, () -> a.appendAll(b));
+    }
+
+    // =====================================================
+    // REFERENCE MODEL
+    // =====================================================
+
+    // every cell as the text getString should give, with the column type tracked by hand
+    private static final class Model {
+        final ColumnarTable.Type[] types;
+        final List<String[]> cells = new ArrayList<>();
+
+        Model(ColumnarTable table) {
+            types = new ColumnarTable.Type[table.columnCount()];
+            for (int c = 0; c < types.length; c++) types[c] = table.type(c);
+        }
+
+        void append(String[] row) {
+            String[] out = new String[types.length];
+            for (int c = 0; c < types.length; c++) {
+                String v = c < row.length ? row[c].trim() : "";
+                String parsed = v.isEmpty() ? "" : parse(types[c], v);
+                if (parsed == null) {
+                    types[c] = ColumnarTable.Type.TEXT;
+                    parsed = v;
+                }
+                out[c] = parsed;
+            }
+            cells.add(out);
+        }
+
+        // canonical text of v in a column of this type; null when it does not fit
+        static String parse(ColumnarTable.Type type, String v) {
+            try {
+                return switch (type) {
+                    case TEXT -> v;
+                    case DOUBLE -> new BigDecimal(v).stripTrailingZeros().toPlainString();
+                    case INT -> {
+                        double d = Double.parseDouble(v);
+                        yield d == Math.rint(d) ? String.valueOf((int) d) : null;
+                    }
+                    case DATE -> v.length() == 10 ? LocalDate.parse(v).toString() : null;
+                };
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        void assertMatches(ColumnarTable table) {
+            assertEquals(cells.size(), table.size());
+            for (int c = 0; c < types.length; c++) assertEquals(types[c], table.type(c), "type of col " + c);
+            for (int r = 0; r < cells.size(); r++) {
+                for (int c = 0; c < types.length; c++) {
+                    assertEquals(cells.get(r)[c], table.getString(r, c), "row " + r + " col " + c);
+                }
+            }
+        }
+    }
+
+    // city, date, temp, humidity, note; with odd values sprinkled in when not clean
+    private static List<String[]> randomRows(Random rnd, int n, boolean clean) {
+        String[] cities = {"Paris", "Oslo", "Kyiv", "São Paulo", " Rome ", ""};
+        List<String[]> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String date = LocalDate.of(2024, 1, 1).plusDays(rnd.nextInt(400)).toString();
+            String temp = String.valueOf(Math.round((rnd.nextDouble() * 60 - 20) * 10) / 10.0);
+            String humidity = String.valueOf(rnd.nextInt(101));
+            if (!clean) {
+                if (rnd.nextInt(50) == 0) date = "2024-13-40";
+                if (rnd.nextInt(60) == 0) temp = "n/a";
+                if (rnd.nextInt(40) == 0) humidity = "";
+            }
+            out.add(new String[]{cities[rnd.nextInt(cities.length)], date, temp, humidity, "r" + rnd.nextInt(20)});
+        }
+        return out;
+    }
+}
@@ -0,0 +1,134 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DatasetSnapshotsTest {
+
+    @TempDir
+    Path dir;
+
+    private DatasetSnapshots snapshots() {
+        DatasetSnapshots s = new DatasetSnapshots();
+        ReflectionTestUtils.setField(s, "enabled", true);
+        ReflectionTestUtils.setField(s, "dir", dir.toString());
+        return s;
+    }
+
+    @Test
+    void columnarTableSurvivesWriteAndRead() {
+        ColumnarTable table = randomTable(new Random(42), 500);
+        DatasetSnapshots s = snapshots();
+
+        s.save("table", "fp", table::write);
+        ColumnarTable read = s.load("table", "fp", ColumnarTable::read);
+
+        assertNotNull(read);
+        assertEquals(table.size(), read.size());
+        for (int c = 0; c < table.columnCount(); c++) {
+            assertEquals(table.name(c), read.name(c));
+            assertEquals(table.type(c), read.type(c));
+        }
+        for (int r = 0; r < table.size(); r++) {
+            for (int c = 0; c < table.columnCount(); c++) {
+                assertEquals(table.getString(r, c), read.getString(r, c), "row " + r + " col " + c);
+                assertEquals(table.getCode(r, c), read.getCode(r, c));
+            }
+        }
+
+        // a read table still takes rows, through the same dictionaries
+        int row = read.append(new String[]{"Paris", "2025-01-01", "1.5", "7", "new"});
+        assertEquals("Paris", read.getString(row, 0));
+        assertEquals(read.codeOf(0, "Paris"), read.getCode(row, 0));
+    }
+
+    @Test
+    void staleFingerprintIsIgnored() throws Exception {
+        Path csv = Files.writeString(dir.resolve("a.csv"), "city\nParis\n");
+        List<Resource> sources = List.of(new FileSystemResource(csv));
+        DatasetSnapshots s = snapshots();
+
+        String v1 = s.fingerprint(DatasetSnapshots.schema(1, new String[]{"city"}), sources);
+        s.save("t", v1, randomTable(new Random(7), 3)::write);
+        assertNotNull(s.load("t", v1, ColumnarTable::read));
+
+        // parser or column candidates changed
+        String v2 = s.fingerprint(DatasetSnapshots.schema(2, new String[]{"city"}), sources);
+        String v3 = s.fingerprint(DatasetSnapshots.schema(1, new String[]{"city", "capital"}), sources);
+        assertNotEquals(v1, v2);
+        assertNotEquals(v1, v3);
+        assertNull(s.load("t", v2, ColumnarTable::read));
+        assertNull(s.load("t", v3, ColumnarTable::read));
+
+        // source file changed
+        Files.writeString(csv, "city\nParis\nOslo\n");
+        assertNull(s.load("t", s.fingerprint(DatasetSnapshots.schema(1, new String[]{"city"}), sources), ColumnarTable::read));
+    }
+
+    @Test
+    void damagedOrMissingSnapshotIsIgnored() throws Exception {
+        DatasetSnapshots s = snapshots();
+        assertNull(s.load("never-saved", "fp", ColumnarTable::read));
+
+        s.save("t", "fp", randomTable(new Random(7), 50)::write);
+        Path file = dir.resolve("t.snap");
+        byte[] bytes = Files.readAllBytes(file);
+
+        // cut short: the decoder runs off the end
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(s.load("t", "fp", ColumnarTable::read));
+
+        // not a snapshot at all
+        Files.writeString(file, "city,temp\nParis,1\n");
+        assertNull(s.load("t", "fp", ColumnarTable::read));
+    }
+
+    @Test
+    void disabledNeitherReadsNorWrites() {
+        DatasetSnapshots s = snapshots();
+        ReflectionTestUtils.setField(s, "enabled", false);
+
+        s.save("t", "fp", randomTable(new Random(7), 5)::write);
+        assertFalse(Files.exists(dir.resolve("t.snap")));
+        assertNull(s.load("t", "fp", ColumnarTable::read));
+    }
+
+    @Test
+    void schemaIsStableForEqualParts() {
+        assertEquals(DatasetSnapshots.schema(1, new String[]{"a"}, List.of(ColumnarTable.Type.TEXT)),
+                DatasetSnapshots.schema(1, new String[]{"a"}, List.of(ColumnarTable.Type.TEXT)));
+    }
+
+    // every column type, a widened column, and missing values
+    static ColumnarTable randomTable(Random rnd, int rows) {
+        ColumnarTable t = ColumnarTable.infer(List.of("city", "date", "temp", "humidity", "note"),
+                new String[]{"Oslo", "2024-01-01", "1.0", "5", "x"});
+        String[] cities = {"Paris", "Oslo", "Kyiv", "São Paulo", ""};
+        for (int i = 0; i < rows; i++) {
+            t.append(new String[]{
+                    cities[rnd.nextInt(cities.length)],
+                    rnd.nextInt(20) == 0 ? "" : LocalDate.of(2024, 1, 1).plusDays(rnd.nextInt(300)).toString(),
+                    rnd.nextInt(20) == 0 ? "" : String.valueOf(rnd.nextInt(400) / 10.0),
+                    i == rows / 2 ? "n/a" : String.valueOf(rnd.nextInt(100)),
+                    "n" + rnd.nextInt(30)});
+        }
+        t.trim();
+        return t;
+    }
+}
@@ -0,0 +1,61 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineTest {
+
+    @Test
+    void callWithinItsShareCompletes() {
+        assertEquals(1, Deadline.after(5_000).bound(Mono.just(1), 0.5).block());
+    }
+
+    @Test
+    void slowCallCompletesEmptyAtItsShare() {
+        Deadline deadline = Deadline.after(2_000);
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        long start = System.nanoTime();
+        Integer got = deadline.bound(Mono.<Integer>never().doOnCancel(() -> cancelled.set(true)), 0.25).block();
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertNull(got);
+        assertTrue(cancelled.get());
+        // about a quarter of the budget, well before the deadline itself
+        assertTrue(tookMs >= 450 && tookMs < 1_500, "took " + tookMs + " ms");
+    }
+
+    @Test
+    void spentBudgetSkipsTheCall() {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        Mono<Integer> call = Mono.fromSupplier(() -> {
+            subscribed.set(true);
+            return 1;
+        });
+
+        assertNull(Deadline.after(0).bound(call, 1.0).block());
+        // the reserve for later tiers is larger than what is left
+        assertNull(Deadline.after(100).minus(200).bound(call, 1.0).block());
+        assertFalse(subscribed.get());
+        assertEquals(0, Deadline.after(100).minus(200).remainingMs());
+    }
+
+    @Test
+    void shareIsTakenFromWhatIsLeftAtSubscription() throws Exception {
+        Deadline deadline = Deadline.after(600);
+        Mono<Long> bounded = deadline.bound(Mono.delay(Duration.ofMillis(200)), 0.5);
+
+        // 300 ms at assembly, but only ~100 ms once 400 ms have gone
+        Thread.sleep(400);
+        assertNull(bounded.block());
+        assertEquals(0L, Deadline.after(600).bound(Mono.delay(Duration.ofMillis(200)), 0.5).block());
+    }
+}
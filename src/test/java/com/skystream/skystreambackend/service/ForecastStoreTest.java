@@ -0,0 +1,168 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ForecastStoreTest {
+
+    @Test
+    void everyHorizonIsASliceOfOneFetch() {
+        StubApi api = new StubApi();
+        ForecastStore store = store(api);
+
+        assertEquals(3, days(store.getForecast("Paris", 3).block()));
+        assertEquals(15, days(store.getForecast("paris", 15).block()));
+        assertEquals(1, days(store.getForecast("PARIS", 1).block()));
+        // out of range is clamped
+        assertEquals(1, days(store.getForecast("paris", 0).block()));
+        assertEquals(15, days(store.getForecast("paris", 40).block()));
+
+        assertEquals(1, api.fetches.get());
+        assertEquals(List.of(ForecastStore.MAX_DAYS), api.requestedDays);
+        assertEquals(4L, store.stats().get("hits"));
+    }
+
+    @Test
+    void slicingLeavesTheStoredPayloadWhole() {
+        StubApi api = new StubApi();
+        ForecastStore store = store(api);
+
+        Map<String, Object> three = store.getForecast("oslo", 3).block();
+        assertEquals("oslo", ((Map<?, ?>) three.get("location")).get("name"));
+        assertEquals(15, days(store.getForecast("oslo", 15).block()));
+
+        // a payload shorter than asked for comes back as it is
+        api.horizon = 2;
+        Map<String, Object> shortPayload = store.getForecast("kyiv", 7).block();
+        assertSame(api.last, shortPayload);
+    }
+
+    @Test
+    void expiresOnTheNextRefreshBoundary() {
+        ForecastStore store = store(new StubApi());
+        long period = 900_000;
+        long boundary = 100 * period;
+
+        // right after a boundary: the next one
+        assertEquals(boundary + period, expiry(store, boundary + 1_000));
+        // within min-ttl of a boundary: the one after
+        assertEquals(boundary + 2 * period, expiry(store, boundary + period - 60_000));
+        // exactly min-ttl before it: still the one after (never sooner than min-ttl)
+        assertEquals(boundary + 2 * period, expiry(store, boundary + period - 120_000));
+        assertEquals(boundary + period, expiry(store, boundary + period - 120_001));
+    }
+
+    @Test
+    void expiredEntryIsRefetchedOrServedStale() throws Exception {
+        StubApi api = new StubApi();
+        ForecastStore store = store(api);
+        store.getForecast("rome", 3).block();
+
+        age(store, "rome", 2 * 900_000);
+        store.getForecast("rome", 3).block();
+        assertEquals(2, api.fetches.get());
+
+        // refresh fails: the old payload rather than nothing
+        age(store, "rome", 2 * 900_000);
+        api.down = true;
+        assertEquals(3, days(store.getForecast("rome", 3).block()));
+        assertEquals(1L, store.stats().get("staleServed"));
+
+        assertNull(store.getForecast("never-fetched", 3).block());
+    }
+
+    @Test
+    void currentComesFromAYoungPayloadOnly() throws Exception {
+        StubApi api = new StubApi();
+        ForecastStore store = store(api);
+        assertNull(store.peekCurrent("lima").block());
+
+        store.getForecast("lima", 3).block();
+        assertEquals(21.5, store.peekCurrent("Lima").block().temperature);
+        assertEquals("lima", store.peekCurrent("lima").block().city);
+
+        age(store, "lima", 301_000);
+        assertNull(store.peekCurrent("lima").block());
+        assertEquals(1, api.fetches.get());
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    // forecast.json with "horizon" days, counting fetches
+    private static final class StubApi extends WeatherApiClient {
+        final AtomicInteger fetches = new AtomicInteger();
+        final List<Integer> requestedDays = new ArrayList<>();
+        int horizon = ForecastStore.MAX_DAYS;
+        boolean down;
+        Map<String, Object> last;
+
+        @Override
+        public Mono<Map<String, Object>> getForecastAsync(String q, int days) {
+            fetches.incrementAndGet();
+            requestedDays.add(days);
+            if (down) return Mono.error(new IllegalStateException("down"));
+
+            List<Map<String, Object>> forecastDays = new ArrayList<>();
+            for (int d = 0; d < Math.min(days, horizon); d++) {
+                forecastDays.add(Map.of("date", "2024-06-" + (10 + d), "day", Map.of("maxtemp_c", 20 + d)));
+            }
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("location", Map.of("name", q));
+            payload.put("current", Map.of("temp_c", 21.5, "condition", Map.of("text", "Sunny")));
+            payload.put("forecast", Map.of("forecastday", forecastDays));
+            last = payload;
+            return Mono.just(payload);
+        }
+    }
+
+    private static ForecastStore store(WeatherApiClient api) {
+        ForecastStore store = new ForecastStore();
+        ReflectionTestUtils.setField(store, "refreshSeconds", 900L);
+        ReflectionTestUtils.setField(store, "minTtlSeconds", 120L);
+        ReflectionTestUtils.setField(store, "currentMaxAgeSeconds", 300L);
+        ReflectionTestUtils.setField(store, "maxEntries", 10);
+        ReflectionTestUtils.setField(store, "api", api);
+        ReflectionTestUtils.setField(store, "mapper", new WeatherMapper());
+        store.init();
+        return store;
+    }
+
+    private static int days(Map<String, Object> payload) {
+        return ((List<?>) ((Map<?, ?>) payload.get("forecast")).get("forecastday")).size();
+    }
+
+    private static long expiry(ForecastStore store, long fetchedAt) {
+        return ReflectionTestUtils.invokeMethod(store, "expiry", fetchedAt);
+    }
+
+    // moves the entry's fetch and expiry times back, as if the time had passed
+    @SuppressWarnings("unchecked")
+    private static void age(ForecastStore store, String key, long millis) throws Exception {
+        Map<String, Object> entries = (Map<String, Object>) ReflectionTestUtils.getField(store, "entries");
+        Object entry = entries.get(key);
+        RecordComponent[] parts = entry.getClass().getRecordComponents();
+        Object[] values = new Object[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            Object v = parts[i].getAccessor().invoke(entry);
+            values[i] = parts[i].getType() == long.class ? (long) v - millis : v;
+        }
+        Constructor<?> c = entry.getClass().getDeclaredConstructors()[0];
+        c.setAccessible(true);
+        entries.put(key, c.newInstance(values));
+    }
+}
@@ -0,0 +1,171 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FuzzySearchServiceTest {
+
+    private static final String ALPHABET = "abcdeilnorst ";
+
+    private static FuzzySearchService service(int maxDistance, List<String> terms) {
+        FuzzySearchService s = new FuzzySearchService();
+        ReflectionTestUtils.setField(s, "maxDistance", maxDistance);
+        terms.forEach(s::add);
+        return s;
+    }
+
+    @Test
+    void closestMatchesLinearScan() {
+        Random rnd = new Random(42);
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) terms.add(word(rnd, 3 + rnd.nextInt(8)));
+
+        for (int maxDistance : new int[]{1, 2, 3}) {
+            FuzzySearchService s = service(maxDistance, terms);
+            for (int i = 0; i < 500; i++) {
+                // mostly near-misses of a corpus term, some random strings
+                String q = i % 4 == 0 ? word(rnd, 2 + rnd.nextInt(9)) : mutate(rnd, terms.get(rnd.nextInt(terms.size())));
+                if (q.isEmpty()) continue;
+                assertEquals(bruteForce(terms, q, maxDistance), s.closest(q), "query '" + q + "'");
+            }
+        }
+    }
+
+    @Test
+    void shortQueriesAllowOneEdit() {
+        FuzzySearchService s = service(2, List.of("rome", "oslo", "paris"));
+
+        assertEquals("rome", s.closest("rom"));
+        assertNull(s.closest("rxx"));
+        assertEquals("paris", s.closest("prais"));
+    }
+
+    @Test
+    void tiesGoToShorterThenAlphabetical() {
+        FuzzySearchService s = service(2, List.of("berlin", "berline", "bern", "bera"));
+
+        assertEquals("bera", s.closest("berx"));
+    }
+
+    @Test
+    void emptyCorpusMatchesNothing() {
+        assertNull(service(2, List.of()).closest("paris"));
+    }
+
+    @Test
+    void exactTermIsItsOwnMatch() {
+        FuzzySearchService s = service(2, List.of("lyon", "lyons", "leon"));
+
+        assertEquals("lyon", s.closest("lyon"));
+        assertEquals("lyons", s.closest("lyons"));
+        assertNull(s.closest(""));
+        assertNull(s.closest(null));
+    }
+
+    @Test
+    void duplicateAndEmptyTermsAreIgnored() {
+        FuzzySearchService s = service(2, List.of("oslo", "oslo", ""));
+        s.add(null);
+
+        assertEquals(1, s.stats().get("terms"));
+        assertEquals("oslo", s.closest("oslp"));
+    }
+
+    @Test
+    void replacedCorpusMatchesLikeAFreshOne() {
+        Random rnd = new Random(99);
+        List<String> before = new ArrayList<>();
+        for (int i = 0; i < 500; i++) before.add(word(rnd, 3 + rnd.nextInt(8)));
+        // half the old terms stay, the rest are new
+        List<String> after = new ArrayList<>(before.subList(0, 250));
+        for (int i = 0; i < 250; i++) after.add(word(rnd, 3 + rnd.nextInt(8)));
+
+        FuzzySearchService s = service(2, before);
+        s.replace(after);
+        assertEquals(new HashSet<>(after).size(), s.stats().get("terms"));
+        for (int i = 0; i < 500; i++) {
+            String q = mutate(rnd, before.get(rnd.nextInt(before.size())));
+            if (q.isEmpty()) continue;
+            assertEquals(bruteForce(after, q, 2), s.closest(q), "query '" + q + "'");
+        }
+
+        s.replace(List.of());
+        assertNull(s.closest(before.get(0)));
+    }
+
+    @Test
+    void bestMatchPicksTheNearestOption() {
+        FuzzySearchService s = service(2, List.of());
+        List<Map<String, Object>> options = List.of(
+                Map.of("name", "Springfield", "region", "Illinois"),
+                Map.of("name", "Springdale", "region", "Arkansas"));
+
+        assertEquals("Illinois", s.bestMatch("SPRINGFELD", options).get("region"));
+        // more than five edits from every option
+        assertNull(s.bestMatch("Tallahassee", options));
+        assertNull(s.bestMatch("paris", List.of()));
+    }
+
+    // =====================================================
+    // BRUTE FORCE
+    // =====================================================
+
+    private static String bruteForce(List<String> terms, String q, int maxDistance) {
+        int limit = q.length() <= 4 ? Math.min(1, maxDistance) : maxDistance;
+        String best = null;
+        int bestDist = Integer.MAX_VALUE;
+        for (String t : terms) {
+            int d = levenshtein(q, t);
+            if (d > limit) continue;
+            boolean better = d < bestDist
+                    || (d == bestDist && (t.length() < best.length() || (t.length() == best.length() && t.compareTo(best) < 0)));
+            if (better) {
+                best = t;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] dp = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) dp[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) dp[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                dp[i][j] = Math.min(Math.min(dp[i - 1][j] + 1, dp[i][j - 1] + 1), dp[i - 1][j - 1] + cost);
+            }
+        }
+        return dp[a.length()][b.length()];
+    }
+
+    private static String word(Random rnd, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(ALPHABET.charAt(rnd.nextInt(ALPHABET.length() - 1)));
+        return sb.toString();
+    }
+
+    // one to three random edits
+    private static String mutate(Random rnd, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        int edits = 1 + rnd.nextInt(3);
+        for (int e = 0; e < edits; e++) {
+            int op = rnd.nextInt(3);
+            char c = ALPHABET.charAt(rnd.nextInt(ALPHABET.length()));
+            if (op == 0 || sb.length() == 0) sb.insert(rnd.nextInt(sb.length() + 1), c);
+            else if (op == 1) sb.deleteCharAt(rnd.nextInt(sb.length()));
+            else sb.setCharAt(rnd.nextInt(sb.length()), c);
+        }
+        return sb.toString();
+    }
+}
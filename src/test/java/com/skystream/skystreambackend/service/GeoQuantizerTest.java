@@ -0,0 +1,136 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoQuantizerTest {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    @Test
+    void encodeMatchesInterleavedCellIndex() {
+        Random rnd = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            GeoPoint p = randomPoint(rnd);
+            int length = 1 + rnd.nextInt(12);
+            assertEquals(bruteForce(p, length), GeoQuantizer.encode(p, length), p + " @" + length);
+        }
+        // the edges of the grid belong to the last cell
+        assertEquals("zzzzz", GeoQuantizer.encode(new GeoPoint(90, 180), 5));
+        assertEquals("00000", GeoQuantizer.encode(new GeoPoint(-90, -180), 5));
+        assertEquals("u09tvw0", GeoQuantizer.encode(new GeoPoint(48.8566, 2.3522), 7));
+    }
+
+    @Test
+    void centreRoundTripsAndLiesInTheCell() {
+        Random rnd = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            GeoPoint p = randomPoint(rnd);
+            int length = 1 + rnd.nextInt(12);
+            String hash = GeoQuantizer.encode(p, length);
+            GeoPoint c = GeoQuantizer.center(hash);
+
+            assertEquals(hash, GeoQuantizer.encode(c, length));
+            // half a cell at most from the point it came from
+            int lonBits = (5 * length + 1) / 2;
+            int latBits = 5 * length / 2;
+            assertTrue(Math.abs(c.lon() - p.lon()) <= 180 / Math.pow(2, lonBits), hash);
+            assertTrue(Math.abs(c.lat() - p.lat()) <= 90 / Math.pow(2, latBits), hash);
+        }
+    }
+
+    @Test
+    void shorterHashIsAPrefix() {
+        Random rnd = new Random(99);
+        for (int i = 0; i < 5_000; i++) {
+            GeoPoint p = randomPoint(rnd);
+            String full = GeoQuantizer.encode(p, 12);
+            for (int length = 1; length < 12; length++) {
+                assertEquals(full.substring(0, length), GeoQuantizer.encode(p, length));
+            }
+        }
+    }
+
+    @Test
+    void snapLevelFollowsClientDecimals() {
+        GeoQuantizer q = new GeoQuantizer();
+        ReflectionTestUtils.setField(q, "precision", 5);
+
+        GeoQuantizer.Snapped fine = q.snap("48.8566,2.3522");
+        assertEquals(5, fine.level());
+        assertEquals("u09tv", fine.geohash());
+        assertEquals(fine.query(), q.snap("48.8570, 2.3530").query());
+
+        assertEquals(3, q.snap("48,2").level());
+        assertEquals(4, q.snap("48.8,2.35").level());
+
+        GeoQuantizer.Snapped text = q.snap("Paris");
+        assertEquals(0, text.level());
+        assertEquals("Paris", text.query());
+        assertNull(text.geohash());
+
+        q.recordLoad(fine);
+        q.recordLoad(text);
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> levels = (Map<String, Map<String, Object>>) q.stats().get("levels");
+        assertEquals(2L, levels.get("5").get("requests"));
+        assertEquals(1L, levels.get("5").get("misses"));
+        assertEquals(0.5, levels.get("5").get("hitRate"));
+
+        ReflectionTestUtils.setField(q, "precision", 0);
+        assertEquals(0, q.snap("48.8566,2.3522").level());
+    }
+
+    // =====================================================
+    // BRUTE FORCE
+    // =====================================================
+
+    // cell index along each axis in exact arithmetic, then lon/lat bits interleaved, lon first
+    private static String bruteForce(GeoPoint p, int length) {
+        int lonBits = (5 * length + 1) / 2;
+        int latBits = 5 * length / 2;
+        long lon = cell(p.lon(), 180, lonBits);
+        long lat = cell(p.lat(), 90, latBits);
+
+        StringBuilder sb = new StringBuilder();
+        int ch = 0;
+        for (int bit = 0; bit < 5 * length; bit++) {
+            boolean set = bit % 2 == 0
+                    ? (lon >> (lonBits - 1 - bit / 2) & 1) == 1
+                    : (lat >> (latBits - 1 - bit / 2) & 1) == 1;
+            ch = (ch << 1) | (set ? 1 : 0);
+            if (bit % 5 == 4) {
+                sb.append(BASE32.charAt(ch));
+                ch = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long cell(double v, int half, int bits) {
+        long cells = 1L << bits;
+        long index = new BigDecimal(v).add(BigDecimal.valueOf(half))
+                .multiply(BigDecimal.valueOf(cells))
+                .divide(BigDecimal.valueOf(2L * half), 0, RoundingMode.FLOOR)
+                .longValue();
+        return Math.min(index, cells - 1);
+    }
+
+    // uniform, plus exact cell boundaries where rounding would show
+    private static GeoPoint randomPoint(Random rnd) {
+        if (rnd.nextInt(5) == 0) {
+            int cells = 1 << (1 + rnd.nextInt(20));
+            return new GeoPoint(-90 + 180.0 * rnd.nextInt(cells) / cells, -180 + 360.0 * rnd.nextInt(cells) / cells);
+        }
+        return new GeoPoint(rnd.nextDouble() * 180 - 90, rnd.nextDouble() * 360 - 180);
+    }
+}
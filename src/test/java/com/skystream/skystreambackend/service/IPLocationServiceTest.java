@@ -0,0 +1,79 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IPLocationServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private IPLocationService service(String trustedProxies) {
+        IPLocationService s = new IPLocationService();
+        ReflectionTestUtils.setField(s, "locator", new DatasetLocator(dir.toString()));
+        ReflectionTestUtils.setField(s, "databasePath", "ip-locations.csv");
+        ReflectionTestUtils.setField(s, "remoteFallback", false);
+        ReflectionTestUtils.setField(s, "cacheSize", 100);
+        ReflectionTestUtils.setField(s, "trustedProxiesProperty", trustedProxies);
+        s.init();
+        return s;
+    }
+
+    @Test
+    void forwardedForIsOnlyBelievedFromTrustedPeers() {
+        IPLocationService s = service("203.0.113.0/24, 2001:db8:ffff::/48");
+
+        // no header, or a peer that is not a proxy of ours
+        assertEquals("198.51.100.7", s.clientAddress("198.51.100.7", null));
+        assertEquals("198.51.100.7", s.clientAddress("198.51.100.7", "1.2.3.4"));
+
+        // internal and configured proxies are trusted
+        assertEquals("1.2.3.4", s.clientAddress("10.0.0.1", "1.2.3.4"));
+        assertEquals("1.2.3.4", s.clientAddress("203.0.113.9", " 1.2.3.4 "));
+    }
+
+    @Test
+    void chainIsWalkedFromTheRight() {
+        IPLocationService s = service("203.0.113.0/24, 2001:db8:ffff::/48");
+
+        // the client may forge anything left of the first untrusted hop
+        assertEquals("1.2.3.4", s.clientAddress("10.0.0.1", "6.6.6.6, 1.2.3.4, 203.0.113.5, 10.0.0.2"));
+        assertEquals("1.2.3.4", s.clientAddress("10.0.0.1", "6.6.6.6, 1.2.3.4:5555"));
+        assertEquals("2001:db8:0:0:0:0:0:1", s.clientAddress("10.0.0.1", "[2001:db8::1]:443, 2001:db8:ffff::2"));
+
+        // garbage stops the walk: the last hop vouched for is the answer
+        assertEquals("10.0.0.2", s.clientAddress("10.0.0.1", "1.2.3.4, unknown, 10.0.0.2"));
+        assertEquals("10.0.0.1", s.clientAddress("10.0.0.1", "unknown"));
+
+        // every hop trusted: the leftmost one
+        assertEquals("10.0.0.2", s.clientAddress("10.0.0.1", "10.0.0.2, 203.0.113.7"));
+    }
+
+    @Test
+    void localDatabaseAnswersLongestPrefix() throws Exception {
+        Files.writeString(dir.resolve("ip-locations.csv"), String.join("\n",
+                "network,start_ip,end_ip,city,country_name,country_code,latitude,longitude",
+                "81.0.0.0/8,,,Wide,Somewhere,SW,1,1",
+                ",81.2.0.0,81.2.1.255,Paris,France,FR,48.85,2.35",
+                "2a01:e0a::/32,,,Lyon,France,FR,45.76,4.83",
+                "bad/99,,,Nowhere,Nowhere,NW,0,0",
+                ""));
+        IPLocationService s = service("");
+
+        assertEquals("Paris", s.lookup("81.2.1.200").get("city"));
+        assertEquals("Wide", s.lookup("81.2.2.0").get("city"));
+        assertEquals("Lyon", s.lookup("2a01:e0a::5").get("city"));
+        assertEquals("not-in-database", s.lookup("82.0.0.1").get("error"));
+        assertEquals("reserved-address", s.lookup("10.0.0.1").get("error"));
+
+        Map<String, Object> stats = s.stats();
+        assertEquals(3, stats.get("ranges"));
+    }
+}
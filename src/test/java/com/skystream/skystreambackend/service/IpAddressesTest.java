@@ -0,0 +1,57 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpAddressesTest {
+
+    @Test
+    void parseAndFormatMatchInetAddress() throws Exception {
+        Random rnd = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            byte[] bytes = new byte[i % 2 == 0 ? 4 : 16];
+            rnd.nextBytes(bytes);
+            // skip IPv4-mapped IPv6, which parses to 4 bytes on purpose
+            if (bytes.length == 16) bytes[10] = 0;
+
+            String text = InetAddress.getByAddress(bytes).getHostAddress();
+            assertArrayEquals(bytes, IpAddresses.parse(text), text);
+            assertEquals(text, IpAddresses.format(IpAddresses.parse(text)));
+        }
+    }
+
+    @Test
+    void proxyHeaderForms() {
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, IpAddresses.parse(" 1.2.3.4:8080 "));
+        assertArrayEquals(IpAddresses.parse("2001:db8::1"), IpAddresses.parse("[2001:db8::1]:443"));
+        assertArrayEquals(IpAddresses.parse("fe80::1"), IpAddresses.parse("fe80::1%eth0"));
+        assertArrayEquals(new byte[]{(byte) 192, 0, 2, 1}, IpAddresses.parse("::ffff:192.0.2.1"));
+    }
+
+    @Test
+    void rejectsNonLiterals() {
+        for (String s : new String[]{null, "", "unknown", "example.com", "1.2.3", "1.2.3.4.5", "256.1.1.1",
+                "1234.1.1.1", "1..2.3", "-1.2.3.4", "[2001:db8::1", "2001:db8::g", "1.2.3.4:80:90x"}) {
+            assertNull(IpAddresses.parse(s), String.valueOf(s));
+        }
+    }
+
+    @Test
+    void internalAddresses() {
+        for (String s : new String[]{"10.1.2.3", "127.0.0.1", "0.0.0.0", "172.16.0.1", "172.31.255.255",
+                "192.168.1.1", "169.254.0.1", "100.64.0.1", "100.127.255.255", "::", "::1", "fd00::1", "fe80::1"}) {
+            assertTrue(IpAddresses.isInternal(IpAddresses.parse(s)), s);
+        }
+        for (String s : new String[]{"8.8.8.8", "172.32.0.1", "100.128.0.1", "192.169.0.1", "2001:db8::1", "fec0::1"}) {
+            assertFalse(IpAddresses.isInternal(IpAddresses.parse(s)), s);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KdTreeTest {
+
+    @Test
+    void nearestMatchesLinearScan() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 5; round++) {
+            List<GeoPoint> points = new ArrayList<>();
+            int n = 1 + rnd.nextInt(2000);
+            for (int i = 0; i < n; i++) points.add(randomPoint(rnd));
+            KdTree tree = new KdTree(points);
+            assertEquals(n, tree.size());
+
+            for (int q = 0; q < 200; q++) {
+                GeoPoint query = randomPoint(rnd);
+                int k = 1 + rnd.nextInt(8);
+
+                List<KdTree.Neighbour> got = tree.nearest(query, k);
+                double[] km = points.stream().mapToDouble(query::distanceKm).toArray();
+                List<Integer> expected = IntStream.range(0, n).boxed()
+                        .sorted(Comparator.comparingDouble(i -> km[i]))
+                        .limit(k)
+                        .toList();
+
+                assertEquals(expected.size(), got.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    // compared by distance: equidistant points may come in either order
+                    assertEquals(km[expected.get(i)], got.get(i).distanceKm(), 1e-6, "neighbour " + i + " of " + query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void antimeridianAndPolesNeedNoSpecialCase() {
+        List<GeoPoint> points = List.of(
+                new GeoPoint(0, 179.9), new GeoPoint(0, 170), new GeoPoint(89.9, 0), new GeoPoint(60, 0));
+        KdTree tree = new KdTree(points);
+
+        assertEquals(0, tree.nearest(new GeoPoint(0, -179.9), 1).get(0).id());
+        assertEquals(2, tree.nearest(new GeoPoint(89.9, 180), 1).get(0).id());
+        assertTrue(tree.nearest(new GeoPoint(0, -179.9), 1).get(0).distanceKm() < 30);
+    }
+
+    @Test
+    void kLargerThanTheTreeReturnsEveryPoint() {
+        List<GeoPoint> points = List.of(new GeoPoint(48.85, 2.35), new GeoPoint(51.5, -0.12), new GeoPoint(40.7, -74));
+        List<KdTree.Neighbour> got = new KdTree(points).nearest(new GeoPoint(50, 0), 10);
+
+        assertEquals(List.of(1, 0, 2), got.stream().map(KdTree.Neighbour::id).toList());
+        // London-Paris is about 340 km
+        assertEquals(340, new KdTree(points).nearest(new GeoPoint(51.5, -0.12), 2).get(1).distanceKm(), 10);
+    }
+
+    @Test
+    void exactPointIsAtDistanceZero() {
+        KdTree tree = new KdTree(List.of(new GeoPoint(-33.87, 151.21), new GeoPoint(-33.87, 151.21)));
+
+        List<KdTree.Neighbour> got = tree.nearest(new GeoPoint(-33.87, 151.21), 2);
+        assertEquals(0, got.get(0).distanceKm(), 1e-9);
+        assertEquals(0, got.get(1).distanceKm(), 1e-9);
+    }
+
+    @Test
+    void emptyTreeOrZeroK() {
+        assertTrue(new KdTree(List.of()).nearest(new GeoPoint(0, 0), 3).isEmpty());
+        assertTrue(new KdTree(List.of(new GeoPoint(1, 1))).nearest(new GeoPoint(0, 0), 0).isEmpty());
+    }
+
+    // uniform over the sphere, with some clustered duplicates
+    private static GeoPoint randomPoint(Random rnd) {
+        if (rnd.nextInt(10) == 0) return new GeoPoint(48.85, 2.35);
+        double lat = Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1));
+        double lon = rnd.nextDouble() * 360 - 180;
+        return new GeoPoint(lat, lon);
+    }
+}
@@ -0,0 +1,103 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocalCSVLoaderServiceTest {
+
+    private static final String GLOBAL = """
+            country,location_name,last_updated,temperature_celsius,condition_text
+            France,Paris,2024-05-03 12:00,3,Sunny
+            France,Lyon,2024-05-01 12:00,5,Rain
+            France,Paris,2024-05-01 12:00,1,Fog
+            Peru,Lima,2024-05-01 09:00,20,Clear
+            Peru,Cusco,2024-05-01 09:00,11,Snow
+            Peru,LIMA,2024-05-01 09:00,21,Cloudy
+            Chile,Santiago,,9,Wind
+            Chile,Santiago,,10,Calm
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void heapAndMappedPickTheSameRows() throws Exception {
+        LocalCSVLoaderService heap = loader(false);
+        LocalCSVLoaderService mapped = loader(true);
+
+        for (String q : new String[]{"paris", "lyon", "lima", "cusco", "santiago", "france", "peru", "chile"}) {
+            assertEquals(heap.findCurrent(q), mapped.findCurrent(q), q);
+        }
+        // the latest date, not the last row; equal dates go to the later row
+        assertEquals(3.0, heap.findCurrent("paris").get("temperature"));
+        assertEquals(21.0, heap.findCurrent("lima").get("temperature"));
+        assertEquals(10.0, heap.findCurrent("santiago").get("temperature"));
+        assertEquals("Paris", heap.findCurrent("france").get("city"));
+        assertEquals("LIMA", heap.findCurrent("peru").get("city"));
+        assertNull(heap.findCurrent("atlantis"));
+    }
+
+    @Test
+    void countryTakesItsMostRecentRowAcrossTables() throws Exception {
+        LocalCSVLoaderService heap = loader(false);
+        // the daily table is newer for France, but an older global row keeps Peru
+        Files.writeString(dir.resolve("data/daily.csv"), """
+                country,city,date,temperature
+                France,Nice,2024-06-01,25
+                Peru,Arequipa,2024-04-01,15
+                """);
+
+        assertEquals("Nice", heap.findCurrent("france").get("city"));
+        assertEquals("LIMA", heap.findCurrent("peru").get("city"));
+        assertEquals("Arequipa", heap.findCurrent("arequipa").get("city"));
+    }
+
+    @Test
+    void rowScansReadColumnsByCandidate() throws Exception {
+        String[][] columns = {{"city", "location_name"}, {"temperature_celsius"}, {"humidity"}};
+        for (boolean globalMapped : new boolean[]{false, true}) {
+            List<String> rows = new ArrayList<>();
+            loader(globalMapped).forEachGlobalRow(columns, v -> rows.add(String.join("|", v)));
+
+            // heap: every row; mapped: each location's latest row
+            List<String> expected = globalMapped
+                    ? List.of("Cusco|11|", "LIMA|21|", "Lyon|5|", "Paris|3|", "Santiago|10|")
+                    : List.of("Paris|3|", "Lyon|5|", "Paris|1|", "Lima|20|", "Cusco|11|", "LIMA|21|",
+                            "Santiago|9|", "Santiago|10|");
+            assertEquals(expected, rows, "mapped " + globalMapped);
+        }
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    private LocalCSVLoaderService loader(boolean globalMapped) throws Exception {
+        Files.createDirectories(dir.resolve("data"));
+        Files.writeString(dir.resolve("data/global.csv"), GLOBAL);
+        if (!Files.exists(dir.resolve("data/daily.csv"))) {
+            Files.writeString(dir.resolve("data/daily.csv"), "country,city,date,temperature\n");
+        }
+
+        DatasetSnapshots snapshots = new DatasetSnapshots();
+        ReflectionTestUtils.setField(snapshots, "enabled", false);
+
+        LocalCSVLoaderService loader = new LocalCSVLoaderService();
+        ReflectionTestUtils.setField(loader, "globalPath", "data/global.csv");
+        ReflectionTestUtils.setField(loader, "dailyPath", "data/daily.csv");
+        ReflectionTestUtils.setField(loader, "globalMapped", globalMapped);
+        ReflectionTestUtils.setField(loader, "locator", new DatasetLocator(dir.toString()));
+        ReflectionTestUtils.setField(loader, "snapshots", snapshots);
+        return loader;
+    }
+}
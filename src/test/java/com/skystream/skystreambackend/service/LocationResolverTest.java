@@ -0,0 +1,180 @@
+package com.skystream.skystreambackend.service;
+
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationResolverTest {
+
+    private static final String GLOBAL = """
+            country,location_name,region,country_code,latitude,longitude,last_updated,temperature_celsius
+            Ukraine,Kyiv,Kyiv City,UA,50.45,30.52,2024-05-01 12:00,15
+            United States of America,New York,New York,US,40.71,-74.01,2024-05-01 12:00,20
+            United Kingdom,London,City of London,GB,51.52,-0.11,2024-05-01 12:00,12
+            Canada,London,Ontario,CA,42.98,-81.25,2024-05-01 12:00,9
+            """;
+
+    private static final String ALIASES = """
+            # test seeds
+            nyc\tNew York
+            kiev\tKyiv, Ukraine
+            """;
+
+    @TempDir
+    Path dir;
+
+    private LocationResolver resolver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        resolver = resolver();
+    }
+
+    @Test
+    void seededAliasesShareTheCanonicalLocation() {
+        LocationResolver.Location ny = resolver.resolve("New York");
+        assertEquals("loc:new york|united states of america", ny.id());
+        assertEquals("New York", ny.query());
+
+        for (String q : new String[]{"NYC", " nyc ", "new  york", "New York, US", "New York, USA"}) {
+            assertEquals(ny, resolver.resolve(q), q);
+        }
+        // the seed's target goes through the "Name, Country" path too
+        assertEquals(resolver.resolve("Kyiv"), resolver.resolve("Kiev"));
+        assertEquals(3L, resolver.stats().get("aliasHits"));
+    }
+
+    @Test
+    void commaHintPicksAmongHomonyms() {
+        LocationResolver.Location canada = resolver.resolve("London, Canada");
+        assertEquals("loc:london|canada", canada.id());
+        // ambiguous name: the country goes upstream with it
+        assertEquals("London, Canada", canada.query());
+
+        assertEquals(canada, resolver.resolve("london, ON"));
+        assertEquals(canada, resolver.resolve("London, CA"));
+        assertEquals("loc:london|united kingdom", resolver.resolve("London, UK").id());
+        assertEquals("loc:london|united kingdom", resolver.resolve("London, GB").id());
+        assertTrue(resolver.resolve("London").query().startsWith("London, "));
+
+        // a qualifier that matches nothing leaves the query as typed
+        LocationResolver.Location unknown = resolver.resolve("London, Narnia");
+        assertTrue(unknown.asTyped());
+        assertEquals("q:london, narnia", unknown.id());
+        assertEquals("London, Narnia", unknown.query());
+    }
+
+    @Test
+    void coordinatesKeyOnTheGeohashOrTheExactText() {
+        LocationResolver.Location snapped = resolver.resolve("48.8566,2.3522", "u09tv");
+        assertEquals("geo:u09tv", snapped.id());
+        assertEquals("48.8566,2.3522", snapped.query());
+        assertFalse(snapped.asTyped());
+
+        // without a cell, dots matter: normalizing would merge 4.88,2.35 and 48.8,23.5
+        assertEquals("geo:48.8566,2.3522", resolver.resolve("48.8566,2.3522").id());
+        assertEquals("geo:4.88,2.35", resolver.resolve("4.88,2.35").id());
+        assertEquals("geo:", resolver.resolve("  ").id());
+    }
+
+    @Test
+    void learnsOnlyWhenUpstreamAgreesWithTheLocalCity() throws Exception {
+        // another country, another region, or no country at all
+        learn("Kyyiv", answer("Kyiv", "Russia", ""));
+        learn("Kyyiv", answer("Kyiv", "Ukraine", "Lviv Oblast"));
+        learn("Kyyiv", answer("Kyiv", "", ""));
+        // the qualifier matched nothing here, so upstream's answer can't be checked against it
+        learn("Kyyiv, Narnia", answer("Kyiv", "Ukraine", "Kyiv City"));
+        // two local Londons: which one upstream meant is unknown
+        learn("Londres", answer("London", "United Kingdom", "City of London"));
+        // upstream's city is not known locally
+        learn("Odesa", answer("Odesa", "Ukraine", "Odes'ka Oblast'"));
+
+        assertTrue(resolver.resolve("Kyyiv").asTyped());
+        assertTrue(resolver.resolve("Kyyiv, Narnia").asTyped());
+        assertTrue(resolver.resolve("Londres").asTyped());
+        assertTrue(resolver.resolve("Odesa").asTyped());
+        assertEquals(0, resolver.stats().get("learnedAliases"));
+
+        // WeatherAPI names the country and region, OpenWeather gives the code only
+        learn("Kyyiv", answer("Kyiv", "Ukraine", "Kyiv City"));
+        learn("Kijow", answer("Kyiv", "UA", null));
+        assertEquals(resolver.resolve("Kyiv"), resolver.resolve("Kyyiv"));
+        assertEquals(resolver.resolve("Kyiv"), resolver.resolve("kijów"));
+        assertEquals(2, resolver.stats().get("learnedAliases"));
+
+        // appended in the background, read back on the next start
+        Path learned = dir.resolve("learned.tsv");
+        for (int i = 0; i < 100 && lines(learned) < 2; i++) Thread.sleep(20);
+        assertEquals(resolver.resolve("Kyiv"), resolver().resolve("Kyyiv"));
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    private LocationResolver resolver() throws Exception {
+        Files.createDirectories(dir.resolve("data"));
+        Files.writeString(dir.resolve("data/global.csv"), GLOBAL);
+        Files.writeString(dir.resolve("data/daily.csv"), "country,city,date,temperature\n");
+        Files.writeString(dir.resolve("aliases.tsv"), ALIASES);
+        DatasetLocator locator = new DatasetLocator(dir.toString());
+
+        DatasetSnapshots snapshots = new DatasetSnapshots();
+        ReflectionTestUtils.setField(snapshots, "enabled", false);
+
+        LocalCSVLoaderService csv = new LocalCSVLoaderService();
+        ReflectionTestUtils.setField(csv, "globalPath", "data/global.csv");
+        ReflectionTestUtils.setField(csv, "dailyPath", "data/daily.csv");
+        ReflectionTestUtils.setField(csv, "locator", locator);
+        ReflectionTestUtils.setField(csv, "snapshots", snapshots);
+
+        BlockingExecutor blocking = new BlockingExecutor();
+        blocking.init();
+
+        CityAutocompleteService autocomplete = new CityAutocompleteService();
+        ReflectionTestUtils.setField(autocomplete, "topK", 10);
+        ReflectionTestUtils.setField(autocomplete, "maxLearned", 100);
+        ReflectionTestUtils.setField(autocomplete, "csvService", csv);
+        ReflectionTestUtils.setField(autocomplete, "blocking", blocking);
+        ReflectionTestUtils.setField(autocomplete, "fuzzy", new FuzzySearchService());
+        autocomplete.reload();
+
+        LocationResolver r = new LocationResolver();
+        ReflectionTestUtils.setField(r, "seedPath", "aliases.tsv");
+        ReflectionTestUtils.setField(r, "learnedFile", dir.resolve("learned.tsv").toString());
+        ReflectionTestUtils.setField(r, "learnEnabled", true);
+        ReflectionTestUtils.setField(r, "maxLearned", 100);
+        ReflectionTestUtils.setField(r, "locator", locator);
+        ReflectionTestUtils.setField(r, "autocomplete", autocomplete);
+        ReflectionTestUtils.setField(r, "weatherService", new WeatherService());
+        ReflectionTestUtils.setField(r, "blocking", blocking);
+        r.init();
+        return r;
+    }
+
+    private void learn(String query, WeatherResponse answer) {
+        resolver.learn(resolver.resolve(query), answer);
+    }
+
+    private static WeatherResponse answer(String city, String country, String region) {
+        WeatherResponse r = new WeatherResponse();
+        r.city = city;
+        r.country = country;
+        r.region = region;
+        return r;
+    }
+
+    private static long lines(Path file) throws Exception {
+        return Files.exists(file) ? Files.readAllLines(file).size() : 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedCsvFileTest {
+
+    private static final String[] LOCATION = {"location_name", "city"};
+    private static final String[] DATE = {"last_updated", "date"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void quotedFieldsKeepCommasNewlinesAndQuotes() throws Exception {
+        MappedCsvFile csv = open("""
+                country,location_name,last_updated,condition_text
+                France,Paris,2024-05-01,"Sunny, warm"
+                "Norway","Oslo",2024-05-01,"Light ""drizzle""
+                later: rain"
+                Italy,"Rome, Lazio",2024-05-01,Clear
+                """);
+
+        assertEquals(3, csv.rowCount());
+        assertEquals("Sunny, warm", csv.latest("paris").get("condition_text"));
+        assertEquals("Light \"drizzle\"\nlater: rain", csv.latest("oslo").get("condition_text"));
+        assertEquals("Clear", csv.latest("Rome, Lazio").get("condition_text"));
+        // the row after a quoted newline starts where it should
+        assertEquals("Italy", csv.latest("rome, lazio").get("country"));
+    }
+
+    @Test
+    void crlfAndMissingTrailingNewline() throws Exception {
+        MappedCsvFile csv = open("country,location_name,last_updated,temperature_celsius\r\n"
+                + "France,Paris,2024-05-01,18.5\r\n"
+                + "\r\n"
+                + "Peru,Lima,2024-05-01,22");
+
+        assertEquals(2, csv.rowCount());
+        assertEquals(List.of("country", "location_name", "last_updated", "temperature_celsius"), csv.header());
+        assertEquals("18.5", csv.latest("paris").get("temperature_celsius"));
+        assertEquals("22", csv.latest("lima").get("temperature_celsius"));
+    }
+
+    @Test
+    void latestRowIsByDateNotFilePosition() throws Exception {
+        MappedCsvFile csv = open("""
+                country,location_name,last_updated,temperature_celsius
+                France,Paris,2024-05-03 12:00,3
+                France,Paris,2024-05-01 12:00,1
+                France, paris ,2024-05-02 12:00,2
+                Japan,Tokyo,2024-05-01 09:00,20
+                """);
+
+        assertEquals("3", csv.latest("PARIS").get("temperature_celsius"));
+        assertEquals(2, csv.locationCount());
+        assertEquals("paris", csv.locationKey("France"));
+        assertEquals(List.of("France", "Japan"), csv.latestRows().stream().map(r -> r.get("country")).toList());
+    }
+
+    @Test
+    void equalDatesGoToTheLaterRow() throws Exception {
+        MappedCsvFile csv = open("""
+                country,location_name,last_updated,temperature_celsius
+                France,Paris,2024-05-01 12:00,1
+                France,Lyon,2024-05-01 12:00,5
+                France,PARIS,2024-05-01 12:00,2
+                Peru,Lima,,7
+                Peru,Lima,,8
+                """);
+
+        assertEquals("2", csv.latest("paris").get("temperature_celsius"));
+        // no date at all: the last row of the location
+        assertEquals("8", csv.latest("lima").get("temperature_celsius"));
+    }
+
+    @Test
+    void countryPointsAtItsMostRecentRow() throws Exception {
+        MappedCsvFile csv = open("""
+                country,location_name,last_updated
+                France,Paris,2024-05-03 12:00
+                France,Lyon,2024-05-01 12:00
+                Peru,Lima,2024-05-01
+                Peru,Cusco,2024-05-01
+                """);
+
+        // not the location that happens to come last in the file
+        assertEquals("paris", csv.locationKey("france"));
+        assertEquals("cusco", csv.locationKey("peru"));
+    }
+
+    @Test
+    void quotedHeaderNamesKeepTheirCommas() throws Exception {
+        MappedCsvFile csv = open("""
+                "country","location_name","wind, kph",last_updated
+                Norway,Oslo,12.5,2024-05-01
+                """);
+
+        assertEquals(List.of("country", "location_name", "wind, kph", "last_updated"), csv.header());
+        assertEquals("12.5", csv.latest("oslo").get("wind, kph"));
+        assertEquals("2024-05-01", csv.latest("oslo").get("last_updated"));
+    }
+
+    @Test
+    void rowsStraddlingChunksReadTheSameAsOneChunk() throws Exception {
+        StringBuilder sb = new StringBuilder("country,location_name,last_updated,condition_text\r\n");
+        for (int i = 0; i < 60; i++) {
+            sb.append("C").append(i % 7).append(",\"City ").append(i % 13).append(", Region\",2024-05-")
+                    .append(10 + i % 17).append(",\"line one\nline \"\"").append(i).append("\"\"\"\r\n");
+        }
+        Path file = Files.writeString(dir.resolve("global.csv"), sb.toString());
+        MappedCsvFile whole = MappedCsvFile.open(file, LOCATION, DATE);
+
+        // chunks of 8 bytes up to 128: every kind of byte ends up on a boundary somewhere
+        for (int bits = 3; bits <= 7; bits++) {
+            MappedCsvFile chunked = MappedCsvFile.open(file, LOCATION, DATE, bits);
+            assertEquals(whole.rowCount(), chunked.rowCount(), "bits " + bits);
+            assertEquals(whole.header(), chunked.header(), "bits " + bits);
+            assertEquals(whole.latestRows(), chunked.latestRows(), "bits " + bits);
+            for (int c = 0; c < 7; c++) assertEquals(whole.locationKey("C" + c), chunked.locationKey("C" + c));
+        }
+        assertEquals(13, whole.locationCount());
+        assertEquals("line one\nline \"12\"", whole.latest("city 12, region").get("condition_text"));
+    }
+
+    @Test
+    void shortRowsAndUnknownQueries() throws Exception {
+        MappedCsvFile csv = open("""
+                country,location_name,last_updated,temperature_celsius
+                Chile,Santiago
+                ,,2024-05-01,9
+                """);
+
+        // missing trailing fields read as empty; rows without a location are skipped
+        assertEquals("", csv.latest("santiago").get("temperature_celsius"));
+        assertEquals(1, csv.rowCount());
+        assertNull(csv.latest("atlantis"));
+        assertNull(csv.locationKey(""));
+    }
+
+    @Test
+    void locationColumnIsRequired() throws Exception {
+        Path file = Files.writeString(dir.resolve("bad.csv"), "country,temperature\nFrance,1\n");
+        assertThrows(IOException.class, () -> MappedCsvFile.open(file, LOCATION, DATE));
+    }
+
+    private MappedCsvFile open(String content) throws Exception {
+        Path file = Files.writeString(dir.resolve("global.csv"), content);
+        return MappedCsvFile.open(file, LOCATION, DATE);
+    }
+}
@@ -0,0 +1,138 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NegativeCacheTest {
+
+    private static final List<String> PROVIDERS = List.of("weatherapi", "openweather");
+
+    @Test
+    void knownMissOnlyWhenEveryProviderRejected() {
+        NegativeCache cache = cache(true, 60, 1000, 0.01);
+
+        // one provider rejected, the other failed for another reason
+        cache.recordRejection("weatherapi", "Asdf", rejection(404));
+        cache.recordRejection("openweather", "Asdf", rejection(503));
+        cache.recordRejection("openweather", "Asdf", new RuntimeException("timeout"));
+        cache.recordMiss("Asdf", PROVIDERS);
+        assertFalse(cache.isKnownMiss("asdf"));
+
+        cache.recordRejection("weatherapi", "Asdf", rejection(404));
+        cache.recordRejection("openweather", " ASDF ", rejection(400));
+        cache.recordMiss("asdf", PROVIDERS);
+        assertTrue(cache.isKnownMiss("  Asdf"));
+
+        // a settled request leaves nothing pending for the next one
+        cache.recordRejection("weatherapi", "qwerty", rejection(404));
+        cache.settle("qwerty");
+        cache.recordRejection("openweather", "qwerty", rejection(404));
+        cache.recordMiss("qwerty", PROVIDERS);
+        assertFalse(cache.isKnownMiss("qwerty"));
+
+        // no providers configured: nothing proves the query unknown
+        cache.recordMiss("zxcv", List.of());
+        assertFalse(cache.isKnownMiss("zxcv"));
+    }
+
+    @Test
+    void expiryIsNotAFalsePositiveAndRotationPurges() throws Exception {
+        NegativeCache cache = cache(true, 60, 1000, 0.01);
+        miss(cache, "asdf");
+        assertTrue(cache.isKnownMiss("asdf"));
+
+        // one TTL later: expired, but its generation is still in the filter
+        age(cache, 61_000);
+        assertFalse(cache.isKnownMiss("asdf"));
+        Map<String, Object> stats = cache.stats();
+        assertEquals(1, stats.get("entries"));
+        assertEquals(0L, stats.get("falsePositives"));
+        assertEquals(1L, stats.get("hits"));
+
+        // two TTLs: the generation that held it is gone, and so is the entry
+        age(cache, 61_000);
+        assertFalse(cache.isKnownMiss("asdf"));
+        stats = cache.stats();
+        assertEquals(0, stats.get("entries"));
+        assertEquals(0L, stats.get("falsePositives"));
+        assertEquals(0L, stats.get("filterInsertions"));
+    }
+
+    @Test
+    void falsePositivesAreConfirmedAwayAndMeasured() {
+        // a small, loose filter so false positives actually happen
+        NegativeCache cache = cache(true, 60, 50, 0.3);
+        for (int i = 0; i < 50; i++) miss(cache, "nowhere-" + i);
+        miss(cache, "one-too-many");
+
+        int lookups = 2000;
+        for (int i = 0; i < lookups; i++) assertFalse(cache.isKnownMiss("city-" + i));
+        assertFalse(cache.isKnownMiss("one-too-many"));
+
+        Map<String, Object> stats = cache.stats();
+        assertEquals(50, stats.get("entries"));
+        long falses = (long) stats.get("falsePositives");
+        assertTrue(falses > 0 && falses < lookups * 0.6, "false positives " + falses);
+        assertEquals(Math.round(100_000.0 * falses / (lookups + 1)) / 100_000.0, stats.get("measuredFpp"));
+    }
+
+    @Test
+    void disabledRemembersNothing() {
+        NegativeCache cache = cache(false, 60, 1000, 0.01);
+        miss(cache, "asdf");
+        assertFalse(cache.isKnownMiss("asdf"));
+        assertEquals(0L, cache.stats().get("lookups"));
+        assertEquals(0, cache.stats().get("entries"));
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    private static NegativeCache cache(boolean enabled, long ttlSeconds, int maxEntries, double fpp) {
+        NegativeCache cache = new NegativeCache();
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "fpp", fpp);
+        cache.init();
+        return cache;
+    }
+
+    private static void miss(NegativeCache cache, String query) {
+        for (String provider : PROVIDERS) cache.recordRejection(provider, query, rejection(404));
+        cache.recordMiss(query, PROVIDERS);
+    }
+
+    private static WebClientResponseException rejection(int status) {
+        return WebClientResponseException.create(status, HttpStatus.valueOf(status).getReasonPhrase(), null, null, null);
+    }
+
+    // moves every timestamp the cache holds back, as if the time had passed
+    @SuppressWarnings("unchecked")
+    private static void age(NegativeCache cache, long millis) throws Exception {
+        Map<String, Long> expiries = (Map<String, Long>) ReflectionTestUtils.getField(cache, "expiries");
+        expiries.replaceAll((k, v) -> v - millis);
+
+        Object g = ReflectionTestUtils.getField(cache, "filters");
+        RecordComponent[] parts = g.getClass().getRecordComponents();
+        Object current = parts[0].getAccessor().invoke(g);
+        Object previous = parts[1].getAccessor().invoke(g);
+        long rotatedAt = (long) parts[2].getAccessor().invoke(g);
+
+        Constructor<?> c = g.getClass().getDeclaredConstructors()[0];
+        c.setAccessible(true);
+        ReflectionTestUtils.setField(cache, "filters", c.newInstance(current, previous, rotatedAt - millis));
+    }
+}
@@ -0,0 +1,26 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenWeatherServiceTest {
+
+    @Test
+    void coordinatesGoAsLatLonNamesAsQ() {
+        OpenWeatherService service = new OpenWeatherService();
+        ReflectionTestUtils.setField(service, "apiKey", "k");
+        ReflectionTestUtils.setField(service, "currentUrl", "https://api.example/data/2.5/weather");
+
+        assertEquals("https://api.example/data/2.5/weather?lat=48.8566&lon=2.3522&appid=k&units=metric",
+                service.currentUri("48.8566, 2.3522").toString());
+        assertEquals("https://api.example/data/2.5/weather?lat=-33.9&lon=-70.0&appid=k&units=metric",
+                service.currentUri("-33.9,-70").toString());
+        assertEquals("https://api.example/data/2.5/weather?q=S%C3%A3o%20Paulo,%20BR&appid=k&units=metric",
+                service.currentUri("São Paulo, BR").toString());
+        // out of range: not a coordinate, so it stays a query
+        assertEquals("https://api.example/data/2.5/weather?q=95,10&appid=k&units=metric",
+                service.currentUri("95,10").toString());
+    }
+}
@@ -0,0 +1,187 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProviderHealthServiceTest {
+
+    @Test
+    void consecutiveFailuresOpenTheCircuit() {
+        ProviderHealthService health = health();
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) assertNull(health.guard("weatherapi", failing(calls)).block());
+        assertEquals("OPEN", state(health, "weatherapi"));
+
+        // open: the call is not even subscribed
+        assertNull(health.guard("weatherapi", Mono.fromSupplier(() -> calls.incrementAndGet())).block());
+        assertEquals(3, calls.get());
+        assertEquals(1L, stats(health, "weatherapi").get("skipped"));
+
+        // a success in between resets the streak
+        ProviderHealthService other = health();
+        for (int i = 0; i < 10; i++) {
+            call(other, i % 2 == 0 ? failing(calls) : Mono.just(1));
+        }
+        assertEquals("CLOSED", state(other, "weatherapi"));
+    }
+
+    @Test
+    void rejectedQueryIsAnAnswerNotAFailure() {
+        ProviderHealthService health = health();
+
+        for (int i = 0; i < 5; i++) {
+            assertNull(health.guard("weatherapi", Mono.error(WebClientResponseException.create(
+                    404, "Not Found", null, null, null))).block());
+        }
+        assertEquals("CLOSED", state(health, "weatherapi"));
+        assertEquals(0L, stats(health, "weatherapi").get("failures"));
+
+        // an outage is not a rejection
+        for (int i = 0; i < 3; i++) {
+            health.guard("weatherapi", Mono.error(WebClientResponseException.create(
+                    503, "Service Unavailable", null, null, null))).block();
+        }
+        assertEquals("OPEN", state(health, "weatherapi"));
+    }
+
+    @Test
+    void halfOpenProbeClosesOrReopens() {
+        ProviderHealthService health = health();
+        trip(health);
+        openTimeElapses(health);
+
+        // one probe at a time
+        Sinks.One<Integer> probe = Sinks.one();
+        health.guard("weatherapi", probe.asMono()).subscribe();
+        assertEquals("HALF_OPEN", state(health, "weatherapi"));
+        AtomicInteger second = new AtomicInteger();
+        assertNull(health.guard("weatherapi", Mono.fromSupplier(second::incrementAndGet)).block());
+        assertEquals(0, second.get());
+
+        probe.tryEmitValue(1);
+        assertEquals("CLOSED", state(health, "weatherapi"));
+
+        // a failed probe opens it again at once
+        trip(health);
+        openTimeElapses(health);
+        health.guard("weatherapi", Mono.empty()).block();
+        assertEquals("OPEN", state(health, "weatherapi"));
+        assertEquals(3L, stats(health, "weatherapi").get("opened"));
+    }
+
+    @Test
+    void cancelledProbeGivesItsSlotBack() {
+        ProviderHealthService health = health();
+        trip(health);
+        openTimeElapses(health);
+
+        // a hedge loser: cancelled with no verdict
+        Disposable probe = health.guard("weatherapi", Sinks.<Integer>one().asMono()).subscribe();
+        probe.dispose();
+        assertEquals("HALF_OPEN", state(health, "weatherapi"));
+
+        // the next probe gets through and decides
+        assertEquals(7, health.guard("weatherapi", Mono.just(7)).block());
+        assertEquals("CLOSED", state(health, "weatherapi"));
+    }
+
+    @Test
+    void errorRateOpensOnlyAfterMinCalls() {
+        ProviderHealthService health = health();
+        ReflectionTestUtils.setField(health, "failureThreshold", 100);
+        ReflectionTestUtils.setField(health, "minCalls", 10);
+
+        // fail, fail, ok: the streak never reaches the threshold, the error rate climbs
+        int calls = 0;
+        do {
+            call(health, calls % 3 == 2 ? Mono.just(1) : Mono.empty());
+            calls++;
+        } while (!"OPEN".equals(state(health, "weatherapi")) && calls < 100);
+        assertEquals("OPEN", state(health, "weatherapi"));
+        assertEquals(10, calls, "opens on the first call that reaches min-calls");
+    }
+
+    @Test
+    void orderPutsOpenLastAndFastestFirst() {
+        ProviderHealthService health = health();
+        List<String> given = List.of("weatherapi", "openweather", "other");
+
+        // no samples yet: the given order
+        assertEquals(given, health.order(given));
+
+        health.guard("openweather", Mono.just(1)).block();
+        health.guard("weatherapi", Mono.just(1).delayElement(Duration.ofMillis(50))).block();
+        assertEquals(List.of("openweather", "weatherapi", "other"), health.order(given));
+
+        trip(health, "openweather");
+        assertEquals(List.of("weatherapi", "other", "openweather"), health.order(given));
+
+        ReflectionTestUtils.setField(health, "adaptiveOrder", false);
+        assertEquals(List.of("weatherapi", "other", "openweather"), health.order(given));
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    private static ProviderHealthService health() {
+        ProviderHealthService health = new ProviderHealthService();
+        ReflectionTestUtils.setField(health, "failureThreshold", 3);
+        ReflectionTestUtils.setField(health, "errorRateThreshold", 0.5);
+        ReflectionTestUtils.setField(health, "minCalls", 20);
+        ReflectionTestUtils.setField(health, "openSeconds", 30L);
+        ReflectionTestUtils.setField(health, "halfOpenProbes", 1);
+        ReflectionTestUtils.setField(health, "alpha", 0.2);
+        ReflectionTestUtils.setField(health, "adaptiveOrder", true);
+        return health;
+    }
+
+    private static void call(ProviderHealthService health, Mono<Integer> call) {
+        health.guard("weatherapi", call).block();
+    }
+
+    private static Mono<Integer> failing(AtomicInteger calls) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("down"));
+        });
+    }
+
+    private static void trip(ProviderHealthService health) {
+        trip(health, "weatherapi");
+    }
+
+    private static void trip(ProviderHealthService health, String provider) {
+        for (int i = 0; i < 3; i++) health.guard(provider, Mono.<Integer>empty()).block();
+        assertEquals("OPEN", state(health, provider));
+    }
+
+    // the open period is over: the next call is let through as a probe
+    @SuppressWarnings("unchecked")
+    private static void openTimeElapses(ProviderHealthService health) {
+        Map<String, Object> breakers = (Map<String, Object>) ReflectionTestUtils.getField(health, "breakers");
+        ReflectionTestUtils.setField(breakers.get("weatherapi"), "openUntil", 0L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(ProviderHealthService health, String provider) {
+        return (Map<String, Object>) health.stats().get(provider);
+    }
+
+    private static String state(ProviderHealthService health, String provider) {
+        return String.valueOf(stats(health, provider).get("state"));
+    }
+}
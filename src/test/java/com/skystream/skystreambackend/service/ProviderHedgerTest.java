@@ -0,0 +1,56 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProviderHedgerTest {
+
+    @Test
+    void eachPrimaryHasItsOwnDelay() {
+        ProviderHedger hedger = hedger();
+
+        // answers within a millisecond: the delay drops to the floor for that provider only
+        for (int i = 0; i < 32; i++) {
+            assertEquals("a", hedger.hedge("fast", Mono.just("a"), () -> Mono.just("b")).block());
+        }
+        assertEquals(50, hedger.currentDelayMs("fast"));
+        assertEquals(800, hedger.currentDelayMs("slow"));
+
+        // a primary that fails gives no sample: the secondary's latency is not the primary's
+        for (int i = 0; i < 32; i++) {
+            assertEquals("b", hedger.hedge("slow", Mono.<String>empty(), () -> Mono.just("b")).block());
+        }
+        assertEquals(800, hedger.currentDelayMs("slow"));
+
+        Map<String, Object> stats = hedger.stats();
+        assertEquals(Map.of("fast", 50L, "slow", 800L), stats.get("hedgeDelayMs"));
+        assertEquals(32L, stats.get("primaryWins"));
+        assertEquals(32L, stats.get("failovers"));
+    }
+
+    @Test
+    void trackedPrimaryFeedsTheSameWindow() {
+        ProviderHedger hedger = hedger();
+        for (int i = 0; i < 32; i++) {
+            hedger.track("fast").primary(Mono.just("a")).block();
+        }
+        assertEquals(50, hedger.currentDelayMs("fast"));
+        assertEquals(50, hedger.track("fast").delayMs());
+        assertEquals(800, hedger.track("slow").delayMs());
+    }
+
+    private static ProviderHedger hedger() {
+        ProviderHedger h = new ProviderHedger();
+        ReflectionTestUtils.setField(h, "enabled", true);
+        ReflectionTestUtils.setField(h, "percentile", 95.0);
+        ReflectionTestUtils.setField(h, "initialDelayMs", 800L);
+        ReflectionTestUtils.setField(h, "minDelayMs", 50L);
+        ReflectionTestUtils.setField(h, "maxDelayMs", 3000L);
+        return h;
+    }
+}
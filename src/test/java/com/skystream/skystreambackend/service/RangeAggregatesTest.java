@@ -0,0 +1,199 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangeAggregatesTest {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    void rangeStatsMatchLinearScan() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 10; round++) {
+            Series s = series(rnd, 1 + rnd.nextInt(400));
+            RangeAggregates agg = new RangeAggregates(s.days, s.values);
+
+            for (int q = 0; q < 300; q++) {
+                int from = s.first - 5 + rnd.nextInt(s.span + 10);
+                int to = from + rnd.nextInt(s.span + 5) - 3;
+
+                RangeAggregates.Stats got = agg.range(from, to);
+                List<Double> in = s.valuesIn(from, to);
+                assertEquals(in.size(), got.count(), "count " + from + ".." + to);
+                if (in.isEmpty()) {
+                    assertTrue(Double.isNaN(got.mean()));
+                    continue;
+                }
+                assertEquals(in.stream().mapToDouble(Double::doubleValue).min().getAsDouble(), got.min(), EPS);
+                assertEquals(in.stream().mapToDouble(Double::doubleValue).max().getAsDouble(), got.max(), EPS);
+                assertEquals(in.stream().mapToDouble(Double::doubleValue).sum(), got.sum(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void percentilesMatchSortedRange() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 10; round++) {
+            Series s = series(rnd, 1 + rnd.nextInt(300));
+            RangeAggregates agg = new RangeAggregates(s.days, s.values);
+
+            for (int q = 0; q < 200; q++) {
+                int from = s.first + rnd.nextInt(s.span);
+                int to = from + rnd.nextInt(s.span);
+                double p = rnd.nextInt(5) == 0 ? new double[]{0, 50, 100}[rnd.nextInt(3)] : rnd.nextDouble() * 100;
+
+                double[] in = s.valuesIn(from, to).stream().mapToDouble(Double::doubleValue).toArray();
+                double got = agg.percentile(from, to, p);
+                if (in.length == 0) {
+                    assertTrue(Double.isNaN(got));
+                    continue;
+                }
+                Arrays.sort(in);
+                // nearest rank
+                int rank = Math.min(in.length, Math.max(1, (int) Math.ceil(p / 100.0 * in.length)));
+                assertEquals(in[rank - 1], got, EPS, "p" + p + " of " + from + ".." + to);
+            }
+        }
+    }
+
+    @Test
+    void bucketsMatchGroupedScan() {
+        Random rnd = new Random(99);
+        Series s = series(rnd, 500);
+        RangeAggregates agg = new RangeAggregates(s.days, s.values);
+
+        for (RangeAggregates.Bucket bucket : RangeAggregates.Bucket.values()) {
+            for (int q = 0; q < 50; q++) {
+                int from = s.first + rnd.nextInt(s.span);
+                int to = from + rnd.nextInt(s.span);
+
+                List<RangeAggregates.BucketStats> got = agg.buckets(from, to, bucket);
+                List<LocalDate> starts = new ArrayList<>();
+                for (int i = 0; i < s.days.length; i++) {
+                    if (s.days[i] < from || s.days[i] > to || Double.isNaN(s.values[i])) continue;
+                    LocalDate start = start(s.days[i], bucket);
+                    if (starts.isEmpty() || !starts.get(starts.size() - 1).equals(start)) starts.add(start);
+                }
+                assertEquals(starts.size(), got.size());
+                for (int b = 0; b < starts.size(); b++) {
+                    LocalDate start = starts.get(b);
+                    assertEquals(start, got.get(b).start());
+
+                    // the bucket's part of the range
+                    int bFrom = Math.max(from, (int) start.toEpochDay());
+                    int bTo = Math.min(to, (int) next(start, bucket).toEpochDay() - 1);
+                    List<Double> in = s.valuesIn(bFrom, bTo);
+                    assertEquals(in.size(), got.get(b).stats().count());
+                    assertEquals(in.stream().mapToDouble(Double::doubleValue).sum(), got.get(b).stats().sum(), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    void missingValuesAndRepeatedDaysAreSkipped() {
+        RangeAggregates agg = new RangeAggregates(new int[]{1, 2, 2, 3, 3, 4}, new double[]{5, Double.NaN, 7, 1, 8, 9});
+
+        // day 2: NaN skipped, so 7 is its value; day 3: the later 8 is dropped
+        assertEquals(4, agg.size());
+        assertEquals(8, agg.range(2, 3).sum(), EPS);
+        assertEquals(1, agg.range(1, 4).min(), EPS);
+        assertEquals(0, agg.range(10, 20).count());
+    }
+
+    @Test
+    void emptyAndInvertedRanges() {
+        RangeAggregates agg = new RangeAggregates(new int[]{10, 11, 12}, new double[]{3, 1, 2});
+
+        assertEquals(0, agg.range(12, 10).count());
+        assertTrue(Double.isNaN(agg.percentile(12, 10, 50)));
+        assertTrue(agg.buckets(12, 10, RangeAggregates.Bucket.WEEK).isEmpty());
+
+        RangeAggregates none = new RangeAggregates(new int[0], new double[0]);
+        assertEquals(0, none.range(0, 100).count());
+        assertEquals(ColumnarTable.MISSING_INT, none.firstDay());
+        assertTrue(none.buckets(0, 100, RangeAggregates.Bucket.MONTH).isEmpty());
+    }
+
+    @Test
+    void percentileEndsAndSingleDay() {
+        RangeAggregates agg = new RangeAggregates(new int[]{10, 11, 12, 13}, new double[]{4, -1, 9, 2});
+
+        // nearest rank: p0 is the minimum, p100 the maximum, p50 of four the second value
+        assertEquals(-1, agg.percentile(10, 13, 0), EPS);
+        assertEquals(9, agg.percentile(10, 13, 100), EPS);
+        assertEquals(2, agg.percentile(10, 13, 50), EPS);
+        assertEquals(9, agg.percentile(12, 12, 1), EPS);
+        assertEquals(9, agg.range(12, 12).mean(), EPS);
+    }
+
+    @Test
+    void weeksStartOnMondayAndMonthsOnTheFirst() {
+        // Sunday 2024-03-31 and Monday 2024-04-01
+        int sunday = (int) LocalDate.of(2024, 3, 31).toEpochDay();
+        RangeAggregates agg = new RangeAggregates(new int[]{sunday, sunday + 1}, new double[]{1, 2});
+
+        List<RangeAggregates.BucketStats> weeks = agg.buckets(sunday, sunday + 1, RangeAggregates.Bucket.WEEK);
+        assertEquals(List.of(LocalDate.of(2024, 3, 25), LocalDate.of(2024, 4, 1)),
+                weeks.stream().map(RangeAggregates.BucketStats::start).toList());
+
+        List<RangeAggregates.BucketStats> months = agg.buckets(sunday, sunday + 1, RangeAggregates.Bucket.MONTH);
+        assertEquals(List.of(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 1)),
+                months.stream().map(RangeAggregates.BucketStats::start).toList());
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    // ascending days with gaps, repeated days and missing values, as the history CSVs have
+    private record Series(int[] days, double[] values, int first, int span) {
+
+        // values the aggregates keep: first non-NaN per day, within [from, to]
+        List<Double> valuesIn(int from, int to) {
+            List<Double> out = new ArrayList<>();
+            int lastDay = Integer.MIN_VALUE;
+            for (int i = 0; i < days.length; i++) {
+                if (Double.isNaN(values[i])) continue;
+                if (days[i] == lastDay) continue;
+                lastDay = days[i];
+                if (days[i] >= from && days[i] <= to) out.add(values[i]);
+            }
+            return out;
+        }
+    }
+
+    private static Series series(Random rnd, int n) {
+        int[] days = new int[n];
+        double[] values = new double[n];
+        int day = (int) LocalDate.of(2023, 1, 1).toEpochDay() + rnd.nextInt(60);
+        int first = day;
+        for (int i = 0; i < n; i++) {
+            days[i] = day;
+            values[i] = rnd.nextInt(25) == 0 ? Double.NaN : Math.round((rnd.nextDouble() * 50 - 15) * 10) / 10.0;
+            // mostly consecutive days, some gaps and some repeats
+            int r = rnd.nextInt(10);
+            day += r == 0 ? 0 : r == 1 ? 2 + rnd.nextInt(10) : 1;
+        }
+        return new Series(days, values, first, Math.max(1, days[n - 1] - first + 1));
+    }
+
+    private static LocalDate start(int day, RangeAggregates.Bucket bucket) {
+        LocalDate d = LocalDate.ofEpochDay(day);
+        return bucket == RangeAggregates.Bucket.WEEK ? d.minusDays(d.getDayOfWeek().getValue() - 1) : d.withDayOfMonth(1);
+    }
+
+    private static LocalDate next(LocalDate start, RangeAggregates.Bucket bucket) {
+        return bucket == RangeAggregates.Bucket.WEEK ? start.plusWeeks(1) : start.plusMonths(1);
+    }
+}
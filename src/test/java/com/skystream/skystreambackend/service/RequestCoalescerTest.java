@@ -0,0 +1,126 @@
+package com.skystream.skystreambackend.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    @Test
+    void concurrentCallsShareOneUpstreamCall() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Upstream upstream = new Upstream();
+
+        List<String> got = new ArrayList<>();
+        for (String q : new String[]{"Paris", " paris", "PARIS "}) {
+            coalescer.execute("weatherapi", "current", q, upstream::call).subscribe(got::add);
+        }
+        assertEquals(1, upstream.calls.get());
+        assertEquals(1, inFlight(coalescer));
+
+        upstream.sink.tryEmitValue("sunny");
+        assertEquals(List.of("sunny", "sunny", "sunny"), got);
+        assertEquals(0, inFlight(coalescer));
+
+        Map<String, Object> stats = coalescer.stats();
+        assertEquals(Map.of("weatherapi:current", 1L), stats.get("executed"));
+        assertEquals(Map.of("weatherapi:current", 2L), stats.get("collapsed"));
+    }
+
+    @Test
+    void differentEndpointsOrProvidersDoNotShare() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Upstream upstream = new Upstream();
+
+        coalescer.execute("weatherapi", "current", "paris", upstream::call).subscribe();
+        coalescer.execute("weatherapi", "forecast", "paris", upstream::call).subscribe();
+        coalescer.execute("openweather", "current", "paris", upstream::call).subscribe();
+        coalescer.execute("weatherapi", "current", "oslo", upstream::call).subscribe();
+
+        assertEquals(4, upstream.calls.get());
+    }
+
+    @Test
+    void aFinishedCallIsNotReused() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, coalescer.execute("p", "e", "q", () -> Mono.just(calls.incrementAndGet())).block());
+        assertEquals(2, coalescer.execute("p", "e", "q", () -> Mono.just(calls.incrementAndGet())).block());
+    }
+
+    @Test
+    void errorsReachEveryJoinerAndClearTheKey() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Upstream upstream = new Upstream();
+
+        List<Throwable> errors = new ArrayList<>();
+        coalescer.execute("p", "e", "q", upstream::call).subscribe(v -> {}, errors::add);
+        coalescer.execute("p", "e", "q", upstream::call).subscribe(v -> {}, errors::add);
+
+        upstream.sink.tryEmitError(new IllegalStateException("down"));
+        assertEquals(2, errors.size());
+        assertEquals(0, inFlight(coalescer));
+    }
+
+    @Test
+    void sharedCallIsCancelledOnlyWhenEveryCallerCancelled() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Upstream upstream = new Upstream();
+
+        List<String> got = new ArrayList<>();
+        Disposable leader = coalescer.execute("p", "e", "q", upstream::call).subscribe(got::add);
+        Disposable follower = coalescer.execute("p", "e", "q", upstream::call).subscribe(got::add);
+
+        // the caller that started the call goes away; the joiner still gets the answer
+        leader.dispose();
+        assertFalse(upstream.cancelled.get());
+        upstream.sink.tryEmitValue("late");
+        assertEquals(List.of("late"), got);
+        assertTrue(follower.isDisposed());
+
+        // everyone goes away: the upstream call is cancelled and the key freed
+        Upstream second = new Upstream();
+        Disposable a = coalescer.execute("p", "e", "q2", second::call).subscribe();
+        Disposable b = coalescer.execute("p", "e", "q2", second::call).subscribe();
+        a.dispose();
+        b.dispose();
+        assertTrue(second.cancelled.get());
+        assertEquals(0, inFlight(coalescer));
+
+        // and the next caller starts a new one
+        coalescer.execute("p", "e", "q2", second::call).subscribe();
+        assertEquals(2, second.calls.get());
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    // an upstream call that completes when the test says so
+    private static final class Upstream {
+        final Sinks.One<String> sink = Sinks.one();
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        Mono<String> call() {
+            calls.incrementAndGet();
+            return sink.asMono().doOnCancel(() -> cancelled.set(true));
+        }
+    }
+
+    private static int inFlight(RequestCoalescer coalescer) {
+        return (int) coalescer.stats().get("inFlight");
+    }
+}
@@ -0,0 +1,153 @@
+package com.skystream.skystreambackend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamingWeatherParserTest {
+
+    private final StreamingWeatherParser parser = new StreamingWeatherParser();
+    private final WeatherMapper mapper = new WeatherMapper();
+    private final ObjectMapper json = new ObjectMapper();
+
+    private static final String WEATHERAPI_FORECAST = """
+            {"location": {"name": "Paris", "region": "Ile-de-France", "country": "France", "lat": 48.87, "lon": 2.33},
+             "current": {"temp_c": 21.5, "humidity": 40, "wind_kph": 13.0, "uv": 5.0, "vis_km": 10.0,
+                         "condition": {"text": "Sunny", "icon": "//cdn/113.png", "code": 1000},
+                         "air_quality": {"co": 230.3, "pm2_5": 8.1, "us-epa-index": 2, "gb-defra-index": 1}},
+             "forecast": {"forecastday": [
+                {"date": "2024-06-10",
+                 "day": {"maxtemp_c": 24.1, "mintemp_c": 13, "condition": {"text": "Sunny", "icon": "x"}},
+                 "astro": {"sunrise": "05:47 AM", "sunset": "09:54 PM"},
+                 "hour": [{"time": "2024-06-10 00:00", "temp_c": 15.2, "condition": {"text": "Clear", "icon": "c"}},
+                          {"time": "2024-06-10 01:00", "temp_c": 14, "condition": {"text": "Mist"}}]},
+                {"date": "2024-06-11",
+                 "day": {"maxtemp_c": 22, "mintemp_c": 12.5, "condition": {"text": "Rain"}},
+                 "astro": {"sunrise": "05:46 AM", "sunset": "09:55 PM"},
+                 "hour": [{"time": "2024-06-11 00:00", "temp_c": 11}]}]}}
+            """;
+
+    @Test
+    void weatherApiForecastMatchesMapper() throws Exception {
+        WeatherResponse streamed = assertSameAsMapper(WEATHERAPI_FORECAST);
+
+        assertEquals(2, streamed.epaIndex);
+        assertEquals(75, streamed.aqi);
+        assertEquals(2, streamed.hourly.size());
+        assertEquals(2, streamed.daily.size());
+        assertEquals("05:47 AM", streamed.sunrise);
+        assertEquals("France", streamed.country);
+        assertEquals("Ile-de-France", streamed.region);
+    }
+
+    @Test
+    void everyEpaIndexMapsLikeMapper() throws Exception {
+        for (String epa : new String[]{"1", "2", "3", "4", "5", "6", "7", "0", "null", "\"high\"", "\"3\""}) {
+            assertSameAsMapper("""
+                    {"location": {"name": "Oslo"},
+                     "current": {"temp_c": 1, "air_quality": {"us-epa-index": %s}}}
+                    """.formatted(epa));
+        }
+    }
+
+    @Test
+    void currentOnlyAndMissingFields() throws Exception {
+        // current.json: no forecast at all
+        WeatherResponse current = assertSameAsMapper("""
+                {"location": {"name": "Kyiv"}, "current": {"temp_c": -3.5, "condition": {"text": "Snow"}}}
+                """);
+        assertNull(current.hourly);
+        assertNull(current.daily);
+
+        // missing name, condition, air quality; numbers as strings; odd types
+        assertSameAsMapper("""
+                {"location": {}, "current": {"temp_c": "7.5", "humidity": "n/a", "wind_kph": null, "uv": [1],
+                 "condition": "Sunny"}}
+                """);
+        assertSameAsMapper("""
+                {"location": {"name": "Lima"}, "current": {}}
+                """);
+    }
+
+    @Test
+    void emptyForecastDays() throws Exception {
+        assertSameAsMapper("""
+                {"location": {"name": "Rome"}, "current": {"temp_c": 20},
+                 "forecast": {"forecastday": []}}
+                """);
+
+        // first day without astro, hours or day block
+        WeatherResponse bare = assertSameAsMapper("""
+                {"location": {"name": "Rome"}, "current": {"temp_c": 20},
+                 "forecast": {"forecastday": [{"date": "2024-06-10"}, {"date": "2024-06-11", "day": {}}]}}
+                """);
+        assertEquals("", bare.sunrise);
+        assertEquals(0, bare.hourly.size());
+        assertEquals(2, bare.daily.size());
+    }
+
+    @Test
+    void openWeatherMatchesMapper() throws Exception {
+        WeatherResponse streamed = assertSameAsMapper("""
+                {"coord": {"lon": 2.35, "lat": 48.85},
+                 "weather": [{"id": 800, "main": "Clear", "description": "clear sky", "icon": "01d"},
+                             {"id": 701, "description": "mist"}],
+                 "main": {"temp": 21.3, "feels_like": 20.9, "humidity": 41},
+                 "wind": {"speed": 4.12, "deg": 250},
+                 "sys": {"country": "FR", "sunrise": 1718077642},
+                 "name": "Paris", "cod": 200}
+                """);
+        // m/s to km/h, one decimal
+        assertEquals(14.8, streamed.wind);
+        assertEquals("clear sky", streamed.condition);
+        assertEquals("FR", streamed.country);
+
+        assertSameAsMapper("""
+                {"weather": [], "main": {"temp": "5"}, "name": "Oslo"}
+                """);
+        assertSameAsMapper("""
+                {"weather": [{"main": "Rain"}], "main": {}, "wind": {}}
+                """);
+        // without a weather block the mapper does not take it as OpenWeather either
+        String noWeather = "{\"main\": {\"temp\": 5}, \"name\": \"Oslo\"}";
+        assertEquals("unknown", mapper.mapToUnified(json.readValue(noWeather, new TypeReference<>() {})).source);
+        assertNull(parser.parseOpenWeather(bytes(noWeather)));
+    }
+
+    @Test
+    void errorBodiesAreNotWeather() throws Exception {
+        assertNull(parser.parseWeatherApi(bytes("""
+                {"error": {"code": 1006, "message": "No matching location found."}}
+                """)));
+        assertNull(parser.parseWeatherApi(bytes("{\"location\": {\"name\": \"x\"}}")));
+        assertNull(parser.parseWeatherApi(bytes("[]")));
+        assertNull(parser.parseOpenWeather(bytes("{\"cod\": \"404\", \"message\": \"city not found\"}")));
+    }
+
+    // =====================================================
+    // HELPERS
+    // =====================================================
+
+    // the streamed response equals what WeatherMapper makes of the same payload decoded as a map
+    private WeatherResponse assertSameAsMapper(String payload) throws Exception {
+        Map<String, Object> tree = json.readValue(payload, new TypeReference<>() {});
+        WeatherResponse expected = mapper.mapToUnified(tree);
+        WeatherResponse streamed = tree.containsKey("location")
+                ? parser.parseWeatherApi(bytes(payload))
+                : parser.parseOpenWeather(bytes(payload));
+
+        assertEquals(json.writeValueAsString(expected), json.writeValueAsString(streamed), payload);
+        return streamed;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
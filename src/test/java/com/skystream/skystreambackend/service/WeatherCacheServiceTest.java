@@ -0,0 +1,149 @@
+package com.skystream.skystreambackend.service;
+
+import com.skystream.skystreambackend.dto.WeatherResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherCacheServiceTest {
+
+    @Test
+    void freshThenStaleThenExpired() throws Exception {
+        WeatherCacheService cache = cache(300, 1800, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(20.0, cache.getOrLoad("Paris", () -> load(loads, 20)).block().temperature);
+        assertEquals(20.0, cache.getOrLoad(" PARIS ", () -> load(loads, 21)).block().temperature);
+        assertEquals(1, loads.get());
+
+        // past the TTL: the old value now, the refreshed one on the next call
+        age(cache, "paris", 301_000);
+        assertEquals(20.0, cache.getOrLoad("paris", () -> load(loads, 22)).block().temperature);
+        assertEquals(2, loads.get());
+        assertEquals(22.0, cache.getOrLoad("paris", () -> load(loads, 23)).block().temperature);
+        assertEquals(2, loads.get());
+
+        // past TTL + stale window: loaded while the caller waits
+        age(cache, "paris", 2101_000);
+        assertEquals(24.0, cache.getOrLoad("paris", () -> load(loads, 24)).block().temperature);
+        assertEquals(3, loads.get());
+
+        Map<String, Object> stats = cache.stats();
+        assertEquals(2L, stats.get("hits"));
+        assertEquals(1L, stats.get("staleHits"));
+        assertEquals(2L, stats.get("misses"));
+    }
+
+    @Test
+    void oneBackgroundRefreshPerKey() throws Exception {
+        WeatherCacheService cache = cache(300, 1800, 100);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad("oslo", () -> load(loads, 1)).block();
+        age(cache, "oslo", 301_000);
+
+        Sinks.One<WeatherResponse> refresh = Sinks.one();
+        AtomicInteger refreshes = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            WeatherResponse r = cache.getOrLoad("oslo", () -> {
+                refreshes.incrementAndGet();
+                return refresh.asMono();
+            }).block();
+            assertEquals(1.0, r.temperature);
+        }
+        assertEquals(1, refreshes.get());
+
+        refresh.tryEmitValue(weather(2));
+        assertEquals(2.0, cache.getOrLoad("oslo", () -> load(loads, 3)).block().temperature);
+
+        // the finished refresh no longer blocks the next one
+        age(cache, "oslo", 301_000);
+        cache.getOrLoad("oslo", () -> load(loads, 4)).block();
+        assertEquals(4.0, cache.getOrLoad("oslo", () -> load(loads, 5)).block().temperature);
+    }
+
+    @Test
+    void failedLoadServesLastValueMarkedStale() throws Exception {
+        WeatherCacheService cache = cache(300, 1800, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        // nothing cached, nothing loaded
+        assertNull(cache.getOrLoad("kyiv", Mono::empty).block());
+        assertNull(cache.getOrLoad("kyiv", () -> Mono.error(new IllegalStateException("down"))).block());
+
+        cache.getOrLoad("kyiv", () -> load(loads, 5)).block();
+        age(cache, "kyiv", 10_000_000);
+        WeatherResponse stale = cache.getOrLoad("kyiv", Mono::empty).block();
+        assertEquals(5.0, stale.temperature);
+        assertEquals(Boolean.TRUE, stale.stale);
+
+        // the cached value itself is not marked
+        age(cache, "kyiv", -10_000_000);
+        assertNull(cache.getOrLoad("kyiv", Mono::empty).block().stale);
+        assertEquals(1L, cache.stats().get("staleOnFailure"));
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        WeatherCacheService cache = cache(300, 1800, 2);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad("a", () -> load(loads, 1)).block();
+        cache.getOrLoad("b", () -> load(loads, 2)).block();
+        cache.getOrLoad("a", () -> load(loads, 0)).block();
+        cache.getOrLoad("c", () -> load(loads, 3)).block();
+
+        // "b" was the least recently used
+        assertEquals(3, loads.get());
+        assertEquals(1.0, cache.getOrLoad("a", () -> load(loads, 0)).block().temperature);
+        assertEquals(9.0, cache.getOrLoad("b", () -> load(loads, 9)).block().temperature);
+        assertEquals(2L, cache.stats().get("evictions"));
+        assertTrue((int) cache.stats().get("size") <= 2);
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    private static WeatherCacheService cache(long ttlSeconds, long staleSeconds, int maxEntries) {
+        WeatherCacheService cache = new WeatherCacheService();
+        ReflectionTestUtils.setField(cache, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(cache, "staleSeconds", staleSeconds);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        cache.init();
+        return cache;
+    }
+
+    private static Mono<WeatherResponse> load(AtomicInteger loads, double temperature) {
+        loads.incrementAndGet();
+        return Mono.just(weather(temperature));
+    }
+
+    private static WeatherResponse weather(double temperature) {
+        WeatherResponse r = new WeatherResponse();
+        r.temperature = temperature;
+        return r;
+    }
+
+    // moves the entry's store time back, as if the time had passed
+    @SuppressWarnings("unchecked")
+    private static void age(WeatherCacheService cache, String key, long millis) throws Exception {
+        Map<String, Object> entries = (Map<String, Object>) ReflectionTestUtils.getField(cache, "entries");
+        Object entry = entries.get(key);
+        RecordComponent[] parts = entry.getClass().getRecordComponents();
+        Object value = parts[0].getAccessor().invoke(entry);
+        long storedAt = (long) parts[1].getAccessor().invoke(entry);
+
+        Constructor<?> c = entry.getClass().getDeclaredConstructors()[0];
+        c.setAccessible(true);
+        entries.put(key, c.newInstance(value, storedAt - millis));
+    }
+}
@@ -0,0 +1,222 @@
+package com.skystream.skystreambackend.service;
+
+import com.skystream.skystreambackend.model.WeatherRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherServiceSnapshotTest {
+
+    private static final String LETTERS = "abcdeknorsy";
+
+    @Test
+    void snapshotSurvivesWriteAndRead() throws Exception {
+        Fixture f = fixture(new Random(42), 400);
+        WeatherService.Snapshot read = roundTrip(f.snapshot);
+
+        assertEquals(f.snapshot.byKey.keySet(), read.byKey.keySet());
+        f.snapshot.byKey.forEach((k, rows) -> assertArrayEquals(rows, read.byKey.get(k), k));
+        assertEquals(f.snapshot.cities, read.cities);
+        assertArrayEquals(f.snapshot.keys, read.keys);
+        assertEquals(f.snapshot.grams.keySet(), read.grams.keySet());
+        f.snapshot.grams.forEach((g, ids) -> assertArrayEquals(ids, read.grams.get(g), g));
+
+        for (int row = 0; row < f.snapshot.table.size(); row++) {
+            WeatherRecord a = f.snapshot.record(row);
+            WeatherRecord b = read.record(row);
+            assertEquals(a.getCity(), b.getCity());
+            assertEquals(a.getDate(), b.getDate());
+            if (f.snapshot.table.getInt(row, 1) == ColumnarTable.MISSING_INT) assertEquals("", b.getDate());
+            assertEquals(a.getTemperature(), b.getTemperature());
+            assertEquals(a.getHumidity(), b.getHumidity());
+            assertEquals(a.getCondition(), b.getCondition());
+        }
+    }
+
+    @Test
+    void prefixAndContainsMatchLinearScan() throws Exception {
+        Random rnd = new Random(7);
+        Fixture f = fixture(rnd, 600);
+        WeatherService.Snapshot read = roundTrip(f.snapshot);
+
+        List<String> keys = new ArrayList<>(new TreeSet<>(f.index.keySet()));
+        for (int i = 0; i < 2000; i++) {
+            String q = i % 2 == 0
+                    ? keys.get(rnd.nextInt(keys.size())).substring(0, 1 + rnd.nextInt(2))
+                    : word(rnd, 1 + rnd.nextInt(4));
+
+            String prefix = bruteForcePrefix(keys, q);
+            assertEquals(prefix, f.snapshot.bestPrefix(q), "prefix '" + q + "'");
+            assertEquals(prefix, read.bestPrefix(q), "prefix after read '" + q + "'");
+
+            String contains = bruteForceContains(keys, q);
+            assertEquals(contains, f.snapshot.bestContains(q), "contains '" + q + "'");
+            assertEquals(contains, read.bestContains(q), "contains after read '" + q + "'");
+        }
+    }
+
+    @Test
+    void emptySnapshotRoundTrips() throws Exception {
+        WeatherService.Snapshot read = roundTrip(WeatherService.Snapshot.EMPTY);
+
+        assertEquals(0, read.table.size());
+        assertTrue(read.byKey.isEmpty());
+        assertTrue(read.cities.isEmpty());
+        assertNull(read.bestPrefix("york"));
+        assertNull(read.bestContains("york"));
+    }
+
+    @Test
+    void prefixWantsALongerKeyContainsTakesTheEarliest() throws Exception {
+        WeatherService.Snapshot s = roundTrip(named("york", "new york", "yorkshire", "oslo"));
+
+        // an exact key is not its own prefix match; the shortest longer key is
+        assertEquals("yorkshire", s.bestPrefix("york"));
+        assertEquals("york", s.bestPrefix("yo"));
+        assertEquals("york", s.bestContains("york"));
+        assertEquals("new york", s.bestContains("w yo"));
+        assertNull(s.bestPrefix("oslo"));
+        assertNull(s.bestContains("paris"));
+    }
+
+    @Test
+    void exactLookupsSkipRowsThatOnlyHaveTheNameAsAWord() {
+        // "york" lists New York's row first, as a word of its name
+        ColumnarTable table = newTable();
+        Map<String, List<Integer>> index = new HashMap<>();
+        for (String city : new String[]{"New York", "York"}) {
+            int row = table.addRow();
+            table.setText(row, 0, city);
+            index.computeIfAbsent(city.toLowerCase(), k -> new ArrayList<>()).add(row);
+            if (!city.equals("York")) index.computeIfAbsent("york", k -> new ArrayList<>()).add(row);
+        }
+        table.trim();
+
+        WeatherService service = new WeatherService();
+        ReflectionTestUtils.setField(service, "snapshot",
+                WeatherService.Snapshot.build(table, index, new TreeSet<>(List.of("New York", "York"))));
+
+        assertEquals("York", service.canonicalCity("YORK"));
+        assertEquals("York", service.getCurrentWeather("york").getCity());
+        assertEquals("New York", service.canonicalCity("new york"));
+        assertNull(service.canonicalCity("new"));
+        assertNull(service.canonicalCity("yor"));
+    }
+
+    // =====================================================
+    // BRUTE FORCE
+    // =====================================================
+
+    // shortest key that q is a proper prefix of, ties alphabetical
+    private static String bruteForcePrefix(List<String> sortedKeys, String q) {
+        String best = null;
+        for (String k : sortedKeys) {
+            if (k.length() > q.length() && k.startsWith(q) && (best == null || k.length() < best.length())) best = k;
+        }
+        return best;
+    }
+
+    // earliest occurrence of q, then shortest key, ties alphabetical
+    private static String bruteForceContains(List<String> sortedKeys, String q) {
+        String best = null;
+        int bestPos = Integer.MAX_VALUE;
+        for (String k : sortedKeys) {
+            int pos = k.indexOf(q);
+            if (pos < 0) continue;
+            if (pos < bestPos || (pos == bestPos && k.length() < best.length())) {
+                best = k;
+                bestPos = pos;
+            }
+        }
+        return best;
+    }
+
+    // =====================================================
+    // FIXTURE
+    // =====================================================
+
+    private record Fixture(WeatherService.Snapshot snapshot, Map<String, List<Integer>> index) {}
+
+    // random cities in WeatherService's record layout, each row indexed under its name and words
+    private static Fixture fixture(Random rnd, int rows) {
+        ColumnarTable table = newTable();
+        Map<String, List<Integer>> index = new HashMap<>();
+        Set<String> cities = new TreeSet<>();
+
+        for (int i = 0; i < rows; i++) {
+            String city = rnd.nextInt(4) == 0
+                    ? word(rnd, 3 + rnd.nextInt(5)) + " " + word(rnd, 3 + rnd.nextInt(5))
+                    : word(rnd, 2 + rnd.nextInt(8));
+            int row = table.addRow();
+            table.setText(row, 0, city);
+            // some rows carry no date, as when the CSV cell is empty
+            table.setDate(row, 1, rnd.nextInt(10) == 0 ? null : LocalDate.of(2024, 1, 1).plusDays(rnd.nextInt(365)));
+            table.setDouble(row, 2, rnd.nextInt(400) / 10.0);
+            table.setDouble(row, 3, rnd.nextInt(400) / 10.0);
+            table.setDouble(row, 4, rnd.nextInt(400) / 10.0);
+            table.setInt(row, 5, rnd.nextInt(100));
+            table.setDouble(row, 6, rnd.nextInt(300) / 10.0);
+            table.setText(row, 7, rnd.nextBoolean() ? "Sunny" : "");
+
+            cities.add(city);
+            index.computeIfAbsent(city, k -> new ArrayList<>()).add(row);
+            for (String w : city.split(" ")) {
+                List<Integer> ids = index.computeIfAbsent(w, k -> new ArrayList<>());
+                if (ids.isEmpty() || ids.get(ids.size() - 1) != row) ids.add(row);
+            }
+        }
+        table.trim();
+        return new Fixture(WeatherService.Snapshot.build(table, index, cities), index);
+    }
+
+    // one row per city, indexed under its full name only
+    private static WeatherService.Snapshot named(String... cities) {
+        ColumnarTable table = newTable();
+        Map<String, List<Integer>> index = new HashMap<>();
+        for (String city : cities) {
+            int row = table.addRow();
+            table.setText(row, 0, city);
+            index.put(city, List.of(row));
+        }
+        table.trim();
+        return WeatherService.Snapshot.build(table, index, new TreeSet<>(index.keySet()));
+    }
+
+    private static ColumnarTable newTable() {
+        return new ColumnarTable(
+                List.of("city", "date", "temperature", "high", "low", "humidity", "wind", "condition"),
+                List.of(ColumnarTable.Type.TEXT, ColumnarTable.Type.DATE,
+                        ColumnarTable.Type.DOUBLE, ColumnarTable.Type.DOUBLE, ColumnarTable.Type.DOUBLE,
+                        ColumnarTable.Type.INT, ColumnarTable.Type.DOUBLE, ColumnarTable.Type.TEXT));
+    }
+
+    private static WeatherService.Snapshot roundTrip(WeatherService.Snapshot s) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            s.write(out);
+        }
+        return WeatherService.Snapshot.read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static String word(Random rnd, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(LETTERS.charAt(rnd.nextInt(LETTERS.length())));
+        return sb.toString();
+    }
+}